@@ -6,8 +6,20 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 
 public class InventoryApi {
-    public static String updateInventory(String fcId, String ean, int quantity) throws Exception {
-        String url = "https://api-preprod.ailiens.com/b/galactusReloaded/write/fCInventory/updateInventory/nickfury";
+    public static final String DEFAULT_BASE_URL = "https://api-preprod.ailiens.com/b/galactusReloaded";
+
+    /**
+     * Overwrites the quantity of an FC/EAN
+     * @param baseUrl Base URL of the inventory service, e.g. {@link #DEFAULT_BASE_URL}
+     * @param authToken Bearer token for the API
+     * @param fcId The fulfillment center ID
+     * @param ean The product EAN
+     * @param quantity The new quantity
+     * @return The API response as a string
+     */
+    public static String updateInventory(String baseUrl, String authToken, String fcId, String ean, int quantity)
+            throws Exception {
+        String url = baseUrl + "/write/fCInventory/updateInventory/nickfury";
         JSONArray body = new JSONArray();
         JSONObject item = new JSONObject();
         item.put("fcId", fcId);
@@ -23,8 +35,7 @@ public class InventoryApi {
 
         Response response = RestAssured.given()
                 .header("Content-Type", "application/json")
-                .header("x-roles", "ROLE_SUPER_WOMAN")
-                .header("x-tenant-id", "7393ce33-8e4f-4106-9fdc-3fdea5c27ec9")
+                .header("Authorization", "Bearer " + authToken)
                 .header("Accept", "application/json")
                 .body(body.toString())
                 .post(url);
@@ -34,4 +45,34 @@ public class InventoryApi {
         }
         return response.getBody().asString();
     }
-} 
\ No newline at end of file
+
+    /**
+     * Reads the inventory of an FC/EAN. The service answers {@code {"data": [entry, ...]}}, each
+     * entry carrying fcId, ean, quantity and reserveQty.
+     * @param baseUrl Base URL of the inventory service, e.g. {@link #DEFAULT_BASE_URL}
+     * @param authToken Bearer token for the API
+     * @param fcId The fulfillment center ID
+     * @param ean The product EAN
+     * @return The API response as a string
+     */
+    public static String getInventory(String baseUrl, String authToken, String fcId, String ean) throws Exception {
+        String url = baseUrl + "/read/fCInventory/getInventory/nickfury";
+        JSONArray body = new JSONArray();
+        JSONObject item = new JSONObject();
+        item.put("fcId", fcId);
+        item.put("ean", ean);
+        body.put(item);
+
+        Response response = RestAssured.given()
+                .header("Content-Type", "application/json")
+                .header("Authorization", "Bearer " + authToken)
+                .header("Accept", "application/json")
+                .body(body.toString())
+                .post(url);
+
+        if (response.getStatusCode() != 200) {
+            throw new RuntimeException("Failed to get inventory: HTTP " + response.getStatusCode() + " - " + response.getBody().asString());
+        }
+        return response.getBody().asString();
+    }
+}
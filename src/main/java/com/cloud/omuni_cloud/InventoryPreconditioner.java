@@ -0,0 +1,148 @@
+package com.cloud.omuni_cloud;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Brings the inventory of an FC/EAN into a state that can serve an order, writing only when needed.
+ * The current quantity and reserveQty are read first; if enough stock is already available nothing
+ * is written, otherwise a single overwrite is issued that keeps existing reservations intact.
+ * When the read fails nothing is written at all.
+ */
+public class InventoryPreconditioner {
+    // One lock per FC/EAN so parallel flows in this JVM don't race each other's read-then-write
+    private static final Map<String, Object> locks = new ConcurrentHashMap<>();
+
+    private final String baseUrl;
+    private final String authToken;
+
+    /**
+     * Creates a preconditioner for the default inventory service
+     * @param authToken Bearer token for the inventory API
+     */
+    public InventoryPreconditioner(String authToken) {
+        this(InventoryApi.DEFAULT_BASE_URL, authToken);
+    }
+
+    /**
+     * Creates a preconditioner
+     * @param baseUrl Base URL of the inventory service
+     * @param authToken Bearer token for the inventory API
+     */
+    public InventoryPreconditioner(String baseUrl, String authToken) {
+        this.baseUrl = baseUrl;
+        this.authToken = authToken;
+    }
+
+    // Getters
+    public String getBaseUrl() { return baseUrl; }
+
+    /**
+     * Snapshot of the inventory for a single FC/EAN
+     */
+    public static class InventoryState {
+        private final int quantity;
+        private final int reserveQty;
+
+        public InventoryState(int quantity, int reserveQty) {
+            this.quantity = quantity;
+            this.reserveQty = reserveQty;
+        }
+
+        public int getQuantity() { return quantity; }
+        public int getReserveQty() { return reserveQty; }
+        public int getAvailable() { return quantity - reserveQty; }
+
+        @Override
+        public String toString() {
+            return "InventoryState{quantity=" + quantity + ", reserveQty=" + reserveQty + "}";
+        }
+    }
+
+    /**
+     * Reads the current inventory for the FC/EAN
+     * @param fcId The fulfillment center ID
+     * @param ean The product EAN
+     * @return The current inventory state
+     * @throws Exception if the inventory could not be read or the response has no matching entry
+     * @throws IllegalStateException if the response is not in the documented shape
+     */
+    public InventoryState readInventory(String fcId, String ean) throws Exception {
+        String response = InventoryApi.getInventory(baseUrl, authToken, fcId, ean);
+        JSONObject entry = findEntry(response, fcId, ean);
+        if (entry == null) {
+            throw new IllegalStateException("No inventory entry found for fcId=" + fcId + ", ean=" + ean);
+        }
+        return new InventoryState(entry.optInt("quantity", 0), entry.optInt("reserveQty", 0));
+    }
+
+    /**
+     * Makes sure at least {@code requiredAvailable} units are free to reserve at the FC.
+     * When the stock is insufficient, the quantity is overwritten once to
+     * {@code reserveQty + targetAvailable}, so reservations held by other flows survive the write.
+     * @param fcId The fulfillment center ID
+     * @param ean The product EAN
+     * @param requiredAvailable Minimum unreserved quantity needed by the caller
+     * @param targetAvailable Unreserved quantity to top up to when a write is needed
+     * @return true if a write was made, false if the current state was already sufficient
+     * @throws IllegalStateException if the inventory cannot be read; nothing is written then
+     * @throws Exception if the inventory update fails
+     */
+    public boolean ensureAvailable(String fcId, String ean, int requiredAvailable, int targetAvailable)
+            throws Exception {
+        if (targetAvailable < requiredAvailable) {
+            throw new IllegalArgumentException("targetAvailable must be >= requiredAvailable");
+        }
+
+        Object lock = locks.computeIfAbsent(fcId + "|" + ean, k -> new Object());
+        synchronized (lock) {
+            InventoryState state;
+            try {
+                state = readInventory(fcId, ean);
+            } catch (Exception e) {
+                // Without reserveQty any write could wipe reservations of orders in flight
+                throw new IllegalStateException("Could not read inventory for " + fcId + "/" + ean +
+                        ", not writing it blind: " + e.getMessage(), e);
+            }
+
+            if (state.getAvailable() >= requiredAvailable) {
+                System.out.println("Inventory for " + fcId + "/" + ean + " already sufficient: " + state);
+                return false;
+            }
+
+            int newQuantity = state.getReserveQty() + targetAvailable;
+            System.out.println("Inventory for " + fcId + "/" + ean + " insufficient (" + state
+                    + "), overwriting quantity to " + newQuantity);
+            InventoryApi.updateInventory(baseUrl, authToken, fcId, ean, newQuantity);
+            return true;
+        }
+    }
+
+    /**
+     * Finds the inventory entry for the FC/EAN in a read response, {@code {"data": [entry, ...]}}.
+     * Only an entry naming both the FC and the EAN is taken.
+     * @return the entry, or null if the response has none for the FC/EAN
+     * @throws IllegalStateException if the response has any other shape
+     */
+    static JSONObject findEntry(String response, String fcId, String ean) {
+        JSONArray entries = null;
+        try {
+            entries = new JSONObject(response).optJSONArray("data");
+        } catch (RuntimeException e) {
+            // Not JSON at all; reported below
+        }
+        if (entries == null) {
+            throw new IllegalStateException("Unexpected inventory response, expected {\"data\": [...]}: " + response);
+        }
+        for (int i = 0; i < entries.length(); i++) {
+            JSONObject entry = entries.optJSONObject(i);
+            if (entry != null && fcId.equals(entry.optString("fcId", null)) && ean.equals(entry.optString("ean", null))) {
+                return entry;
+            }
+        }
+        return null;
+    }
+}
@@ -1,5 +1,6 @@
 package com.cloud.omuni_cloud;
 
+import com.cloud.omuni_cloud.dbutil.DatabaseConnection;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
@@ -7,6 +8,8 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 public class OmuniCloudApplication {
 
 	public static void main(String[] args) {
+		// Open the database pools and SSH tunnels while Spring starts
+		DatabaseConnection.getInstance().bootstrapAll();
 		SpringApplication.run(OmuniCloudApplication.class, args);
 
 	}
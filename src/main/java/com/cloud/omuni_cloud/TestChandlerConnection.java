@@ -2,12 +2,15 @@ package com.cloud.omuni_cloud;
 
 import com.cloud.omuni_cloud.dbutil.DatabaseConnection;
 import com.cloud.omuni_cloud.dbutil.DatabaseManager;
+import com.cloud.omuni_cloud.dbutil.FanOutResult;
+import com.cloud.omuni_cloud.dbutil.config.DatabaseConfig;
 
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.Statement;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Simple test class to verify Chandler database connection
@@ -28,6 +31,9 @@ public class TestChandlerConnection {
             // 3. Run a sample query
             runSampleQuery();
             
+            // 4. Check every configured database at once
+            checkAllDatabases();
+            
             System.out.println("\n✅ All tests completed successfully!");
             
         } catch (Exception e) {
@@ -114,4 +120,17 @@ public class TestChandlerConnection {
             System.err.println("❌ Error running sample queries: " + e.getMessage());
         }
     }
+    
+    private static void checkAllDatabases() {
+        System.out.println("\n4. Checking all configured databases...");
+        
+        FanOutResult result = DatabaseManager.queryAll(DatabaseConfig.getAllConfigs().keySet(),
+            10, TimeUnit.SECONDS, "SELECT VERSION() as version");
+        for (Map<String, Object> row : result.asMaps()) {
+            System.out.println("✅ " + row.get(FanOutResult.SOURCE_COLUMN) + ": MySQL " + row.get("version"));
+        }
+        if (!result.isComplete()) {
+            System.out.println("ℹ️ Not every database answered:\n" + result.format());
+        }
+    }
 }
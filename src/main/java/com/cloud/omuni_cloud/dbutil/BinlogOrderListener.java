@@ -0,0 +1,303 @@
+package com.cloud.omuni_cloud.dbutil;
+
+import com.cloud.omuni_cloud.dbutil.config.DbConnectionConfig;
+import com.github.shyiko.mysql.binlog.BinaryLogClient;
+import com.github.shyiko.mysql.binlog.event.Event;
+import com.github.shyiko.mysql.binlog.event.EventHeader;
+import com.github.shyiko.mysql.binlog.event.EventType;
+import com.github.shyiko.mysql.binlog.event.TableMapEventData;
+import com.github.shyiko.mysql.binlog.event.UpdateRowsEventData;
+import com.github.shyiko.mysql.binlog.event.WriteRowsEventData;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tails the MySQL binlog of a database configuration and turns inserts and updates of watched
+ * order tables into {@link OrderChangeEvent}s, so flow stages learn about booking and sale rows
+ * within milliseconds instead of polling. The binlog client connects to the same endpoint as the
+ * configuration's pool, through its SSH tunnel when it has one.
+ *
+ * <p>The server must use row-based logging and the user needs the REPLICATION SLAVE and
+ * REPLICATION CLIENT privileges. Only changes made after {@link #start(long, TimeUnit)} are seen.
+ */
+public class BinlogOrderListener implements AutoCloseable {
+    private final String configName;
+    private final Map<String, WatchedTable> watched = new ConcurrentHashMap<>();
+    private final Map<Long, WatchedTable> tableIds = new ConcurrentHashMap<>();
+    private final List<OrderChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong eventCount = new AtomicLong();
+    private long serverId = ThreadLocalRandom.current().nextLong(100_000, 1_000_000);
+    private int recentCapacity = 100_000;
+    private BinaryLogClient client;
+
+    /**
+     * Creates a listener for a database configuration; add tables with {@link #watch(String, String)}
+     * @param configName Name of the database configuration to read the binlog of
+     */
+    public BinlogOrderListener(String configName) {
+        this.configName = configName;
+    }
+
+    /**
+     * Creates a listener for booking calls in nickfury.store_orders and sale calls in nickfury.sale_orders
+     * @param configName Name of the database configuration holding the nickfury schema
+     */
+    public static BinlogOrderListener forChandlerOrders(String configName) {
+        return new BinlogOrderListener(configName)
+            .watch("nickfury.store_orders", "orderId")
+            .watch("nickfury.sale_orders", "orderNo");
+    }
+
+    /**
+     * Watches an order table
+     * @param tableName Table to watch, optionally schema-qualified; must have an id and a status column
+     * @param orderColumn Column holding the order reference
+     * @return this listener
+     */
+    public BinlogOrderListener watch(String tableName, String orderColumn) {
+        WatchedTable table = new WatchedTable(DatabaseCopier.identifier(tableName), DatabaseCopier.identifier(orderColumn));
+        watched.put(table.tableName.toLowerCase(Locale.ROOT), table);
+        return this;
+    }
+
+    // Builder-style setters for fluent configuration
+    /**
+     * Sets the replica server id the client registers with; it must differ from every other replica
+     */
+    public BinlogOrderListener withServerId(long serverId) {
+        this.serverId = serverId;
+        return this;
+    }
+
+    /**
+     * Sets how many recently seen orders per table are remembered for waits registered after their row appeared
+     */
+    public BinlogOrderListener withRecentCapacity(int recentCapacity) {
+        this.recentCapacity = recentCapacity;
+        for (WatchedTable table : watched.values()) {
+            table.waits.setRecentCapacity(recentCapacity);
+        }
+        return this;
+    }
+
+    public BinlogOrderListener addListener(OrderChangeListener listener) {
+        listeners.add(listener);
+        return this;
+    }
+
+    // Getters
+    public long getEventCount() { return eventCount.get(); }
+
+    public boolean isConnected() {
+        return client != null && client.isConnected();
+    }
+
+    /**
+     * Gets the waits of one watched table, e.g. to hand to OrderLifecycle
+     * @param tableName The table as passed to {@link #watch(String, String)}
+     * @return watcher completing waits from this table's binlog events
+     */
+    public OrderWatcher watcher(String tableName) {
+        WatchedTable table = watched.get(tableName.toLowerCase(Locale.ROOT));
+        if (table == null) {
+            throw new IllegalArgumentException("Table not watched: " + tableName);
+        }
+        return table.waits;
+    }
+
+    /**
+     * Resolves the watched columns and connects to the binlog at its current position
+     * @param timeout Maximum time to wait for the connection
+     * @param unit Unit of the timeout
+     * @return this listener
+     * @throws SQLException if a watched table is missing or the binlog cannot be read
+     */
+    public synchronized BinlogOrderListener start(long timeout, TimeUnit unit) throws SQLException {
+        if (client != null) {
+            throw new IllegalStateException("Binlog listener for " + configName + " already started");
+        }
+        DbConnectionConfig endpoint = DatabaseConnection.getInstance().getEndpoint(configName);
+        try (DatabaseManager dbManager = new DatabaseManager(configName)) {
+            for (WatchedTable table : watched.values()) {
+                table.resolve(dbManager, endpoint.getDatabase());
+            }
+        }
+
+        BinaryLogClient binlogClient = new BinaryLogClient(endpoint.getHost(), Integer.parseInt(endpoint.getPort()),
+            endpoint.getUsername(), endpoint.getPassword());
+        binlogClient.setServerId(serverId);
+        binlogClient.setKeepAlive(true);
+        binlogClient.registerEventListener(this::onEvent);
+        try {
+            binlogClient.connect(unit.toMillis(timeout));
+        } catch (IOException | TimeoutException e) {
+            throw new SQLException("Error connecting to binlog of " + configName + ": " + e.getMessage(), e);
+        }
+        client = binlogClient;
+        System.out.println("Listening to binlog of " + configName + " from " +
+                           binlogClient.getBinlogFilename() + ":" + binlogClient.getBinlogPosition());
+        return this;
+    }
+
+    private void onEvent(Event event) {
+        EventHeader header = event.getHeader();
+        EventType type = header.getEventType();
+        if (type == EventType.TABLE_MAP) {
+            TableMapEventData data = event.getData();
+            WatchedTable table = find(data.getDatabase(), data.getTable());
+            if (table != null) {
+                tableIds.put(data.getTableId(), table);
+            } else {
+                tableIds.remove(data.getTableId());
+            }
+        } else if (EventType.isWrite(type)) {
+            WriteRowsEventData data = event.getData();
+            WatchedTable table = tableIds.get(data.getTableId());
+            if (table != null) {
+                for (Serializable[] row : data.getRows()) {
+                    publish(table.decode(OrderChangeEvent.Type.INSERT, row, data.getIncludedColumns(), header.getTimestamp()));
+                }
+            }
+        } else if (EventType.isUpdate(type)) {
+            UpdateRowsEventData data = event.getData();
+            WatchedTable table = tableIds.get(data.getTableId());
+            if (table != null) {
+                for (Map.Entry<Serializable[], Serializable[]> row : data.getRows()) {
+                    publish(table.decode(OrderChangeEvent.Type.UPDATE, row.getValue(), data.getIncludedColumns(), header.getTimestamp()));
+                }
+            }
+        }
+    }
+
+    private WatchedTable find(String database, String table) {
+        for (WatchedTable candidate : watched.values()) {
+            if (candidate.table.equalsIgnoreCase(table) && candidate.schema.equalsIgnoreCase(database)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private void publish(OrderChangeEvent change) {
+        if (change == null) {
+            return;
+        }
+        eventCount.incrementAndGet();
+        watched.get(change.getTableName().toLowerCase(Locale.ROOT)).waits.matched(change.toVerification());
+        for (OrderChangeListener listener : listeners) {
+            try {
+                listener.onChange(change);
+            } catch (RuntimeException e) {
+                // One failing listener must not stop the binlog reader
+                System.err.println("Order change listener failed for " + change + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Disconnects from the binlog; waits still pending complete exceptionally. The listener can be
+     * started again afterwards.
+     */
+    @Override
+    public synchronized void close() {
+        if (client != null) {
+            try {
+                client.disconnect();
+            } catch (IOException e) {
+                System.err.println("Error disconnecting binlog client for " + configName + ": " + e.getMessage());
+            }
+            // Lets the listener be started again
+            client = null;
+        }
+        for (WatchedTable table : watched.values()) {
+            table.waits.failAll("Binlog listener for " + table.tableName + " closed");
+        }
+    }
+
+    /**
+     * A watched table and the row positions of its id, order and status columns
+     */
+    private class WatchedTable {
+        final String tableName;
+        final String orderColumn;
+        final OrderWaits waits = new OrderWaits(recentCapacity);
+        String schema;
+        String table;
+        int idColumn = -1;
+        int orderIdColumn = -1;
+        int statusColumn = -1;
+
+        WatchedTable(String tableName, String orderColumn) {
+            this.tableName = tableName;
+            this.orderColumn = orderColumn;
+        }
+
+        /**
+         * Looks up the zero-based positions of the watched columns; binlog rows carry values by position only
+         */
+        void resolve(DatabaseManager dbManager, String defaultSchema) throws SQLException {
+            int dot = tableName.indexOf('.');
+            schema = dot < 0 ? defaultSchema : tableName.substring(0, dot);
+            table = tableName.substring(dot + 1);
+            ResultTable columns = dbManager.query(
+                "SELECT COLUMN_NAME, ORDINAL_POSITION FROM information_schema.COLUMNS " +
+                "WHERE TABLE_SCHEMA = ? AND TABLE_NAME = ?", schema, table);
+            for (int row = 0; row < columns.size(); row++) {
+                String column = columns.getString(row, 0);
+                int position = columns.getInt(row, 1) - 1;
+                if (column.equalsIgnoreCase("id")) {
+                    idColumn = position;
+                } else if (column.equalsIgnoreCase(orderColumn)) {
+                    orderIdColumn = position;
+                } else if (column.equalsIgnoreCase("status")) {
+                    statusColumn = position;
+                }
+            }
+            if (idColumn < 0 || orderIdColumn < 0) {
+                throw new SQLException("Table " + schema + "." + table + " needs id and " + orderColumn + " columns");
+            }
+        }
+
+        OrderChangeEvent decode(OrderChangeEvent.Type type, Serializable[] row, BitSet included, long timestamp) {
+            Object orderId = valueAt(row, included, orderIdColumn);
+            Object id = valueAt(row, included, idColumn);
+            if (orderId == null || !(id instanceof Number)) {
+                return null;
+            }
+            Object status = statusColumn < 0 ? null : valueAt(row, included, statusColumn);
+            return new OrderChangeEvent(tableName, type, text(orderId), ((Number) id).longValue(),
+                status == null ? null : text(status), timestamp);
+        }
+    }
+
+    /**
+     * Gets a column's value from a binlog row, which holds only the included columns
+     */
+    private static Object valueAt(Serializable[] row, BitSet included, int column) {
+        if (included == null) {
+            return column < row.length ? row[column] : null;
+        }
+        if (!included.get(column)) {
+            return null;
+        }
+        return row[included.get(0, column).cardinality()];
+    }
+
+    // Character columns arrive as raw bytes
+    private static String text(Object value) {
+        return value instanceof byte[] ? new String((byte[]) value, StandardCharsets.UTF_8) : value.toString();
+    }
+}
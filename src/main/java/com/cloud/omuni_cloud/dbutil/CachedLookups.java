@@ -0,0 +1,69 @@
+package com.cloud.omuni_cloud.dbutil;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Lookups of one DatabaseManager that are served from the {@link QueryResultCache} for a fixed
+ * time to live. Obtain one with {@link DatabaseManager#cached(long, java.util.concurrent.TimeUnit)}
+ * for data that does not change during a run, such as store and configuration rows.
+ */
+public class CachedLookups {
+    private final DatabaseManager databaseManager;
+    private final String configName;
+    private final long ttlMillis;
+
+    CachedLookups(DatabaseManager databaseManager, String configName, long ttlMillis) {
+        this.databaseManager = databaseManager;
+        this.configName = configName;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Cached {@link DatabaseManager#getSingleValue(String, Object...)}
+     */
+    public Object getSingleValue(String query, Object... params) throws SQLException {
+        List<Object> key = params == null ? Collections.emptyList() : Arrays.asList(params);
+        return QueryResultCache.get(configName, query, key, QueryDescriptor.forQuery(configName, query).getTablesRead(),
+            ttlMillis, () -> databaseManager.getSingleValue(query, params));
+    }
+
+    /**
+     * Cached {@link DatabaseManager#recordExists(String, Map)}
+     */
+    public boolean recordExists(String tableName, Map<String, Object> conditions) throws SQLException {
+        // Sorted so equal conditions give equal keys whatever the map's iteration order
+        List<Object> key = new ArrayList<>(new TreeMap<>(conditions).entrySet());
+        return (Boolean) QueryResultCache.get(configName, "recordExists " + tableName, key, tables(tableName),
+            ttlMillis, () -> databaseManager.recordExists(tableName, conditions));
+    }
+
+    /**
+     * Cached {@link DatabaseConnection#validateValueExists(String, String, String, String)} on this configuration
+     */
+    public boolean validateValueExists(String tableName, String columnName, String value) throws SQLException {
+        return (Boolean) QueryResultCache.get(configName, "validateValueExists " + tableName + "." + columnName,
+            Collections.singletonList(value), tables(tableName), ttlMillis,
+            () -> DatabaseConnection.getInstance().validateValueExists(configName, tableName, columnName, value));
+    }
+
+    /**
+     * Cached {@link DatabaseConnection#validateRowExists(String, String, String[], Object[])} on this configuration
+     */
+    public boolean validateRowExists(String tableName, String[] conditions, Object[] params) throws SQLException {
+        return (Boolean) QueryResultCache.get(configName,
+            "validateRowExists " + tableName + " " + String.join(" AND ", conditions),
+            Arrays.asList(params), tables(tableName), ttlMillis,
+            () -> DatabaseConnection.getInstance().validateRowExists(configName, tableName, conditions, params));
+    }
+
+    private static Set<String> tables(String tableName) {
+        return Collections.singleton(QueryResultCache.normalize(tableName));
+    }
+}
@@ -0,0 +1,111 @@
+package com.cloud.omuni_cloud.dbutil;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Column labels and SQL types of a result, shared by every row read from it so rows only
+ * carry their values. Label lookup is case-insensitive, as it is for MySQL column labels.
+ */
+public class ColumnIndex {
+    private final String[] labels;
+    private final int[] sqlTypes;
+    private final String[] classNames;
+    private final Map<String, Integer> positions = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    ColumnIndex(String[] labels, int[] sqlTypes, String[] classNames) {
+        this.labels = labels;
+        this.sqlTypes = sqlTypes;
+        this.classNames = classNames;
+        for (int i = 0; i < labels.length; i++) {
+            // The last column wins when a label repeats, as it always did in executeQuery's maps
+            positions.put(labels[i], i);
+        }
+    }
+
+    /**
+     * Builds the column index of a result set
+     * @param metaData Metadata of the result set
+     * @return the column index
+     * @throws SQLException if the metadata cannot be read
+     */
+    public static ColumnIndex from(ResultSetMetaData metaData) throws SQLException {
+        int columnCount = metaData.getColumnCount();
+        String[] labels = new String[columnCount];
+        int[] sqlTypes = new int[columnCount];
+        String[] classNames = new String[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            labels[i] = metaData.getColumnLabel(i + 1);
+            sqlTypes[i] = metaData.getColumnType(i + 1);
+            classNames[i] = metaData.getColumnClassName(i + 1);
+        }
+        return new ColumnIndex(labels, sqlTypes, classNames);
+    }
+
+    /**
+     * Checks whether a result set still has these columns, in the same order and with the same
+     * labels and types, so this index can be reused for it
+     * @param metaData Metadata of the result set
+     * @return true if every column matches
+     * @throws SQLException if the metadata cannot be read
+     */
+    boolean matches(ResultSetMetaData metaData) throws SQLException {
+        if (metaData.getColumnCount() != labels.length) {
+            return false;
+        }
+        for (int i = 0; i < labels.length; i++) {
+            if (!labels[i].equals(metaData.getColumnLabel(i + 1))
+                    || sqlTypes[i] != metaData.getColumnType(i + 1)
+                    || !Objects.equals(classNames[i], metaData.getColumnClassName(i + 1))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Getters
+    public int size() { return labels.length; }
+    public String getLabel(int index) { return labels[index]; }
+    public int getSqlType(int index) { return sqlTypes[index]; }
+    public String getClassName(int index) { return classNames[index]; }
+    public List<String> getLabels() { return Collections.unmodifiableList(Arrays.asList(labels)); }
+
+    /**
+     * Gets the zero-based position of a column
+     * @param label Column label, case-insensitive
+     * @return the position, or -1 if the result has no such column
+     */
+    public int indexOf(String label) {
+        Integer position = positions.get(label);
+        return position == null ? -1 : position;
+    }
+
+    int require(String label) {
+        int index = indexOf(label);
+        if (index < 0) {
+            throw new IllegalArgumentException("No column '" + label + "' in " + Arrays.toString(labels));
+        }
+        return index;
+    }
+
+    /**
+     * Reads the current row of a result set
+     * @param rs Result set positioned on a row
+     * @return the row
+     * @throws SQLException if a value cannot be read
+     */
+    Row readRow(ResultSet rs) throws SQLException {
+        Object[] values = new Object[labels.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = rs.getObject(i + 1);
+        }
+        return new Row(this, values);
+    }
+}
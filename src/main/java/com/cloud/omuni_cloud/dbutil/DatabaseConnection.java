@@ -6,12 +6,23 @@ import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.Session;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 
 import java.sql.*;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -26,6 +37,20 @@ public class DatabaseConnection {
     // SSH sessions map (connection name -> Session)
     private final Map<String, Session> sshSessions = new ConcurrentHashMap<>();
     
+    // Endpoints the pools connect to, after any SSH tunnel (connection name -> config)
+    private final Map<String, DbConnectionConfig> endpoints = new ConcurrentHashMap<>();
+    
+    // Read routing of configurations with replicas (connection name -> future of the router)
+    private final Map<String, CompletableFuture<ReplicaRouter>> replicaRouters = new ConcurrentHashMap<>();
+    
+    // Pools being created or created (connection name -> future of the pool)
+    private final Map<String, CompletableFuture<HikariDataSource>> startups = new ConcurrentHashMap<>();
+    
+    // Time taken to create each pool (connection name -> millis)
+    private final Map<String, Long> bootstrapMillis = new ConcurrentHashMap<>();
+    
+    private ExecutorService bootstrapExecutor;
+    
     // Singleton instance
     private static volatile DatabaseConnection instance;
     
@@ -73,17 +98,211 @@ public class DatabaseConnection {
      * @throws SQLException if connection fails
      */
     public Connection getConnection(String configName) throws SQLException {
-        // Get or create a data source for this configuration
-        HikariDataSource dataSource = dataSources.computeIfAbsent(configName, k -> {
+        // Get a connection from the pool
+        return getDataSource(configName).getConnection();
+    }
+    
+    /**
+     * Gets a connection for reading. For a configuration with read replicas this is a connection to
+     * a replica in rotation, chosen round-robin or by load; otherwise, or when no replica is usable,
+     * it is a primary connection. Writes and transactions must use {@link #getConnection(String)}.
+     * @param configName Name of the database configuration to use
+     * @return A read connection from a replica or primary pool
+     * @throws SQLException if connection fails
+     */
+    public Connection getReadConnection(String configName) throws SQLException {
+        DbConnectionConfig config = com.cloud.omuni_cloud.dbutil.config.DatabaseConfig.getDatabaseConfig(configName);
+        if (!config.hasReplicas()) {
+            return getConnection(configName);
+        }
+        Connection connection = replicaRouter(configName, config).getConnection();
+        return connection != null ? connection : getConnection(configName);
+    }
+    
+    /**
+     * Gets or creates the read router of a configuration. The router's first lag check opens the
+     * replica pools, so like a pool it is created outside the map, by the first caller only.
+     */
+    private ReplicaRouter replicaRouter(String configName, DbConnectionConfig config) {
+        CompletableFuture<ReplicaRouter> created = new CompletableFuture<>();
+        CompletableFuture<ReplicaRouter> existing = replicaRouters.putIfAbsent(configName, created);
+        if (existing != null) {
             try {
-                return createDataSource(k);
+                return existing.join();
+            } catch (CompletionException e) {
+                throw new RuntimeException("Failed to create read router for " + configName, e.getCause());
+            }
+        }
+        ReplicaRouter router;
+        try {
+            router = new ReplicaRouter(configName, config, this);
+        } catch (RuntimeException e) {
+            replicaRouters.remove(configName, created);
+            created.completeExceptionally(e);
+            throw e;
+        }
+        created.complete(router);
+        if (replicaRouters.get(configName) != created) {
+            // Closed while the router was starting; still serve this read, but stop the monitor
+            router.close();
+        }
+        return router;
+    }
+    
+    /**
+     * Describes the read replicas of a configuration: endpoint, lag and whether each is in rotation
+     * @param configName Name of the database configuration
+     * @return one line per replica, empty if reads have not been routed yet
+     */
+    public List<String> getReplicaStatus(String configName) {
+        CompletableFuture<ReplicaRouter> router = replicaRouters.get(configName);
+        return router == null || !router.isDone() || router.isCompletedExceptionally()
+            ? new ArrayList<>() : router.join().status();
+    }
+    
+    /**
+     * Gets or creates the read-only pool of a replica
+     * @param replicaName Name the replica's pool is registered under
+     * @param config Connection configuration of the replica
+     * @return The replica's data source
+     */
+    HikariDataSource getReplicaDataSource(String replicaName, DbConnectionConfig config) {
+        HikariDataSource dataSource = dataSources.get(replicaName);
+        if (dataSource != null) {
+            return dataSource;
+        }
+        return await(replicaName, startup(replicaName, () -> createDataSource(replicaName, config, true), null));
+    }
+    
+    /**
+     * Gets the host, port and credentials the pool of a configuration connects to. With SSH this
+     * is the local end of the tunnel, so other MySQL clients (e.g. a binlog reader) can reuse it.
+     * The pool and tunnel are created if they do not exist yet.
+     * @param configName Name of the database configuration
+     * @return The effective connection configuration
+     */
+    public DbConnectionConfig getEndpoint(String configName) {
+        getDataSource(configName);
+        return endpoints.get(configName);
+    }
+    
+    private HikariDataSource getDataSource(String configName) {
+        HikariDataSource dataSource = dataSources.get(configName);
+        if (dataSource != null) {
+            return dataSource;
+        }
+        // Create it here, or wait for the bootstrap or caller already creating it
+        return await(configName, startup(configName, () -> createDataSource(configName), null));
+    }
+    
+    /**
+     * Starts creating the pools and SSH tunnels of every configuration in DatabaseConfig in parallel,
+     * so the handshakes are done before the first query needs them. Returns at once; each
+     * configuration's bootstrap time is logged when it completes.
+     * @return Map of configuration name to a future completed when its pool is ready
+     */
+    public Map<String, CompletableFuture<Void>> bootstrapAll() {
+        Map<String, CompletableFuture<Void>> futures = new HashMap<>();
+        for (String configName : com.cloud.omuni_cloud.dbutil.config.DatabaseConfig.getAllConfigs().keySet()) {
+            futures.put(configName, bootstrap(configName));
+        }
+        return futures;
+    }
+    
+    /**
+     * Starts creating the pool and SSH tunnel of one configuration in the background
+     * @param configName Name of the database configuration
+     * @return future completed when the pool is ready, or exceptionally if it cannot be created
+     */
+    public CompletableFuture<Void> bootstrap(String configName) {
+        if (dataSources.containsKey(configName)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return startup(configName, () -> createDataSource(configName), bootstrapExecutor())
+            .thenAccept(dataSource -> { });
+    }
+    
+    /**
+     * Gets how long creating each pool took, including its SSH tunnel and first connection
+     * @return Map of configuration name to bootstrap time in milliseconds
+     */
+    public Map<String, Long> getBootstrapMillis() {
+        return new HashMap<>(bootstrapMillis);
+    }
+    
+    /**
+     * Registers the creation of a pool so that it happens once, however many callers need it.
+     * Unlike computeIfAbsent, a slow SSH handshake does not block callers of other pools.
+     * @param name Name the pool is registered under
+     * @param factory Creates the pool
+     * @param executor Executor to create the pool on, or null to create it on the calling thread
+     * @return future of the pool; a failed creation is forgotten so the next caller retries, and a
+     *         pool closed while it was starting completes exceptionally
+     */
+    private CompletableFuture<HikariDataSource> startup(String name, Callable<HikariDataSource> factory, Executor executor) {
+        CompletableFuture<HikariDataSource> created = new CompletableFuture<>();
+        CompletableFuture<HikariDataSource> existing = startups.putIfAbsent(name, created);
+        if (existing != null) {
+            return existing;
+        }
+        Runnable task = () -> {
+            long start = System.nanoTime();
+            try {
+                HikariDataSource dataSource = factory.call();
+                long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                dataSources.put(name, dataSource);
+                // close() forgets the startup before it closes the pools, so one of the two closes this pool
+                if (startups.get(name) != created) {
+                    discard(name, dataSource);
+                    throw new SQLException("Connection pool for " + name + " was closed while it was starting");
+                }
+                bootstrapMillis.put(name, millis);
+                System.out.println("Connection pool for " + name + " ready in " + millis + " ms");
+                created.complete(dataSource);
             } catch (Exception e) {
-                throw new RuntimeException("Failed to create data source for " + k, e);
+                startups.remove(name, created);
+                System.err.println("Connection pool for " + name + " failed after " +
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms: " + e.getMessage());
+                created.completeExceptionally(e);
             }
-        });
-        
-        // Get a connection from the pool
-        return dataSource.getConnection();
+        };
+        if (executor == null) {
+            task.run();
+        } else {
+            executor.execute(task);
+        }
+        return created;
+    }
+    
+    // Closes a pool, and its SSH tunnel, that finished starting after close() or closeAllConnections()
+    private void discard(String name, HikariDataSource dataSource) {
+        dataSources.remove(name, dataSource);
+        endpoints.remove(name);
+        dataSource.close();
+        Session session = sshSessions.remove(name);
+        if (session != null && session.isConnected()) {
+            session.disconnect();
+        }
+        System.out.println(" Closed connection pool for " + name + ", which finished starting after it was closed");
+    }
+    
+    private static HikariDataSource await(String name, CompletableFuture<HikariDataSource> startup) {
+        try {
+            return startup.join();
+        } catch (CompletionException e) {
+            throw new RuntimeException("Failed to create data source for " + name, e.getCause());
+        }
+    }
+    
+    private synchronized Executor bootstrapExecutor() {
+        if (bootstrapExecutor == null) {
+            bootstrapExecutor = Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "db-bootstrap");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return bootstrapExecutor;
     }
     
     /**
@@ -125,22 +344,23 @@ public class DatabaseConnection {
     private HikariDataSource createDataSource(String configName) throws Exception {
         // Get the database configuration
         DbConnectionConfig config = com.cloud.omuni_cloud.dbutil.config.DatabaseConfig.getDatabaseConfig(configName);
-        return createDataSource(config);
+        return createDataSource(configName, config, false);
     }
     
     /**
      * Creates a HikariCP data source using the provided configuration
+     * @param configName Name the data source is registered under
      * @param config The database configuration
+     * @param readOnly Whether connections are read-only, as for replicas
      * @return Configured Hikari data source
      * @throws Exception if data source creation fails
      */
-    private HikariDataSource createDataSource(DbConnectionConfig config) throws Exception {
-        // Create a unique identifier for this connection
-        String configId = config.getHost() + "_" + config.getPort() + "_" + config.getDatabase();
-            
+    private HikariDataSource createDataSource(String configName, DbConnectionConfig config, boolean readOnly)
+            throws Exception {
         // If SSH is required, set up the tunnel first
         if (config.useSsh()) {
-            int localPort = setupSshTunnel(configId, config);
+            // Registered under the pool's name so that closing the pool closes its tunnel
+            int localPort = setupSshTunnel(configName, config);
             // Create a new config for the tunneled connection
             config = new DbConnectionConfig(
                 "localhost", 
@@ -156,6 +376,7 @@ public class DatabaseConnection {
                 localPort
             );
         }
+        endpoints.put(configName, config);
         
         // Configure HikariCP
         HikariConfig hikariConfig = new HikariConfig();
@@ -180,6 +401,7 @@ public class DatabaseConnection {
         hikariConfig.setConnectionTimeout(CONNECTION_TIMEOUT);
         hikariConfig.setIdleTimeout(IDLE_TIMEOUT);
         hikariConfig.setMaxLifetime(MAX_LIFETIME);
+        hikariConfig.setReadOnly(readOnly);
         
         // Connection properties
         Properties props = new Properties();
@@ -197,6 +419,7 @@ public class DatabaseConnection {
         props.setProperty("cachePrepStmts", "true");
         props.setProperty("prepStmtCacheSize", "250");
         props.setProperty("prepStmtCacheSqlLimit", "2048");
+        props.setProperty("rewriteBatchedStatements", "true");
         
         hikariConfig.setDataSourceProperties(props);
         
@@ -208,6 +431,7 @@ public class DatabaseConnection {
             (config.getDatabase() != null ? config.getDatabase() : "default") + 
             "-" + System.currentTimeMillis();
         hikariConfig.setPoolName(poolName);
+        hikariConfig.setMetricsTrackerFactory(PoolMetrics.trackerFactory());
         
         // Log pool creation
         System.out.println("🔌 Creating connection pool " + poolName + 
@@ -245,7 +469,7 @@ public class DatabaseConnection {
             DbConnectionConfig config = new DbConnectionConfig(host, port, database, username, password);
             
             // Create a data source for this connection
-            HikariDataSource dataSource = createDataSource(config);
+            HikariDataSource dataSource = createDataSource(tempConfigName, config, false);
             dataSources.put(tempConfigName, dataSource);
             
             // Get and return a connection
@@ -269,6 +493,19 @@ public class DatabaseConnection {
         }
         
         try {
+            // Stop read routing and close the replica pools
+            closeRouter(replicaRouters.remove(configName));
+            Set<String> names = new HashSet<>(startups.keySet());
+            names.addAll(dataSources.keySet());
+            for (String name : names) {
+                if (name.startsWith(configName + ReplicaRouter.REPLICA_SUFFIX)) {
+                    close(name);
+                }
+            }
+            
+            // Forget the startup first: a pool still starting then closes itself when it finishes
+            startups.remove(configName);
+            
             // Close data source if it exists
             if (dataSources.containsKey(configName)) {
                 HikariDataSource dataSource = dataSources.get(configName);
@@ -282,6 +519,8 @@ public class DatabaseConnection {
                 }
                 dataSources.remove(configName);
             }
+            bootstrapMillis.remove(configName);
+            endpoints.remove(configName);
             
             // Close SSH session if it exists
             if (sshSessions.containsKey(configName)) {
@@ -301,10 +540,24 @@ public class DatabaseConnection {
         }
     }
     
+    // A router still starting is closed by its creator once it sees it was removed
+    private static void closeRouter(CompletableFuture<ReplicaRouter> router) {
+        if (router != null && router.isDone() && !router.isCompletedExceptionally()) {
+            router.join().close();
+        }
+    }
+    
     /**
      * Closes all database connections and SSH sessions
      */
     public void closeAllConnections() {
+        for (String configName : new ArrayList<>(replicaRouters.keySet())) {
+            closeRouter(replicaRouters.remove(configName));
+        }
+        
+        // Forget the startups first: pools still starting then close themselves when they finish
+        startups.clear();
+        
         // Close all data sources
         for (Map.Entry<String, HikariDataSource> entry : dataSources.entrySet()) {
             try {
@@ -317,6 +570,8 @@ public class DatabaseConnection {
             }
         }
         dataSources.clear();
+        bootstrapMillis.clear();
+        endpoints.clear();
         
         // Close all SSH sessions
         for (Map.Entry<String, Session> entry : sshSessions.entrySet()) {
@@ -351,7 +606,9 @@ public class DatabaseConnection {
             sanitizeIdentifier(tableName),
             sanitizeIdentifier(columnName));
             
-        try (Connection conn = getConnection(configName);
+        String fingerprint = QueryDescriptor.forQuery(configName, sql).getFingerprint();
+        SlowQueryLog.Timing timing = SlowQueryLog.start(configName, fingerprint);
+        try (Connection conn = timing.acquired(getReadConnection(configName));
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             
             stmt.setString(1, value);
@@ -359,7 +616,10 @@ public class DatabaseConnection {
                 return rs.next();
             }
         } catch (SQLException e) {
+            timing.failed();
             throw new SQLException("Error validating value existence: " + e.getMessage(), e);
+        } finally {
+            timing.stop();
         }
     }
     
@@ -431,7 +691,9 @@ public class DatabaseConnection {
             .append(String.join(" AND ", conditions))
             .append(" LIMIT 1");
             
-        try (Connection conn = getConnection(configName);
+        String fingerprint = QueryDescriptor.forQuery(configName, sql.toString()).getFingerprint();
+        SlowQueryLog.Timing timing = SlowQueryLog.start(configName, fingerprint);
+        try (Connection conn = timing.acquired(getReadConnection(configName));
              PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
             
             // Set parameters with proper type handling
@@ -459,8 +721,41 @@ public class DatabaseConnection {
                 return rs.next();
             }
         } catch (SQLException e) {
+            timing.failed();
             throw new SQLException("Error validating row existence: " + e.getMessage(), e);
+        } finally {
+            timing.stop();
+        }
+    }
+    
+    /**
+     * Gets the live pool statistics of every open connection pool
+     * @return Map of configuration name to the pool's MXBean (active, idle, total and waiting threads)
+     */
+    public Map<String, HikariPoolMXBean> getPoolMXBeans() {
+        Map<String, HikariPoolMXBean> pools = new HashMap<>();
+        for (Map.Entry<String, HikariDataSource> entry : dataSources.entrySet()) {
+            HikariDataSource dataSource = entry.getValue();
+            if (dataSource != null && !dataSource.isClosed() && dataSource.getHikariPoolMXBean() != null) {
+                pools.put(entry.getKey(), dataSource.getHikariPoolMXBean());
+            }
+        }
+        return pools;
+    }
+    
+    /**
+     * Gets the Hikari pool name of every open connection pool; metrics are tagged with it
+     * @return Map of configuration name to pool name
+     */
+    public Map<String, String> getPoolNames() {
+        Map<String, String> pools = new HashMap<>();
+        for (Map.Entry<String, HikariDataSource> entry : dataSources.entrySet()) {
+            HikariDataSource dataSource = entry.getValue();
+            if (dataSource != null && !dataSource.isClosed()) {
+                pools.put(entry.getKey(), dataSource.getPoolName());
+            }
         }
+        return pools;
     }
     
     /**
@@ -0,0 +1,422 @@
+package com.cloud.omuni_cloud.dbutil;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Copies rows of a table from one database configuration to another. A reader thread streams
+ * the source rows in key order into a bounded queue, and the calling thread batch-inserts them
+ * into the target, committing every batch. When the writer falls behind the queue fills and the
+ * reader blocks, so memory stays bounded by the queue capacity whatever the table size.
+ *
+ * <p>Because rows are read in key order and committed in that order, a copy that stopped
+ * part-way can be resumed from the highest key already present in the target:
+ * <pre>
+ * DatabaseCopier.CopyResult result = new DatabaseCopier("nickfury", "chandler")
+ *     .withBatchSize(1000)
+ *     .withResume(true)
+ *     .copyTable("nickfury.sale_orders", "fixtures.sale_orders", "id", "id", "orderNo", "status", "total");
+ * </pre>
+ */
+public class DatabaseCopier {
+    private static final Object[] END_OF_ROWS = new Object[0];
+
+    private final String sourceConfig;
+    private final String targetConfig;
+    private int batchSize = 1000;
+    private int queueCapacity = 10_000;
+    private boolean upsert = false;
+    private boolean resume = false;
+    private Object startAfter;
+    private String where;
+    private Object[] whereParams = new Object[0];
+    private String[] targetColumns;
+    private long progressEveryRows = 100_000;
+
+    /**
+     * Creates a copier between two database configurations
+     * @param sourceConfig Name of the configuration to read from
+     * @param targetConfig Name of the configuration to write to
+     */
+    public DatabaseCopier(String sourceConfig, String targetConfig) {
+        this.sourceConfig = sourceConfig;
+        this.targetConfig = targetConfig;
+    }
+
+    // Builder-style setters for fluent configuration
+    public DatabaseCopier withBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Sets how many rows may wait between reader and writer before the reader blocks
+     */
+    public DatabaseCopier withQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+        return this;
+    }
+
+    /**
+     * Updates target rows whose key already exists instead of failing on them
+     */
+    public DatabaseCopier withUpsert(boolean upsert) {
+        this.upsert = upsert;
+        return this;
+    }
+
+    /**
+     * Continues after the highest key already in the target table
+     */
+    public DatabaseCopier withResume(boolean resume) {
+        this.resume = resume;
+        return this;
+    }
+
+    /**
+     * Copies only rows whose key is greater than the given key
+     */
+    public DatabaseCopier withStartAfter(Object key) {
+        this.startAfter = key;
+        return this;
+    }
+
+    /**
+     * Restricts the source rows with an extra condition, e.g. "status = ?"
+     */
+    public DatabaseCopier withWhere(String condition, Object... params) {
+        this.where = condition;
+        this.whereParams = params != null ? params : new Object[0];
+        return this;
+    }
+
+    /**
+     * Writes the source columns to differently named target columns, in the same order
+     */
+    public DatabaseCopier withTargetColumns(String... targetColumns) {
+        this.targetColumns = targetColumns;
+        return this;
+    }
+
+    public DatabaseCopier withProgressEvery(long rows) {
+        this.progressEveryRows = rows;
+        return this;
+    }
+
+    /**
+     * Copies the given columns of a table
+     * @param sourceTable Table to read, optionally schema-qualified
+     * @param targetTable Table to write, optionally schema-qualified
+     * @param keyColumn Unique, ordered column used for ordering and resuming; must be one of the columns
+     * @param columns Columns to copy
+     * @return throughput and backpressure figures of the copy
+     * @throws SQLException if reading or writing fails; rows committed before the failure stay copied
+     * @throws InterruptedException if interrupted while copying
+     */
+    public CopyResult copyTable(String sourceTable, String targetTable, String keyColumn, String... columns)
+            throws SQLException, InterruptedException {
+        if (columns == null || columns.length == 0) {
+            throw new IllegalArgumentException("At least one column must be copied");
+        }
+        String[] writeColumns = targetColumns != null ? targetColumns : columns;
+        if (writeColumns.length != columns.length) {
+            throw new IllegalArgumentException("Number of target columns must match number of source columns");
+        }
+        int keyIndex = Arrays.asList(columns).indexOf(keyColumn);
+        if (keyIndex < 0) {
+            throw new IllegalArgumentException("Key column " + keyColumn + " must be one of the copied columns");
+        }
+
+        try (DatabaseManager source = new DatabaseManager(sourceConfig);
+             DatabaseManager target = new DatabaseManager(targetConfig)) {
+
+            Object fromKey = startAfter;
+            if (resume) {
+                // From the primary: a lagging replica would resume before rows already copied
+                Object[] max = new Object[1];
+                target.forEachRowOnPrimary("SELECT MAX(" + identifier(writeColumns[keyIndex]) + ") FROM " +
+                                           identifier(targetTable), row -> max[0] = row.get(0));
+                Object maxKey = max[0];
+                if (maxKey != null) {
+                    fromKey = maxKey;
+                    System.out.println("Resuming copy of " + sourceTable + " after " + keyColumn + " = " + maxKey);
+                }
+            }
+
+            String selectSql = buildSelect(sourceTable, keyColumn, columns, fromKey != null);
+            Object[] selectParams = buildSelectParams(fromKey);
+            String insertSql = buildInsert(targetTable, writeColumns, keyIndex);
+
+            System.out.println("Copying " + sourceConfig + ":" + sourceTable + " -> " + targetConfig + ":" + targetTable);
+            Pipeline pipeline = new Pipeline(columns.length);
+            long start = System.nanoTime();
+            Thread reader = new Thread(() -> pipeline.read(source, selectSql, selectParams),
+                "copy-reader-" + sourceTable);
+            reader.setDaemon(true);
+            reader.start();
+
+            long written;
+            try {
+                written = target.executeBatch(insertSql, pipeline, batchSize);
+            } catch (SQLException | RuntimeException e) {
+                pipeline.cancel();
+                reader.join(TimeUnit.SECONDS.toMillis(30));
+                throw e;
+            }
+            reader.join();
+
+            Throwable readError = pipeline.readError.get();
+            if (readError != null) {
+                throw new SQLException("Error reading " + sourceTable + " after " + pipeline.rowsWritten.get() +
+                                       " copied rows: " + readError.getMessage(), readError);
+            }
+            long elapsedNanos = System.nanoTime() - start;
+            CopyResult result = new CopyResult(pipeline.rowsRead.get(), pipeline.rowsWritten.get(), written,
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                TimeUnit.NANOSECONDS.toMillis(pipeline.readerBlockedNanos.get()),
+                TimeUnit.NANOSECONDS.toMillis(pipeline.writerWaitNanos.get()),
+                pipeline.lastKeyRead(keyIndex));
+            System.out.println("Copy finished: " + result);
+            return result;
+        }
+    }
+
+    private String buildSelect(String table, String keyColumn, String[] columns, boolean hasStartKey) {
+        StringBuilder sql = new StringBuilder("SELECT ");
+        for (int i = 0; i < columns.length; i++) {
+            sql.append(i > 0 ? ", " : "").append(identifier(columns[i]));
+        }
+        sql.append(" FROM ").append(identifier(table));
+        List<String> conditions = new ArrayList<>();
+        if (hasStartKey) {
+            conditions.add(identifier(keyColumn) + " > ?");
+        }
+        if (where != null && !where.trim().isEmpty()) {
+            conditions.add("(" + where + ")");
+        }
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        sql.append(" ORDER BY ").append(identifier(keyColumn));
+        return sql.toString();
+    }
+
+    private Object[] buildSelectParams(Object fromKey) {
+        List<Object> params = new ArrayList<>();
+        if (fromKey != null) {
+            params.add(fromKey);
+        }
+        Collections.addAll(params, whereParams);
+        return params.toArray();
+    }
+
+    private String buildInsert(String table, String[] columns, int keyIndex) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(identifier(table)).append(" (");
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < columns.length; i++) {
+            sql.append(i > 0 ? ", " : "").append(identifier(columns[i]));
+            placeholders.append(i > 0 ? ", " : "").append('?');
+        }
+        sql.append(") VALUES (").append(placeholders).append(')');
+        if (upsert) {
+            StringBuilder updates = new StringBuilder();
+            for (int i = 0; i < columns.length; i++) {
+                if (i == keyIndex) {
+                    continue;
+                }
+                String column = identifier(columns[i]);
+                updates.append(updates.length() > 0 ? ", " : "").append(column).append(" = VALUES(").append(column).append(')');
+            }
+            if (updates.length() > 0) {
+                sql.append(" ON DUPLICATE KEY UPDATE ").append(updates);
+            }
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Checks a table or column name, allowing one schema qualifier
+     */
+    static String identifier(String name) {
+        if (name == null || !name.matches("^[A-Za-z0-9_]+(\\.[A-Za-z0-9_]+)?$")) {
+            throw new IllegalArgumentException("Invalid identifier: " + name);
+        }
+        return name;
+    }
+
+    /**
+     * Bounded hand-off between the reader thread and the writer. The writer consumes it as the
+     * parameter source of DatabaseManager.executeBatch.
+     */
+    private class Pipeline implements Iterable<Object[]> {
+        private final BlockingQueue<Object[]> queue = new ArrayBlockingQueue<>(queueCapacity);
+        private final int columnCount;
+        private final AtomicReference<Throwable> readError = new AtomicReference<>();
+        private final AtomicLong rowsRead = new AtomicLong();
+        private final AtomicLong rowsWritten = new AtomicLong();
+        private final AtomicLong readerBlockedNanos = new AtomicLong();
+        private final AtomicLong writerWaitNanos = new AtomicLong();
+        private volatile boolean cancelled;
+        private volatile Object[] lastRow;
+
+        Pipeline(int columnCount) {
+            this.columnCount = columnCount;
+        }
+
+        void cancel() {
+            cancelled = true;
+        }
+
+        Object lastKeyRead(int keyIndex) {
+            Object[] row = lastRow;
+            return row == null ? null : row[keyIndex];
+        }
+
+        void read(DatabaseManager source, String sql, Object[] params) {
+            try {
+                source.forEachRow(sql, row -> {
+                    Object[] values = row.toArray();
+                    if (values.length != columnCount) {
+                        throw new SQLException("Expected " + columnCount + " columns but got " + values.length);
+                    }
+                    put(values);
+                    rowsRead.incrementAndGet();
+                    lastRow = values;
+                }, params);
+            } catch (SQLException | RuntimeException e) {
+                if (!cancelled) {
+                    readError.set(e);
+                }
+            } finally {
+                try {
+                    put(END_OF_ROWS);
+                } catch (SQLException e) {
+                    // Writer already stopped
+                }
+            }
+        }
+
+        private void put(Object[] values) throws SQLException {
+            long waitStart = System.nanoTime();
+            try {
+                while (!queue.offer(values, 100, TimeUnit.MILLISECONDS)) {
+                    if (cancelled) {
+                        throw new SQLException("Copy cancelled");
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while queueing rows", e);
+            } finally {
+                readerBlockedNanos.addAndGet(System.nanoTime() - waitStart);
+            }
+        }
+
+        @Override
+        public Iterator<Object[]> iterator() {
+            return new Iterator<Object[]>() {
+                private Object[] next;
+                private boolean finished;
+
+                @Override
+                public boolean hasNext() {
+                    if (next == null && !finished) {
+                        long waitStart = System.nanoTime();
+                        try {
+                            Object[] values = queue.take();
+                            if (values == END_OF_ROWS) {
+                                finished = true;
+                            } else {
+                                next = values;
+                            }
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new IllegalStateException("Interrupted while waiting for source rows", e);
+                        } finally {
+                            writerWaitNanos.addAndGet(System.nanoTime() - waitStart);
+                        }
+                    }
+                    return next != null;
+                }
+
+                @Override
+                public Object[] next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    Object[] values = next;
+                    next = null;
+                    long written = rowsWritten.incrementAndGet();
+                    if (progressEveryRows > 0 && written % progressEveryRows == 0) {
+                        System.out.println("Copied " + written + " rows");
+                    }
+                    return values;
+                }
+            };
+        }
+    }
+
+    /**
+     * Outcome of a copy
+     */
+    public static class CopyResult {
+        private final long rowsRead;
+        private final long rowsWritten;
+        private final long rowsAffected;
+        private final long elapsedMillis;
+        private final long readerBlockedMillis;
+        private final long writerWaitMillis;
+        private final Object lastKey;
+
+        CopyResult(long rowsRead, long rowsWritten, long rowsAffected, long elapsedMillis,
+                   long readerBlockedMillis, long writerWaitMillis, Object lastKey) {
+            this.rowsRead = rowsRead;
+            this.rowsWritten = rowsWritten;
+            this.rowsAffected = rowsAffected;
+            this.elapsedMillis = elapsedMillis;
+            this.readerBlockedMillis = readerBlockedMillis;
+            this.writerWaitMillis = writerWaitMillis;
+            this.lastKey = lastKey;
+        }
+
+        // Getters
+        public long getRowsRead() { return rowsRead; }
+        public long getRowsWritten() { return rowsWritten; }
+        public long getRowsAffected() { return rowsAffected; }
+        public long getElapsedMillis() { return elapsedMillis; }
+        public long getReaderBlockedMillis() { return readerBlockedMillis; }
+        public long getWriterWaitMillis() { return writerWaitMillis; }
+        public Object getLastKey() { return lastKey; }
+
+        public double getRowsPerSecond() {
+            return elapsedMillis == 0 ? rowsWritten : rowsWritten * 1000.0 / elapsedMillis;
+        }
+
+        /**
+         * Names the side that limited throughput: the reader blocked on a full queue means the
+         * target was the bottleneck, the writer waiting on an empty queue means the source was
+         */
+        public String getBottleneck() {
+            return readerBlockedMillis > writerWaitMillis ? "target" : "source";
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                "%d rows in %.1fs (%.0f rows/s), reader blocked %dms, writer waited %dms, bottleneck=%s, lastKey=%s",
+                rowsWritten, elapsedMillis / 1000.0, getRowsPerSecond(), readerBlockedMillis, writerWaitMillis,
+                getBottleneck(), lastKey);
+        }
+    }
+}
@@ -1,19 +1,58 @@
 package com.cloud.omuni_cloud.dbutil;
 
 import com.cloud.omuni_cloud.dbutil.config.DbConnectionConfig;
+import com.opencsv.CSVWriter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.sql.*;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Utility class to simplify common database operations using DatabaseConnection.
  * Provides a higher-level interface for executing queries and updates.
  */
 public class DatabaseManager implements AutoCloseable {
+    /** Names of the calls checked by {@link #verifyOrderCallsInChandlerDBforBataOrders(String)} */
+    public static final String BOOKING_CALL = "booking";
+    public static final String SALE_CALL = "sale";
     private static final DatabaseConnection dbConnection = DatabaseConnection.getInstance();
+    private static final int VERIFY_CHUNK_SIZE = 500;
+    private static final long DEFAULT_FAN_OUT_TIMEOUT_SECONDS = 30;
+    private static final int CSV_BUFFER_SIZE = 64 * 1024;
+    private static final int CSV_CHECK_EVERY_ROWS = 100_000;
+    private static final int DEFAULT_DEADLOCK_RETRIES = 3;
+    private static final int ER_LOCK_DEADLOCK = 1213;
+    private static ExecutorService fanOutExecutor;
     private final String configName;
+    private long statementTimeoutMillis;
+    private int deadlockRetries = DEFAULT_DEADLOCK_RETRIES;
     private boolean connectionClosed = false;
 
     /**
@@ -24,61 +63,537 @@ public class DatabaseManager implements AutoCloseable {
         this.configName = configName;
     }
 
+    // Builder-style setters for fluent configuration
     /**
-     * Executes a SELECT query and returns the results as a list of maps
+     * Gives every query and update without an explicit timeout this deadline, so a statement stuck
+     * on a lock or a stalled tunnel cannot hold its pooled connection and caller indefinitely.
+     * A batch gets the deadline per chunk; streaming reads, which run as long as their consumer
+     * reads, are not limited. Zero, the default, means no deadline.
+     */
+    public DatabaseManager withStatementTimeout(long timeout, TimeUnit unit) {
+        this.statementTimeoutMillis = unit.toMillis(timeout);
+        return this;
+    }
+
+    /**
+     * Sets how often {@link #inTransaction(TransactionWork)} reruns a transaction chosen as a
+     * deadlock victim before giving up; 3 by default
+     */
+    public DatabaseManager withDeadlockRetries(int retries) {
+        if (retries < 0) {
+            throw new IllegalArgumentException("Deadlock retries cannot be negative");
+        }
+        this.deadlockRetries = retries;
+        return this;
+    }
+
+    public long getStatementTimeoutMillis() { return statementTimeoutMillis; }
+    public int getDeadlockRetries() { return deadlockRetries; }
+
+    /**
+     * Executes a SELECT query and returns the results as a list of maps. The maps are read-only
+     * views over a compact ResultTable, so column names are not repeated in every row.
      * @param query The SQL query to execute
      * @param params Optional query parameters
      * @return List of maps representing the result set rows
      * @throws SQLException if a database access error occurs
      */
     public List<Map<String, Object>> executeQuery(String query, Object... params) throws SQLException {
+        return query(query, params).asMaps();
+    }
+
+    /**
+     * Executes a SELECT query that must finish within the given time, counted from the call. At the
+     * deadline the statement is cancelled and its connection goes back to the pool. Waiting for a
+     * pooled connection uses up the time, but that wait itself ends only at the pool's connection
+     * timeout; a deadline that passes during it fails the call before the statement starts.
+     * @param timeout Time the caller is willing to wait
+     * @param unit Unit of the timeout
+     * @param query The SQL query to execute
+     * @param params Optional query parameters
+     * @return List of maps representing the result set rows
+     * @throws SQLTimeoutException if the deadline passed
+     * @throws SQLException if a database access error occurs
+     */
+    public List<Map<String, Object>> executeQuery(long timeout, TimeUnit unit, String query, Object... params)
+            throws SQLException {
+        return query(timeout, unit, query, params).asMaps();
+    }
+
+    /**
+     * Executes a SELECT query and returns the results in a compact, column-oriented table
+     * with typed getters. Like the other reads, it runs on a read replica when the configuration
+     * declares replicas; updates, batches and {@link #getConnection()} always use the primary.
+     * @param query The SQL query to execute
+     * @param params Optional query parameters
+     * @return The result table
+     * @throws SQLException if a database access error occurs
+     */
+    public ResultTable query(String query, Object... params) throws SQLException {
+        return query(query, defaultDeadline(), params);
+    }
+
+    /**
+     * Executes a SELECT query that must finish within the given time, counted from the call, and
+     * returns the results in a compact, column-oriented table. As with
+     * {@link #executeQuery(long, TimeUnit, String, Object...)} the wait for a pooled connection is
+     * bounded by the pool's connection timeout, not by the deadline.
+     * @param timeout Time the caller is willing to wait
+     * @param unit Unit of the timeout
+     * @param query The SQL query to execute
+     * @param params Optional query parameters
+     * @return The result table
+     * @throws SQLTimeoutException if the deadline passed
+     * @throws SQLException if a database access error occurs
+     */
+    public ResultTable query(long timeout, TimeUnit unit, String query, Object... params) throws SQLException {
+        return query(query, StatementDeadline.after(timeout, unit), params);
+    }
+
+    private ResultTable query(String query, StatementDeadline deadline, Object[] params) throws SQLException {
         if (connectionClosed) {
             throw new SQLException("DatabaseManager has been closed. Create a new instance to execute queries.");
         }
         
-        List<Map<String, Object>> results = new ArrayList<>();
-        Connection conn = null;
-        PreparedStatement stmt = null;
-        ResultSet rs = null;
+        QueryDescriptor descriptor = QueryDescriptor.forQuery(configName, query);
+        descriptor.checkParameters(params);
         
-        try {
-            conn = dbConnection.getConnection(configName);
-            stmt = conn.prepareStatement(query);
+        SlowQueryLog.Timing timing = SlowQueryLog.start(configName, descriptor.getFingerprint());
+        try (Connection conn = timing.acquired(dbConnection.getReadConnection(configName));
+             PreparedStatement stmt = conn.prepareStatement(query);
+             StatementDeadline.Armed armed = deadline.arm(conn, stmt)) {
             
             // Set parameters if any
-            if (params != null) {
-                for (int i = 0; i < params.length; i++) {
-                    stmt.setObject(i + 1, params[i]);
+            setParameters(stmt, params);
+            
+            // Execute query and process results
+            try (ResultSet rs = stmt.executeQuery()) {
+                return ResultTable.read(rs, descriptor.columnsOf(rs));
+            }
+            
+        } catch (SQLException e) {
+            timing.failed();
+            throw failure("Error executing query: ", deadline, e);
+        } finally {
+            timing.stop();
+        }
+    }
+
+    /**
+     * Runs the same SELECT query on several database configurations at once, for diagnostics and
+     * verifications that would otherwise visit nickfury, chandler and the rest one after another.
+     * Waits at most 30 seconds; see {@link #queryAll(Collection, long, TimeUnit, String, Object...)}.
+     * @param configNames Names of the database configurations to query
+     * @param query The SQL query to execute
+     * @param params Optional query parameters
+     * @return the result of every configuration, or why it has none
+     */
+    public static FanOutResult queryAll(Collection<String> configNames, String query, Object... params) {
+        return queryAll(configNames, DEFAULT_FAN_OUT_TIMEOUT_SECONDS, TimeUnit.SECONDS, query, params);
+    }
+
+    /**
+     * Runs the same SELECT query on several database configurations at once. Every configuration
+     * gets the same deadline, counted from the call; one that has not answered by then is recorded
+     * as timed out and its statement is cancelled, so a slow or unreachable source neither holds
+     * back the results of the others nor keeps its pooled connection.
+     * @param configNames Names of the database configurations to query
+     * @param timeout How long each configuration may take, including opening its pool
+     * @param unit Unit of the timeout
+     * @param query The SQL query to execute
+     * @param params Optional query parameters
+     * @return the result of every configuration, or why it has none
+     */
+    public static FanOutResult queryAll(Collection<String> configNames, long timeout, TimeUnit unit,
+                                        String query, Object... params) {
+        StatementDeadline deadline = StatementDeadline.after(timeout, unit);
+        
+        Map<String, Long> finishedMillis = new ConcurrentHashMap<>();
+        Map<String, Future<ResultTable>> running = new LinkedHashMap<>();
+        for (String configName : new LinkedHashSet<>(configNames)) {
+            running.put(configName, fanOutExecutor().submit(() -> {
+                long start = System.nanoTime();
+                try {
+                    return new DatabaseManager(configName).query(query, deadline, params);
+                } finally {
+                    finishedMillis.put(configName, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
                 }
+            }));
+        }
+        
+        FanOutResult result = new FanOutResult();
+        for (Map.Entry<String, Future<ResultTable>> source : running.entrySet()) {
+            String configName = source.getKey();
+            Future<ResultTable> future = source.getValue();
+            try {
+                ResultTable table = future.get(deadline.remainingNanos(), TimeUnit.NANOSECONDS);
+                result.succeeded(configName, table, finishedMillis.getOrDefault(configName, 0L));
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                result.failed(configName, new SQLTimeoutException("No answer from " + configName +
+                              " within " + deadline.getTimeoutMillis() + " ms"), deadline.getTimeoutMillis());
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                SQLException error = cause instanceof SQLException ? (SQLException) cause
+                    : new SQLException("Error querying " + configName + ": " + cause.getMessage(), cause);
+                result.failed(configName, error, finishedMillis.getOrDefault(configName, 0L));
+            } catch (InterruptedException e) {
+                // Keep the flag set, so the remaining sources are recorded as interrupted too
+                Thread.currentThread().interrupt();
+                future.cancel(true);
+                result.failed(configName, new SQLException("Interrupted while waiting for " + configName, e),
+                              finishedMillis.getOrDefault(configName, 0L));
+            }
+        }
+        return result;
+    }
+
+    private static synchronized ExecutorService fanOutExecutor() {
+        if (fanOutExecutor == null) {
+            fanOutExecutor = Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "db-fan-out");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return fanOutExecutor;
+    }
+
+    /**
+     * Executes a SELECT query and hands each row to a handler as it arrives from the server.
+     * Rows are streamed rather than buffered, so memory use does not grow with the result size.
+     * The connection is held until the last row was handled; the handler must not run other
+     * statements on this DatabaseManager's pool while expecting this connection to be free.
+     * No statement timeout applies, since the read lasts as long as the handler takes.
+     * @param query The SQL query to execute
+     * @param handler Handler called once per row
+     * @param params Optional query parameters
+     * @return The number of rows handled
+     * @throws SQLException if a database access error occurs or the handler throws
+     */
+    public long forEachRow(String query, RowHandler handler, Object... params) throws SQLException {
+        return forEachRow(false, query, handler, params);
+    }
+
+    /**
+     * Streams a query like {@link #forEachRow(String, RowHandler, Object...)}, but always from the
+     * primary, for reads that must see writes made moments ago
+     */
+    long forEachRowOnPrimary(String query, RowHandler handler, Object... params) throws SQLException {
+        return forEachRow(true, query, handler, params);
+    }
+
+    private long forEachRow(boolean onPrimary, String query, RowHandler handler, Object[] params) throws SQLException {
+        if (connectionClosed) {
+            throw new SQLException("DatabaseManager has been closed. Create a new instance to execute queries.");
+        }
+        
+        QueryDescriptor descriptor = QueryDescriptor.forQuery(configName, query);
+        descriptor.checkParameters(params);
+        
+        SlowQueryLog.Timing timing = SlowQueryLog.start(configName, descriptor.getFingerprint());
+        try (Connection conn = timing.acquired(onPrimary ? dbConnection.getConnection(configName)
+                                                         : dbConnection.getReadConnection(configName));
+             PreparedStatement stmt = prepareStreaming(conn, query, params);
+             ResultSet rs = stmt.executeQuery()) {
+            
+            ColumnIndex columns = descriptor.columnsOf(rs);
+            long count = 0;
+            while (rs.next()) {
+                handler.handle(columns.readRow(rs));
+                count++;
             }
+            return count;
             
-            // Execute query and process results
+        } catch (SQLException e) {
+            timing.failed();
+            throw new SQLException("Error streaming query: " + e.getMessage(), e);
+        } finally {
+            timing.stop();
+        }
+    }
+
+    /**
+     * Executes a SELECT query and returns its rows as a lazily read stream. The statement and
+     * connection stay open until the stream is closed, so use it in try-with-resources:
+     * <pre>
+     * try (Stream&lt;Row&gt; rows = dbManager.stream("SELECT * FROM nickfury.sale_orders")) {
+     *     rows.forEach(row -&gt; ...);
+     * }
+     * </pre>
+     * Errors while reading rows are thrown as RuntimeException wrapping the SQLException.
+     * No statement timeout applies, since the read lasts as long as the stream is consumed.
+     * @param query The SQL query to execute
+     * @param params Optional query parameters
+     * @return Stream of rows, to be closed by the caller
+     * @throws SQLException if the query cannot be executed
+     */
+    public Stream<Row> stream(String query, Object... params) throws SQLException {
+        if (connectionClosed) {
+            throw new SQLException("DatabaseManager has been closed. Create a new instance to execute queries.");
+        }
+        
+        QueryDescriptor descriptor = QueryDescriptor.forQuery(configName, query);
+        descriptor.checkParameters(params);
+        
+        SlowQueryLog.Timing timing = SlowQueryLog.start(configName, descriptor.getFingerprint());
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            conn = timing.acquired(dbConnection.getReadConnection(configName));
+            stmt = prepareStreaming(conn, query, params);
             rs = stmt.executeQuery();
-            ResultSetMetaData metaData = rs.getMetaData();
-            int columnCount = metaData.getColumnCount();
+            ColumnIndex columns = descriptor.columnsOf(rs);
             
-            while (rs.next()) {
-                Map<String, Object> row = new HashMap<>();
-                for (int i = 1; i <= columnCount; i++) {
-                    String columnName = metaData.getColumnLabel(i);
-                    Object value = rs.getObject(i);
-                    row.put(columnName, value);
+            final ResultSet resultSet = rs;
+            Spliterator<Row> rows = new Spliterators.AbstractSpliterator<Row>(Long.MAX_VALUE,
+                    Spliterator.ORDERED | Spliterator.NONNULL) {
+                @Override
+                public boolean tryAdvance(Consumer<? super Row> action) {
+                    try {
+                        if (!resultSet.next()) {
+                            return false;
+                        }
+                        action.accept(columns.readRow(resultSet));
+                        return true;
+                    } catch (SQLException e) {
+                        timing.failed();
+                        throw new RuntimeException("Error streaming query: " + e.getMessage(), e);
+                    }
                 }
-                results.add(row);
+            };
+            
+            final Connection connection = conn;
+            final PreparedStatement statement = stmt;
+            // The statement counts as running until the stream is closed
+            return StreamSupport.stream(rows, false).onClose(() -> {
+                closeQuietly(resultSet, statement, connection);
+                timing.stop();
+            });
+            
+        } catch (SQLException e) {
+            timing.failed();
+            closeQuietly(rs, stmt, conn);
+            timing.stop();
+            throw new SQLException("Error streaming query: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Exports the result of a SELECT query to a CSV file, with a header row of column labels.
+     * Rows are streamed from a server-side cursor straight into a buffered writer, one row at a
+     * time, so an export of millions of rows runs in constant memory. A file name ending in .gz
+     * is written gzip-compressed. SQL NULL is written as an empty field. Rows go to a temporary
+     * file beside the target, moved over it once complete, so a failed export leaves an existing
+     * file as it was.
+     * @param query The SQL query to execute
+     * @param params Query parameters, or null for none
+     * @param file File to write; replaced if it exists
+     * @return The number of rows exported, not counting the header
+     * @throws SQLException if a database access error occurs
+     * @throws IOException if the file cannot be written
+     */
+    public long exportToCsv(String query, Object[] params, Path file) throws SQLException, IOException {
+        if (connectionClosed) {
+            throw new SQLException("DatabaseManager has been closed. Create a new instance to execute queries.");
+        }
+        Object[] values = params == null ? new Object[0] : params;
+        QueryDescriptor descriptor = QueryDescriptor.forQuery(configName, query);
+        descriptor.checkParameters(values);
+        
+        boolean gzip = file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".gz");
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".part");
+        SlowQueryLog.Timing timing = SlowQueryLog.start(configName, descriptor.getFingerprint());
+        long count = 0;
+        try {
+            try (Connection conn = timing.acquired(dbConnection.getReadConnection(configName));
+                 PreparedStatement stmt = prepareStreaming(conn, query, values);
+                 ResultSet rs = stmt.executeQuery();
+                 CSVWriter csv = new CSVWriter(new BufferedWriter(new OutputStreamWriter(gzip
+                     ? new GZIPOutputStream(Files.newOutputStream(temp), CSV_BUFFER_SIZE)
+                     : Files.newOutputStream(temp), StandardCharsets.UTF_8), CSV_BUFFER_SIZE))) {
+                
+                ColumnIndex columns = descriptor.columnsOf(rs);
+                String[] line = columns.getLabels().toArray(new String[0]);
+                csv.writeNext(line, false);
+                while (rs.next()) {
+                    for (int i = 0; i < line.length; i++) {
+                        line[i] = rs.getString(i + 1);
+                    }
+                    csv.writeNext(line, false);
+                    // CSVWriter keeps write errors to itself; check now and then to stop a failing export early
+                    if (++count % CSV_CHECK_EVERY_ROWS == 0 && csv.checkError()) {
+                        throw csv.getException();
+                    }
+                }
+                if (csv.checkError()) {
+                    throw csv.getException();
+                }
+            }
+            // Only after the writer is closed, so a .gz file is complete when it appears
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
             }
+            return count;
+            
+        } catch (SQLException e) {
+            timing.failed();
+            Files.deleteIfExists(temp);
+            throw new SQLException("Error exporting query after " + count + " rows: " + e.getMessage(), e);
+        } catch (IOException | RuntimeException e) {
+            timing.failed();
+            Files.deleteIfExists(temp);
+            throw e;
+        } finally {
+            timing.stop();
+        }
+    }
+
+    /**
+     * Scans a table in key order, a page at a time, prefetching the next page in the background.
+     * Every page is a keyset query, {@code WHERE key > ? ORDER BY key LIMIT n}, that seeks the key's
+     * index, so deep pages are as cheap as the first; see {@link KeysetScan}.
+     * @param tableName Table to scan, optionally schema-qualified
+     * @param keyColumn Unique, indexed column to order and page by, such as id
+     * @param columns Columns to read, including the key column; none reads all columns
+     * @return the scan, to be closed by the caller
+     */
+    public KeysetScan scan(String tableName, String keyColumn, String... columns) {
+        return new KeysetScan(this, tableName, keyColumn, columns);
+    }
+
+    /**
+     * Starts a bundle of SELECT queries that are sent to the database in one round trip;
+     * see {@link QueryBundle}
+     * @return an empty bundle on this manager's configuration
+     */
+    public QueryBundle bundle() {
+        return new QueryBundle(this);
+    }
+
+    /**
+     * Sends the queries of a bundle as one multi-statement execute() and maps each result set,
+     * walked with getMoreResults(), back to its query
+     */
+    Map<String, ResultTable> execute(QueryBundle bundle) throws SQLException {
+        if (connectionClosed) {
+            throw new SQLException("DatabaseManager has been closed. Create a new instance to execute queries.");
+        }
+        List<String> names = bundle.getNames();
+        List<String> queries = bundle.getQueries();
+        Map<String, ResultTable> results = new LinkedHashMap<>();
+        if (names.isEmpty()) {
+            return results;
+        }
+        
+        QueryDescriptor[] descriptors = new QueryDescriptor[names.size()];
+        StringBuilder sql = new StringBuilder();
+        List<Object> params = new ArrayList<>();
+        for (int i = 0; i < descriptors.length; i++) {
+            descriptors[i] = QueryDescriptor.forQuery(configName, queries.get(i));
+            descriptors[i].checkParameters(bundle.getParams().get(i));
+            sql.append(i > 0 ? ";\n" : "").append(queries.get(i));
+            Collections.addAll(params, bundle.getParams().get(i));
+        }
+        String combined = sql.toString();
+        
+        StatementDeadline deadline = defaultDeadline();
+        SlowQueryLog.Timing timing = SlowQueryLog.start(configName,
+            QueryDescriptor.forQuery(configName, combined).getFingerprint());
+        // Connector/J prepares multi-statement SQL on the client, so the placeholders still work
+        try (Connection conn = timing.acquired(dbConnection.getReadConnection(configName));
+             PreparedStatement stmt = conn.prepareStatement(combined);
+             StatementDeadline.Armed armed = deadline.arm(conn, stmt)) {
             
+            setParameters(stmt, params.toArray());
+            boolean isResultSet = stmt.execute();
+            for (int i = 0; i < descriptors.length; i++) {
+                if (i > 0) {
+                    isResultSet = stmt.getMoreResults();
+                }
+                if (!isResultSet) {
+                    throw new SQLException("Query " + names.get(i) + " did not return a result set");
+                }
+                try (ResultSet rs = stmt.getResultSet()) {
+                    results.put(names.get(i), ResultTable.read(rs, descriptors[i].columnsOf(rs)));
+                }
+            }
             return results;
             
         } catch (SQLException e) {
-            throw new SQLException("Error executing query: " + e.getMessage(), e);
+            timing.failed();
+            // The driver reads all results during execute(), so the failing query cannot be told apart
+            throw failure("Error executing bundle " + names + ": ", deadline, e);
         } finally {
-            // Close resources in reverse order
-            if (rs != null) try { rs.close(); } catch (SQLException e) { /* ignored */ }
-            if (stmt != null) try { stmt.close(); } catch (SQLException e) { /* ignored */ }
-            // Note: Connection is managed by the connection pool, so we don't close it here
+            timing.stop();
+        }
+    }
+
+    /**
+     * Starts a snapshot of tables or key ranges, to be captured before and after a flow and diffed
+     * <pre>
+     * Snapshotter snapshotter = dbManager.snapshotter()
+     *     .add("nickfury.sale_orders", "id")
+     *     .addRange("nickfury.store_orders", "id", firstId, null);
+     * DatabaseSnapshot before = snapshotter.capture();
+     * ... run the order flow ...
+     * SnapshotDiff diff = before.diff(snapshotter.capture());
+     * </pre>
+     * @return an empty snapshotter on this manager's configuration
+     */
+    public Snapshotter snapshotter() {
+        return new Snapshotter(this);
+    }
+
+    /**
+     * Prepares a forward-only statement that streams rows instead of buffering the whole result.
+     * A fetch size of Integer.MIN_VALUE is MySQL Connector/J's signal for row-by-row streaming.
+     */
+    private PreparedStatement prepareStreaming(Connection conn, String query, Object... params) throws SQLException {
+        PreparedStatement stmt = conn.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        try {
+            stmt.setFetchSize(Integer.MIN_VALUE);
+            setParameters(stmt, params);
+            return stmt;
+        } catch (SQLException e) {
+            stmt.close();
+            throw e;
+        }
+    }
+
+    static void setParameters(PreparedStatement stmt, Object... params) throws SQLException {
+        if (params != null) {
+            for (int i = 0; i < params.length; i++) {
+                stmt.setObject(i + 1, params[i]);
+            }
         }
     }
 
+    private StatementDeadline defaultDeadline() {
+        return StatementDeadline.after(statementTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Wraps a statement failure, as a timeout when the caller's deadline has passed
+     */
+    static SQLException failure(String message, StatementDeadline deadline, SQLException e) {
+        if (deadline.isExpired()) {
+            return new SQLTimeoutException(message + "deadline of " + deadline.getTimeoutMillis() +
+                                           " ms exceeded (" + e.getMessage() + ")", e);
+        }
+        return new SQLException(message + e.getMessage(), e);
+    }
+
+    private static void closeQuietly(ResultSet rs, Statement stmt, Connection conn) {
+        // Close resources in reverse order
+        if (rs != null) try { rs.close(); } catch (SQLException e) { /* ignored */ }
+        if (stmt != null) try { stmt.close(); } catch (SQLException e) { /* ignored */ }
+        if (conn != null) try { conn.close(); } catch (SQLException e) { /* ignored */ }
+    }
+
     /**
      * Executes an INSERT, UPDATE, or DELETE statement
      * @param query The SQL statement to execute
@@ -87,27 +602,264 @@ public class DatabaseManager implements AutoCloseable {
      * @throws SQLException if a database access error occurs
      */
     public int executeUpdate(String query, Object... params) throws SQLException {
+        return executeUpdate(query, defaultDeadline(), params);
+    }
+
+    /**
+     * Executes an INSERT, UPDATE, or DELETE statement that must finish within the given time,
+     * counted from the call; the wait for a pooled connection is bounded by the pool's connection
+     * timeout, not by the deadline. A statement cancelled at the deadline may or may not have
+     * changed rows, as with any statement interrupted before its answer arrived.
+     * @param timeout Time the caller is willing to wait
+     * @param unit Unit of the timeout
+     * @param query The SQL statement to execute
+     * @param params Optional statement parameters
+     * @return The number of rows affected
+     * @throws SQLTimeoutException if the deadline passed
+     * @throws SQLException if a database access error occurs
+     */
+    public int executeUpdate(long timeout, TimeUnit unit, String query, Object... params) throws SQLException {
+        return executeUpdate(query, StatementDeadline.after(timeout, unit), params);
+    }
+
+    private int executeUpdate(String query, StatementDeadline deadline, Object[] params) throws SQLException {
         if (connectionClosed) {
             throw new SQLException("DatabaseManager has been closed. Create a new instance to execute updates.");
         }
+        QueryDescriptor descriptor = QueryDescriptor.forQuery(configName, query);
+        descriptor.checkParameters(params);
         
-        try (Connection conn = dbConnection.getConnection(configName);
-             PreparedStatement stmt = conn.prepareStatement(query)) {
+        SlowQueryLog.Timing timing = SlowQueryLog.start(configName, descriptor.getFingerprint());
+        try (Connection conn = timing.acquired(dbConnection.getConnection(configName));
+             PreparedStatement stmt = conn.prepareStatement(query);
+             StatementDeadline.Armed armed = deadline.arm(conn, stmt)) {
             
             // Set parameters if any
-            if (params != null) {
-                for (int i = 0; i < params.length; i++) {
-                    stmt.setObject(i + 1, params[i]);
-                }
-            }
+            setParameters(stmt, params);
             
-            return stmt.executeUpdate();
+            int affected = stmt.executeUpdate();
+            QueryResultCache.invalidateWrites(configName, query);
+            return affected;
             
         } catch (SQLException e) {
-            throw new SQLException("Error executing update: " + e.getMessage(), e);
+            timing.failed();
+            throw failure("Error executing update: ", deadline, e);
+        } finally {
+            timing.stop();
+        }
+    }
+
+    /**
+     * Executes one INSERT, UPDATE or DELETE statement for many parameter sets using JDBC batching.
+     * All batches run on a single pooled connection; each chunk of {@code batchSize} statements is
+     * sent with executeBatch and committed on its own, so a failure leaves earlier chunks committed
+     * and rolls back only the chunk in progress. With rewriteBatchedStatements enabled on the pool,
+     * MySQL receives each chunk of inserts as a single multi-row statement. Each chunk must finish
+     * within the manager's statement timeout.
+     * @param query The SQL statement to execute
+     * @param params One parameter array per statement
+     * @param batchSize Number of statements sent and committed together
+     * @return The number of rows affected, as far as the driver reports it
+     * @throws SQLException if a database access error occurs
+     */
+    public long executeBatch(String query, Iterable<Object[]> params, int batchSize) throws SQLException {
+        if (connectionClosed) {
+            throw new SQLException("DatabaseManager has been closed. Create a new instance to execute updates.");
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        
+        QueryDescriptor descriptor = QueryDescriptor.forQuery(configName, query);
+        
+        long committedStatements = 0;
+        StatementDeadline deadline = StatementDeadline.NONE;
+        // The whole batch is recorded as one execution of the statement
+        SlowQueryLog.Timing timing = SlowQueryLog.start(configName, descriptor.getFingerprint());
+        try (Connection conn = timing.acquired(dbConnection.getConnection(configName))) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(query)) {
+                long affected = 0;
+                int pending = 0;
+                for (Object[] row : params) {
+                    descriptor.checkParameters(row);
+                    setParameters(stmt, row);
+                    stmt.addBatch();
+                    if (++pending == batchSize) {
+                        deadline = defaultDeadline();
+                        affected += executeChunk(conn, stmt, deadline);
+                        deadline = StatementDeadline.NONE;
+                        conn.commit();
+                        committedStatements += pending;
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    deadline = defaultDeadline();
+                    affected += executeChunk(conn, stmt, deadline);
+                    deadline = StatementDeadline.NONE;
+                    conn.commit();
+                    committedStatements += pending;
+                }
+                return affected;
+            } catch (Throwable e) {
+                // Any Throwable: restoring autocommit below would otherwise commit the chunk in progress
+                try { conn.rollback(); } catch (SQLException rollbackError) { e.addSuppressed(rollbackError); }
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+                // Earlier chunks may have committed even when a later one failed
+                QueryResultCache.invalidateWrites(configName, query);
+            }
+        } catch (SQLException e) {
+            timing.failed();
+            throw failure("Error executing batch after " + committedStatements + " committed statements: ",
+                          deadline, e);
+        } finally {
+            timing.stop();
+        }
+    }
+
+    private static long executeChunk(Connection conn, PreparedStatement stmt, StatementDeadline deadline)
+            throws SQLException {
+        try (StatementDeadline.Armed armed = deadline.arm(conn, stmt)) {
+            return sumUpdateCounts(stmt.executeBatch());
+        }
+    }
+
+    static long sumUpdateCounts(int[] counts) {
+        long total = 0;
+        for (int count : counts) {
+            // Rewritten batches report SUCCESS_NO_INFO for each statement
+            if (count > 0) {
+                total += count;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Runs several statements as one transaction on a single pinned connection, committing once
+     * when the work returns and rolling back if it throws. The connection's default isolation
+     * level is used.
+     * <pre>
+     * int created = dbManager.inTransaction(tx -&gt; {
+     *     tx.executeUpdate("DELETE FROM nickfury.sale_orders WHERE orderNo LIKE ?", "FIXTURE%");
+     *     return (int) tx.executeBatch("INSERT INTO nickfury.sale_orders (orderNo, status) VALUES (?, ?)", rows);
+     * });
+     * </pre>
+     * See {@link #inTransaction(int, TransactionWork)} for retries and timing.
+     * @param work The statements to run
+     * @return the value returned by the work
+     * @throws SQLException if the transaction fails and was rolled back
+     */
+    public <T> T inTransaction(TransactionWork<T> work) throws SQLException {
+        return inTransaction(null, work);
+    }
+
+    /**
+     * Runs several statements as one transaction on a single pinned connection at the given
+     * isolation level, committing once when the work returns and rolling back if it throws.
+     * When MySQL picks the transaction as a deadlock victim it is rolled back and the work runs
+     * again from the start, up to {@link #withDeadlockRetries(int)} times. Each attempt is
+     * recorded in the {@link SlowQueryLog} with its duration and number of statements, and each
+     * statement is timed as usual with the manager's statement timeout.
+     * @param isolationLevel One of the Connection.TRANSACTION_* levels
+     * @param work The statements to run
+     * @return the value returned by the work
+     * @throws SQLException if the transaction fails and was rolled back
+     */
+    public <T> T inTransaction(int isolationLevel, TransactionWork<T> work) throws SQLException {
+        return inTransaction(Integer.valueOf(isolationLevel), work);
+    }
+
+    private <T> T inTransaction(Integer isolationLevel, TransactionWork<T> work) throws SQLException {
+        if (connectionClosed) {
+            throw new SQLException("DatabaseManager has been closed. Create a new instance to execute updates.");
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return runTransaction(isolationLevel, work, attempt);
+            } catch (SQLException e) {
+                if (!isDeadlock(e) || attempt > deadlockRetries) {
+                    throw e;
+                }
+                System.err.println("Deadlock on " + configName + ", retrying transaction (attempt " +
+                                   (attempt + 1) + " of " + (deadlockRetries + 1) + ")");
+                try {
+                    // Let the winning transaction finish before taking its locks again
+                    Thread.sleep(ThreadLocalRandom.current().nextLong(10, 50) * attempt);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    e.addSuppressed(interrupted);
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private <T> T runTransaction(Integer isolationLevel, TransactionWork<T> work, int attempt) throws SQLException {
+        long start = System.nanoTime();
+        long acquired = start;
+        Transaction tx = null;
+        boolean failed = true;
+        try (Connection conn = dbConnection.getConnection(configName)) {
+            acquired = System.nanoTime();
+            boolean autoCommit = conn.getAutoCommit();
+            int isolation = conn.getTransactionIsolation();
+            tx = new Transaction(configName, conn, statementTimeoutMillis, attempt);
+            try {
+                if (isolationLevel != null) {
+                    conn.setTransactionIsolation(isolationLevel);
+                }
+                conn.setAutoCommit(false);
+                T result = work.run(tx);
+                conn.commit();
+                failed = false;
+                for (String write : tx.finish()) {
+                    QueryResultCache.invalidateWrites(configName, write);
+                }
+                return result;
+            } catch (Throwable e) {
+                // Any Throwable, an AssertionError included: restoring autocommit below would commit the work
+                tx.finish();
+                try { conn.rollback(); } catch (SQLException rollbackError) { e.addSuppressed(rollbackError); }
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+                conn.setTransactionIsolation(isolation);
+            }
+        } catch (SQLException e) {
+            int statements = tx == null ? 0 : tx.getStatementCount();
+            throw new SQLException("Error executing transaction after " + statements + " statements: " +
+                                   e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
+        } finally {
+            // The whole transaction is recorded as one execution, grouped by its size
+            long now = System.nanoTime();
+            int statements = tx == null ? 0 : tx.getStatementCount();
+            SlowQueryLog.record(configName, "TRANSACTION (" + statements + " statements)",
+                acquired - start, now - acquired, failed);
         }
     }
 
+    /**
+     * Checks whether MySQL rolled a statement back to break a deadlock, looking through the
+     * wrapping exceptions of the statement helpers. Only the error code counts: the driver also
+     * reports a lock wait timeout (1205) with SQLState 40001, and that is not worth retrying.
+     */
+    static boolean isDeadlock(SQLException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLException) {
+                SQLException sqlException = (SQLException) t;
+                if (sqlException.getErrorCode() == ER_LOCK_DEADLOCK) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     /**
      * Checks if a record exists in the specified table matching the given conditions
      * @param tableName Name of the table to check
@@ -141,6 +893,22 @@ public class DatabaseManager implements AutoCloseable {
         return !results.isEmpty();
     }
 
+    /**
+     * Gets lookups whose results are cached for the given time. Only lookups made through the
+     * returned object are cached; writes through any DatabaseManager drop the cached results of
+     * the table they write.
+     * <pre>
+     * Object shopNo = dbManager.cached(10, TimeUnit.MINUTES)
+     *     .getSingleValue("SELECT shopNo FROM nickfury.stores WHERE fcId = ?", fcId);
+     * </pre>
+     * @param ttl How long a result may be served from the cache
+     * @param unit Unit of the time to live
+     * @return cached lookups on this manager's configuration
+     */
+    public CachedLookups cached(long ttl, TimeUnit unit) {
+        return new CachedLookups(this, configName, unit.toMillis(ttl));
+    }
+
     /**
      * Gets a single value from the database
      * @param query The SQL query to execute
@@ -149,11 +917,11 @@ public class DatabaseManager implements AutoCloseable {
      * @throws SQLException if a database access error occurs
      */
     public Object getSingleValue(String query, Object... params) throws SQLException {
-        List<Map<String, Object>> results = executeQuery(query, params);
-        if (results.isEmpty() || results.get(0).isEmpty()) {
+        ResultTable results = query(query, params);
+        if (results.isEmpty() || results.getColumns().size() == 0) {
             return null;
         }
-        return results.get(0).values().iterator().next();
+        return results.getObject(0, 0);
     }
 
     /**
@@ -243,4 +1011,96 @@ public class DatabaseManager implements AutoCloseable {
             return "[ERROR] Failed to verify store order: " + e.getMessage().split("\n")[0];
         }
     }
-}
+    
+    /**
+     * Verifies the booking and sale calls of one Bata order in Chandler database with a single
+     * round trip, instead of one per check
+     * @param orderId The order ID to verify
+     * @return Verification under {@link #BOOKING_CALL} and {@link #SALE_CALL}; a call without a row is marked missing
+     * @throws SQLException if a database access error occurs
+     */
+    public Map<String, OrderVerification> verifyOrderCallsInChandlerDBforBataOrders(String orderId) throws SQLException {
+        Map<String, ResultTable> results = bundle()
+            .add(BOOKING_CALL, "SELECT id, status FROM nickfury.store_orders WHERE orderId = ? ORDER BY id DESC LIMIT 1", orderId)
+            .add(SALE_CALL, "SELECT id, status FROM nickfury.sale_orders WHERE orderNo = ? ORDER BY id DESC LIMIT 1", orderId)
+            .execute();
+        Map<String, OrderVerification> verifications = new LinkedHashMap<>();
+        for (Map.Entry<String, ResultTable> result : results.entrySet()) {
+            ResultTable rows = result.getValue();
+            verifications.put(result.getKey(), rows.isEmpty() ? OrderVerification.missing(orderId)
+                : OrderVerification.found(orderId, rows.getLong(0, 0), rows.getString(0, 1)));
+        }
+        return verifications;
+    }
+    
+    /**
+     * Verifies sale calls in Chandler database for many Bata orders at once
+     * @param orderIds The order IDs to verify
+     * @return Verification per order ID, in the order given; orders without a sale row are marked missing
+     * @throws SQLException if a database access error occurs
+     */
+    public Map<String, OrderVerification> verifySaleCallsInChandlerDBforBataOrders(Collection<String> orderIds)
+            throws SQLException {
+        return verifyOrders("nickfury.sale_orders", "orderNo", orderIds);
+    }
+    
+    /**
+     * Verifies booking calls in Chandler database for many Bata orders at once
+     * @param orderIds The order IDs to verify
+     * @return Verification per order ID, in the order given; orders without a store order row are marked missing
+     * @throws SQLException if a database access error occurs
+     */
+    public Map<String, OrderVerification> verifyBookingCallsInChandlerDBforBataOrders(Collection<String> orderIds)
+            throws SQLException {
+        return verifyOrders("nickfury.store_orders", "orderId", orderIds);
+    }
+    
+    /**
+     * Looks up many orders with chunked IN queries that read only the order, id and status columns.
+     * When an order has several rows the one with the highest id wins, as in the single-order checks.
+     */
+    Map<String, OrderVerification> verifyOrders(String tableName, String orderColumn, Collection<String> orderIds)
+            throws SQLException {
+        Map<String, OrderVerification> results = new LinkedHashMap<>();
+        // IN matches under the column's case-insensitive collation, so rows are matched back the same way
+        Map<String, List<String>> requested = new LinkedHashMap<>();
+        for (String orderId : new LinkedHashSet<>(orderIds)) {
+            results.put(orderId, OrderVerification.missing(orderId));
+            requested.computeIfAbsent(OrderVerification.matchKey(orderId), k -> new ArrayList<>()).add(orderId);
+        }
+        List<String> distinct = new ArrayList<>();
+        for (List<String> sameOrder : requested.values()) {
+            distinct.add(sameOrder.get(0));
+        }
+        
+        for (int from = 0; from < distinct.size(); from += VERIFY_CHUNK_SIZE) {
+            List<String> chunk = new ArrayList<>(
+                distinct.subList(from, Math.min(from + VERIFY_CHUNK_SIZE, distinct.size())));
+            // Pad to a power of two with a repeated id so only a few statement shapes get prepared
+            int paddedSize = Math.min(VERIFY_CHUNK_SIZE, Math.max(8, Integer.highestOneBit(chunk.size() - 1) << 1));
+            while (chunk.size() < paddedSize) {
+                chunk.add(chunk.get(0));
+            }
+            StringBuilder query = new StringBuilder("SELECT ")
+                .append(orderColumn).append(", id, status FROM ").append(tableName)
+                .append(" WHERE ").append(orderColumn).append(" IN (");
+            for (int i = 0; i < chunk.size(); i++) {
+                query.append(i > 0 ? ", ?" : "?");
+            }
+            query.append(')');
+            
+            ResultTable rows = query(query.toString(), chunk.toArray());
+            for (int row = 0; row < rows.size(); row++) {
+                long id = rows.getLong(row, 1);
+                String key = OrderVerification.matchKey(rows.getString(row, 0));
+                for (String orderId : requested.getOrDefault(key, Collections.emptyList())) {
+                    OrderVerification current = results.get(orderId);
+                    if (!current.isFound() || id > current.getId()) {
+                        results.put(orderId, OrderVerification.found(orderId, id, rows.getString(row, 2)));
+                    }
+                }
+            }
+        }
+        return results;
+    }
+}
\ No newline at end of file
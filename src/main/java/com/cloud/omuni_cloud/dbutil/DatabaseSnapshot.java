@@ -0,0 +1,210 @@
+package com.cloud.omuni_cloud.dbutil;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * The keys and row hashes of a set of tables at one moment, captured by a {@link Snapshotter}.
+ * Two snapshots of the same tables are compared with {@link #diff(DatabaseSnapshot)}; rows
+ * are matched by key and a changed hash marks a row as updated.
+ */
+public class DatabaseSnapshot {
+    private final DatabaseManager databaseManager;
+    private final Map<String, TableSnapshot> tables;
+    private final long capturedAt;
+    private final long elapsedMillis;
+
+    DatabaseSnapshot(DatabaseManager databaseManager, Map<String, TableSnapshot> tables,
+                     long capturedAt, long elapsedMillis) {
+        this.databaseManager = databaseManager;
+        this.tables = tables;
+        this.capturedAt = capturedAt;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    // Getters
+    public long getCapturedAt() { return capturedAt; }
+    public long getElapsedMillis() { return elapsedMillis; }
+    public List<String> getTableNames() { return Collections.unmodifiableList(new ArrayList<>(tables.keySet())); }
+
+    /**
+     * Gets the number of rows captured of a table
+     * @param tableName Table name as added to the snapshotter
+     * @return the row count
+     */
+    public int getRowCount(String tableName) {
+        return table(tableName).size();
+    }
+
+    public long getRowCount() {
+        long total = 0;
+        for (TableSnapshot table : tables.values()) {
+            total += table.size();
+        }
+        return total;
+    }
+
+    /**
+     * Compares this snapshot, taken before, with one taken after, every table in parallel.
+     * Both must come from the same snapshotter.
+     * @param after The later snapshot
+     * @return the rows inserted, updated and deleted in between
+     * @throws SQLException if the diff is interrupted
+     */
+    public SnapshotDiff diff(DatabaseSnapshot after) throws SQLException {
+        if (!tables.keySet().equals(after.tables.keySet())) {
+            throw new IllegalArgumentException("Snapshots cover different tables: " + tables.keySet() +
+                                               " and " + after.tables.keySet());
+        }
+        Map<String, Future<SnapshotDiff.TableDiff>> futures = new LinkedHashMap<>();
+        for (String tableName : tables.keySet()) {
+            TableSnapshot before = tables.get(tableName);
+            TableSnapshot later = after.tables.get(tableName);
+            futures.put(tableName, Snapshotter.executor().submit(() -> before.diff(later, after.databaseManager)));
+        }
+        Map<String, SnapshotDiff.TableDiff> diffs = new LinkedHashMap<>();
+        for (Map.Entry<String, Future<SnapshotDiff.TableDiff>> entry : futures.entrySet()) {
+            try {
+                diffs.put(entry.getKey(), entry.getValue().get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while diffing snapshots", e);
+            } catch (ExecutionException e) {
+                throw new SQLException("Error diffing snapshots of " + entry.getKey() + ": " +
+                                       e.getCause().getMessage(), e.getCause());
+            }
+        }
+        return new SnapshotDiff(diffs);
+    }
+
+    private TableSnapshot table(String tableName) {
+        TableSnapshot table = tables.get(tableName);
+        if (table == null) {
+            throw new IllegalArgumentException("Snapshot has no table " + tableName);
+        }
+        return table;
+    }
+
+    /**
+     * Orders keys the same way in every snapshot: numbers by value, byte arrays unsigned, and
+     * anything else, such as strings, by its natural Java order
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static int compareKeys(Object a, Object b) {
+        if (a instanceof Number && b instanceof Number) {
+            if (isIntegral(a) && isIntegral(b)) {
+                return Long.compare(((Number) a).longValue(), ((Number) b).longValue());
+            }
+            return new BigDecimal(a.toString()).compareTo(new BigDecimal(b.toString()));
+        }
+        if (a instanceof byte[] && b instanceof byte[]) {
+            return Arrays.compareUnsigned((byte[]) a, (byte[]) b);
+        }
+        return ((Comparable) a).compareTo(b);
+    }
+
+    private static boolean isIntegral(Object n) {
+        return n instanceof Long || n instanceof Integer || n instanceof Short || n instanceof Byte;
+    }
+
+    /**
+     * Keys and row hashes of one table, kept sorted by key. Only two arrays are held, so memory
+     * grows with the row count but not with the width of the rows.
+     */
+    static class TableSnapshot {
+        private final String tableName;
+        private final String keyColumn;
+        private Object[] keys = new Object[1024];
+        private long[] hashes = new long[1024];
+        private int size;
+        private boolean sorted = true;
+
+        TableSnapshot(String tableName, String keyColumn) {
+            this.tableName = tableName;
+            this.keyColumn = keyColumn;
+        }
+
+        int size() { return size; }
+
+        void add(Object key, long hash) throws SQLException {
+            if (key == null) {
+                throw new SQLException("Key column " + keyColumn + " of " + tableName + " is NULL");
+            }
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                hashes = Arrays.copyOf(hashes, size * 2);
+            }
+            // String keys come in collation order, which need not be Java's
+            if (size > 0 && sorted && compareKeys(keys[size - 1], key) >= 0) {
+                sorted = false;
+            }
+            keys[size] = key;
+            hashes[size] = hash;
+            size++;
+        }
+
+        /**
+         * Finishes the capture, sorting the rows by key unless they already arrived in that order
+         */
+        void seal() throws SQLException {
+            keys = Arrays.copyOf(keys, size);
+            hashes = Arrays.copyOf(hashes, size);
+            if (sorted) {
+                return;
+            }
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (x, y) -> compareKeys(keys[x], keys[y]));
+            Object[] sortedKeys = new Object[size];
+            long[] sortedHashes = new long[size];
+            for (int i = 0; i < size; i++) {
+                sortedKeys[i] = keys[order[i]];
+                sortedHashes[i] = hashes[order[i]];
+                if (i > 0 && compareKeys(sortedKeys[i - 1], sortedKeys[i]) == 0) {
+                    throw new SQLException("Key column " + keyColumn + " of " + tableName +
+                                           " is not unique: " + sortedKeys[i]);
+                }
+            }
+            keys = sortedKeys;
+            hashes = sortedHashes;
+            sorted = true;
+        }
+
+        /**
+         * Walks both sorted key lists once, like a merge join
+         */
+        SnapshotDiff.TableDiff diff(TableSnapshot after, DatabaseManager databaseManager) {
+            List<Object> inserted = new ArrayList<>();
+            List<Object> updated = new ArrayList<>();
+            List<Object> deleted = new ArrayList<>();
+            int i = 0;
+            int j = 0;
+            while (i < size || j < after.size) {
+                int order = i == size ? 1 : j == after.size ? -1 : compareKeys(keys[i], after.keys[j]);
+                if (order < 0) {
+                    deleted.add(keys[i++]);
+                } else if (order > 0) {
+                    inserted.add(after.keys[j++]);
+                } else {
+                    if (hashes[i] != after.hashes[j]) {
+                        updated.add(after.keys[j]);
+                    }
+                    i++;
+                    j++;
+                }
+            }
+            return new SnapshotDiff.TableDiff(databaseManager, tableName, keyColumn, size, after.size,
+                                              inserted, updated, deleted);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.cloud.omuni_cloud.dbutil;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Results of one query run on several database configurations by
+ * {@link DatabaseManager#queryAll(java.util.Collection, String, Object...)}. Each configuration
+ * either answered with a ResultTable or failed; a source that did not answer within the timeout
+ * fails with an SQLTimeoutException, so the sources that did answer are still usable.
+ */
+public class FanOutResult {
+    /** Label of the column naming the configuration in {@link #asMaps()} */
+    public static final String SOURCE_COLUMN = "source";
+
+    private final Map<String, ResultTable> results = new LinkedHashMap<>();
+    private final Map<String, SQLException> failures = new LinkedHashMap<>();
+    private final Map<String, Long> elapsedMillis = new LinkedHashMap<>();
+
+    void succeeded(String configName, ResultTable table, long millis) {
+        results.put(configName, table);
+        elapsedMillis.put(configName, millis);
+    }
+
+    void failed(String configName, SQLException error, long millis) {
+        failures.put(configName, error);
+        elapsedMillis.put(configName, millis);
+    }
+
+    // Getters
+    public Map<String, ResultTable> getResults() { return Collections.unmodifiableMap(results); }
+    public Map<String, SQLException> getFailures() { return Collections.unmodifiableMap(failures); }
+    public Map<String, Long> getElapsedMillis() { return Collections.unmodifiableMap(elapsedMillis); }
+
+    public ResultTable getResult(String configName) { return results.get(configName); }
+    public boolean isComplete() { return failures.isEmpty(); }
+
+    public boolean isTimedOut(String configName) {
+        return failures.get(configName) instanceof SQLTimeoutException;
+    }
+
+    /**
+     * Gets the total number of rows returned by the sources that answered
+     */
+    public int getRowCount() {
+        int count = 0;
+        for (ResultTable table : results.values()) {
+            count += table.size();
+        }
+        return count;
+    }
+
+    /**
+     * Merges the rows of every source that answered into one list, in source order. Each row
+     * starts with a {@value #SOURCE_COLUMN} entry naming its configuration, which replaces a
+     * result column of the same label.
+     * @return the merged rows as maps of column label to value
+     */
+    public List<Map<String, Object>> asMaps() {
+        List<Map<String, Object>> rows = new ArrayList<>(getRowCount());
+        for (Map.Entry<String, ResultTable> source : results.entrySet()) {
+            for (Map<String, Object> row : source.getValue().asMaps()) {
+                Map<String, Object> tagged = new LinkedHashMap<>(row.size() + 1);
+                tagged.put(SOURCE_COLUMN, source.getKey());
+                row.forEach((label, value) -> {
+                    if (!SOURCE_COLUMN.equals(label)) {
+                        tagged.put(label, value);
+                    }
+                });
+                rows.add(tagged);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Formats one line per source with its row count or failure and how long it took
+     */
+    public String format() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Long> source : elapsedMillis.entrySet()) {
+            String configName = source.getKey();
+            if (sb.length() > 0) {
+                sb.append('\n');
+            }
+            sb.append(configName).append(": ");
+            if (results.containsKey(configName)) {
+                sb.append(results.get(configName).size()).append(" rows");
+            } else {
+                sb.append(isTimedOut(configName) ? "TIMED OUT" : "FAILED")
+                  .append(" (").append(failures.get(configName).getMessage()).append(')');
+            }
+            sb.append(" in ").append(source.getValue()).append(" ms");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,247 @@
+package com.cloud.omuni_cloud.dbutil;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads a whole table in key order, one page at a time, with
+ * {@code WHERE key > ? ORDER BY key LIMIT n}. Unlike OFFSET paging, every page starts with an
+ * index seek past the last key of the previous page, so page 10,000 costs the same as page 1.
+ * While the caller works on one page the next is already being fetched, and no more than those
+ * two pages are held, so memory stays bounded however large the table is.
+ * <pre>
+ * try (KeysetScan scan = dbManager.scan("nickfury.sale_orders", "id", "id", "orderNo", "status")
+ *         .withPageSize(5000)) {
+ *     while (scan.hasNext()) {
+ *         Row row = scan.next();
+ *         ...
+ *     }
+ * }
+ * </pre>
+ * Each page is its own short query on a pooled connection, so no connection is held between
+ * pages. Rows committed behind the scan position during the scan are not seen.
+ */
+public class KeysetScan implements Iterator<Row>, AutoCloseable {
+    private static ExecutorService prefetchExecutor;
+
+    private final DatabaseManager databaseManager;
+    private final String tableName;
+    private final String keyColumn;
+    private final String[] columns;
+    private int pageSize = 1000;
+    private Object startAfter;
+    private String where;
+    private Object[] whereParams = new Object[0];
+
+    private Future<ResultTable> pending;
+    private ResultTable page;
+    private int position;
+    private Object lastKey;
+    private boolean exhausted;
+    private boolean closed;
+    private long pagesRead;
+    private long rowsRead;
+    private long waitNanos;
+
+    /**
+     * Creates a scan; use {@link DatabaseManager#scan(String, String, String...)}
+     */
+    KeysetScan(DatabaseManager databaseManager, String tableName, String keyColumn, String... columns) {
+        this.databaseManager = databaseManager;
+        this.tableName = DatabaseCopier.identifier(tableName);
+        this.keyColumn = DatabaseCopier.identifier(keyColumn);
+        this.columns = columns == null ? new String[0] : columns.clone();
+        boolean keySelected = this.columns.length == 0;
+        for (String column : this.columns) {
+            keySelected |= DatabaseCopier.identifier(column).equalsIgnoreCase(keyColumn);
+        }
+        if (!keySelected) {
+            throw new IllegalArgumentException("Key column " + keyColumn + " must be one of the scanned columns");
+        }
+    }
+
+    // Builder-style setters for fluent configuration
+    public KeysetScan withPageSize(int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    /**
+     * Starts after the given key instead of at the first row
+     */
+    public KeysetScan withStartAfter(Object key) {
+        this.startAfter = key;
+        return this;
+    }
+
+    /**
+     * Only reads rows matching an extra condition, ANDed with the key condition
+     */
+    public KeysetScan withWhere(String condition, Object... params) {
+        this.where = condition;
+        this.whereParams = params == null ? new Object[0] : params;
+        return this;
+    }
+
+    // Getters
+    public long getPagesRead() { return pagesRead; }
+    public long getRowsRead() { return rowsRead; }
+    public Object getLastKey() { return lastKey; }
+
+    /**
+     * Gets how long the caller waited for pages that were not prefetched in time
+     */
+    public long getWaitMillis() { return TimeUnit.NANOSECONDS.toMillis(waitNanos); }
+
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        try {
+            while (page == null || position >= page.size()) {
+                if (nextPage() == null) {
+                    return false;
+                }
+                position = 0;
+            }
+            return true;
+        } catch (SQLException e) {
+            throw new RuntimeException("Error scanning " + tableName + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Row next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return page.getRow(position++);
+    }
+
+    /**
+     * Gets the next whole page and starts fetching the one after it. Use either this or the
+     * row iterator, not both.
+     * @return the page, or null after the last page
+     * @throws SQLException if the page cannot be read
+     */
+    public ResultTable nextPage() throws SQLException {
+        if (closed) {
+            throw new SQLException("Scan of " + tableName + " has been closed");
+        }
+        if (exhausted) {
+            return null;
+        }
+        if (pending == null) {
+            pending = fetch(startAfter);
+        }
+        ResultTable fetched = await(pending);
+        pending = null;
+        page = null;
+        pagesRead++;
+        rowsRead += fetched.size();
+
+        if (fetched.size() < pageSize) {
+            exhausted = true;
+        }
+        if (!fetched.isEmpty()) {
+            lastKey = fetched.getObject(fetched.size() - 1, keyColumn);
+            if (!exhausted) {
+                // Fetch the following page while the caller works on this one
+                pending = fetch(lastKey);
+            }
+        }
+        if (fetched.isEmpty()) {
+            return null;
+        }
+        page = fetched;
+        return fetched;
+    }
+
+    private Future<ResultTable> fetch(Object afterKey) {
+        String sql = buildSelect(afterKey != null);
+        List<Object> params = new ArrayList<>();
+        if (afterKey != null) {
+            params.add(afterKey);
+        }
+        Collections.addAll(params, whereParams);
+        Object[] values = params.toArray();
+        return prefetchExecutor().submit(() -> databaseManager.query(sql, values));
+    }
+
+    private ResultTable await(Future<ResultTable> future) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a page of " + tableName, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw new SQLException("Error reading page " + (pagesRead + 1) + " of " + tableName + ": " +
+                                   cause.getMessage(), cause);
+        } finally {
+            waitNanos += System.nanoTime() - start;
+        }
+    }
+
+    private String buildSelect(boolean hasStartKey) {
+        StringBuilder sql = new StringBuilder("SELECT ");
+        if (columns.length == 0) {
+            sql.append('*');
+        }
+        for (int i = 0; i < columns.length; i++) {
+            sql.append(i > 0 ? ", " : "").append(columns[i]);
+        }
+        sql.append(" FROM ").append(tableName);
+        List<String> conditions = new ArrayList<>();
+        if (hasStartKey) {
+            conditions.add(keyColumn + " > ?");
+        }
+        if (where != null && !where.trim().isEmpty()) {
+            conditions.add("(" + where + ")");
+        }
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        sql.append(" ORDER BY ").append(keyColumn).append(" LIMIT ").append(pageSize);
+        return sql.toString();
+    }
+
+    private static synchronized ExecutorService prefetchExecutor() {
+        if (prefetchExecutor == null) {
+            prefetchExecutor = Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "keyset-prefetch");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return prefetchExecutor;
+    }
+
+    /**
+     * Stops the scan; a page being prefetched is discarded when it arrives
+     */
+    @Override
+    public void close() {
+        closed = true;
+        exhausted = true;
+        page = null;
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.cloud.omuni_cloud.dbutil;
+
+/**
+ * An insert or update of one row in a watched order table, as read from the binlog
+ */
+public class OrderChangeEvent {
+    public enum Type { INSERT, UPDATE }
+
+    private final String tableName;
+    private final Type type;
+    private final String orderId;
+    private final long id;
+    private final String status;
+    private final long timestamp;
+
+    OrderChangeEvent(String tableName, Type type, String orderId, long id, String status, long timestamp) {
+        this.tableName = tableName;
+        this.type = type;
+        this.orderId = orderId;
+        this.id = id;
+        this.status = status;
+        this.timestamp = timestamp;
+    }
+
+    // Getters
+    public String getTableName() { return tableName; }
+    public Type getType() { return type; }
+    public String getOrderId() { return orderId; }
+    public long getId() { return id; }
+    public String getStatus() { return status; }
+    public long getTimestamp() { return timestamp; }
+
+    /**
+     * Gets the changed row as the outcome of an order lookup
+     * @return the verification
+     */
+    public OrderVerification toVerification() {
+        return OrderVerification.found(orderId, id, status);
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + tableName + " order " + orderId + " (ID: " + id + ", Status: " + status + ")";
+    }
+}
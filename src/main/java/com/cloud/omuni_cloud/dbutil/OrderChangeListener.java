@@ -0,0 +1,13 @@
+package com.cloud.omuni_cloud.dbutil;
+
+/**
+ * Receives order row changes decoded from the binlog
+ */
+@FunctionalInterface
+public interface OrderChangeListener {
+    /**
+     * Handles one change; called on the binlog reader thread, so it should return quickly
+     * @param event The change
+     */
+    void onChange(OrderChangeEvent event);
+}
@@ -0,0 +1,52 @@
+package com.cloud.omuni_cloud.dbutil;
+
+import java.util.Locale;
+
+/**
+ * Outcome of looking up one order in a Chandler order table: whether a row exists and, if so,
+ * the id and status of its latest row.
+ */
+public class OrderVerification {
+    private final String orderId;
+    private final boolean found;
+    private final long id;
+    private final String status;
+
+    private OrderVerification(String orderId, boolean found, long id, String status) {
+        this.orderId = orderId;
+        this.found = found;
+        this.id = id;
+        this.status = status;
+    }
+
+    static OrderVerification found(String orderId, long id, String status) {
+        return new OrderVerification(orderId, true, id, status);
+    }
+
+    static OrderVerification missing(String orderId) {
+        return new OrderVerification(orderId, false, 0, null);
+    }
+
+    /**
+     * Gets the key rows are matched to orders on in memory. The order columns compare under
+     * case-insensitive collations, so "os7" and "OS7" are the same order.
+     * @param orderId The order reference
+     * @return the reference in upper case
+     */
+    static String matchKey(String orderId) {
+        return orderId.toUpperCase(Locale.ROOT);
+    }
+
+    // Getters
+    public String getOrderId() { return orderId; }
+    public boolean isFound() { return found; }
+    public long getId() { return id; }
+    public String getStatus() { return status; }
+
+    @Override
+    public String toString() {
+        return found
+            ? String.format("Found - ID: %d, Status: %s", id, status != null ? status : "N/A")
+            : "[WARNING] Not found: " + orderId;
+    }
+}
@@ -0,0 +1,82 @@
+package com.cloud.omuni_cloud.dbutil;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Pending order waits plus the orders seen recently, so a wait registered just after its row
+ * was seen still completes. Shared by the watchers that feed it rows. Orders are matched on
+ * {@link OrderVerification#matchKey(String)}, ignoring case like the order columns and
+ * {@link DatabaseManager#verifyOrders}.
+ */
+class OrderWaits implements OrderWatcher {
+    private final Map<String, CompletableFuture<OrderVerification>> pending = new HashMap<>();
+    private final Map<String, OrderVerification> recent;
+    private volatile int recentCapacity;
+
+    OrderWaits(int recentCapacity) {
+        this.recentCapacity = recentCapacity;
+        this.recent = new LinkedHashMap<String, OrderVerification>(1024, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, OrderVerification> eldest) {
+                return size() > OrderWaits.this.recentCapacity;
+            }
+        };
+    }
+
+    void setRecentCapacity(int recentCapacity) {
+        this.recentCapacity = recentCapacity;
+    }
+
+    synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    @Override
+    public synchronized CompletableFuture<OrderVerification> await(String orderId) {
+        String key = OrderVerification.matchKey(orderId);
+        OrderVerification seen = recent.get(key);
+        if (seen != null) {
+            return CompletableFuture.completedFuture(seen);
+        }
+        return pending.computeIfAbsent(key, k -> new CompletableFuture<>());
+    }
+
+    @Override
+    public synchronized void cancel(String orderId) {
+        CompletableFuture<OrderVerification> future = pending.remove(OrderVerification.matchKey(orderId));
+        if (future != null) {
+            future.cancel(false);
+        }
+    }
+
+    /**
+     * Records a row of an order and completes its wait
+     * @param verification The order's row
+     */
+    synchronized void matched(OrderVerification verification) {
+        String key = OrderVerification.matchKey(verification.getOrderId());
+        OrderVerification previous = recent.get(key);
+        // Keep the latest row of an order, as the single-order checks do
+        if (previous == null || verification.getId() > previous.getId()) {
+            recent.put(key, verification);
+        }
+        CompletableFuture<OrderVerification> future = pending.remove(key);
+        if (future != null) {
+            future.complete(recent.get(key));
+        }
+    }
+
+    /**
+     * Completes every pending wait exceptionally
+     * @param reason Message of the exception the waits fail with
+     */
+    synchronized void failAll(String reason) {
+        for (CompletableFuture<OrderVerification> future : pending.values()) {
+            future.completeExceptionally(new IllegalStateException(reason));
+        }
+        pending.clear();
+    }
+}
@@ -0,0 +1,21 @@
+package com.cloud.omuni_cloud.dbutil;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Source of notifications that an order's row has appeared in a Chandler order table
+ */
+public interface OrderWatcher {
+    /**
+     * Waits for an order's row to appear
+     * @param orderId The order reference
+     * @return future completed with the order's row once seen
+     */
+    CompletableFuture<OrderVerification> await(String orderId);
+
+    /**
+     * Stops waiting for an order, e.g. after its wait timed out
+     * @param orderId The order reference
+     */
+    void cancel(String orderId);
+}
@@ -0,0 +1,212 @@
+package com.cloud.omuni_cloud.dbutil;
+
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer metrics of every Hikari pool opened through DatabaseConnection: active, idle and
+ * pending connections, connection acquire and usage times with percentiles, and acquire timeouts.
+ * Metrics go to a SimpleMeterRegistry unless another registry (e.g. Prometheus) is installed with
+ * {@link #setRegistry(MeterRegistry)} before the pools are created.
+ *
+ * <p>Acquire time is how long a caller waited for the pool; usage time is how long it held the
+ * connection, which covers the query and the round trips through the SSH tunnel. Comparing the
+ * two tells whether parallel verification is limited by the pool or by the database side.
+ */
+public class PoolMetrics {
+    static final String ACQUIRE = "hikaricp.connections.acquire";
+    static final String USAGE = "hikaricp.connections.usage";
+    static final String TIMEOUT = "hikaricp.connections.timeout";
+    static final String ACTIVE = "hikaricp.connections.active";
+    static final String IDLE = "hikaricp.connections.idle";
+    static final String PENDING = "hikaricp.connections.pending";
+    static final String TOTAL = "hikaricp.connections";
+
+    private static volatile MeterRegistry registry = configure(new SimpleMeterRegistry());
+
+    private PoolMetrics() {
+    }
+
+    public static MeterRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Sends the metrics of pools created from now on to another registry
+     * @param meterRegistry The registry, e.g. one scraped by a monitoring system
+     */
+    public static void setRegistry(MeterRegistry meterRegistry) {
+        registry = configure(meterRegistry);
+    }
+
+    /**
+     * Gets the tracker factory a new pool reports to
+     */
+    static MetricsTrackerFactory trackerFactory() {
+        return new MicrometerMetricsTrackerFactory(registry);
+    }
+
+    // Keep percentiles and a histogram of acquire and usage times
+    private static MeterRegistry configure(MeterRegistry meterRegistry) {
+        meterRegistry.config().meterFilter(new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                if (ACQUIRE.equals(id.getName()) || USAGE.equals(id.getName())) {
+                    return DistributionStatisticConfig.builder()
+                        .percentiles(0.5, 0.95, 0.99)
+                        .percentilesHistogram(true)
+                        .build()
+                        .merge(config);
+                }
+                return config;
+            }
+        });
+        return meterRegistry;
+    }
+
+    /**
+     * Reads the current metrics of every open pool
+     * @return one snapshot per database configuration, ordered by name
+     */
+    public static List<Snapshot> snapshot() {
+        Map<String, String> poolNames = new TreeMap<>(DatabaseConnection.getInstance().getPoolNames());
+        List<Snapshot> snapshots = new ArrayList<>();
+        for (Map.Entry<String, String> entry : poolNames.entrySet()) {
+            snapshots.add(snapshot(entry.getKey(), entry.getValue()));
+        }
+        return snapshots;
+    }
+
+    static Snapshot snapshot(String configName, String poolName) {
+        MeterRegistry meterRegistry = registry;
+        Timer acquire = meterRegistry.find(ACQUIRE).tag("pool", poolName).timer();
+        Timer usage = meterRegistry.find(USAGE).tag("pool", poolName).timer();
+        Counter timeouts = meterRegistry.find(TIMEOUT).tag("pool", poolName).counter();
+
+        Snapshot snapshot = new Snapshot(configName, poolName);
+        snapshot.active = gauge(meterRegistry, ACTIVE, poolName);
+        snapshot.idle = gauge(meterRegistry, IDLE, poolName);
+        snapshot.pending = gauge(meterRegistry, PENDING, poolName);
+        snapshot.total = gauge(meterRegistry, TOTAL, poolName);
+        snapshot.timeouts = timeouts == null ? 0 : (long) timeouts.count();
+        if (acquire != null) {
+            snapshot.acquireCount = acquire.count();
+            snapshot.acquireMeanMillis = acquire.mean(TimeUnit.MILLISECONDS);
+            snapshot.acquireP95Millis = percentile(acquire, 0.95);
+            snapshot.acquireP99Millis = percentile(acquire, 0.99);
+            snapshot.acquireMaxMillis = acquire.max(TimeUnit.MILLISECONDS);
+        }
+        if (usage != null) {
+            snapshot.usageMeanMillis = usage.mean(TimeUnit.MILLISECONDS);
+            snapshot.usageP95Millis = percentile(usage, 0.95);
+            snapshot.usageMaxMillis = usage.max(TimeUnit.MILLISECONDS);
+        }
+        return snapshot;
+    }
+
+    private static int gauge(MeterRegistry meterRegistry, String name, String poolName) {
+        Gauge gauge = meterRegistry.find(name).tag("pool", poolName).gauge();
+        return gauge == null ? 0 : (int) gauge.value();
+    }
+
+    private static double percentile(Timer timer, double percentile) {
+        for (ValueAtPercentile value : timer.takeSnapshot().percentileValues()) {
+            if (Math.abs(value.percentile() - percentile) < 1e-9) {
+                return value.value(TimeUnit.MILLISECONDS);
+            }
+        }
+        return Double.NaN;
+    }
+
+    /**
+     * Formats the metrics of every open pool, one line per pool
+     * @return the report, empty if no pool is open
+     */
+    public static String format() {
+        StringBuilder sb = new StringBuilder();
+        for (Snapshot snapshot : snapshot()) {
+            sb.append(snapshot).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Metrics of one pool at one point in time
+     */
+    public static class Snapshot {
+        private final String configName;
+        private final String poolName;
+        private int active;
+        private int idle;
+        private int pending;
+        private int total;
+        private long timeouts;
+        private long acquireCount;
+        private double acquireMeanMillis;
+        private double acquireP95Millis = Double.NaN;
+        private double acquireP99Millis = Double.NaN;
+        private double acquireMaxMillis;
+        private double usageMeanMillis;
+        private double usageP95Millis = Double.NaN;
+        private double usageMaxMillis;
+
+        Snapshot(String configName, String poolName) {
+            this.configName = configName;
+            this.poolName = poolName;
+        }
+
+        // Getters
+        public String getConfigName() { return configName; }
+        public String getPoolName() { return poolName; }
+        public int getActive() { return active; }
+        public int getIdle() { return idle; }
+        public int getPending() { return pending; }
+        public int getTotal() { return total; }
+        public long getTimeouts() { return timeouts; }
+        public long getAcquireCount() { return acquireCount; }
+        public double getAcquireMeanMillis() { return acquireMeanMillis; }
+        public double getAcquireP95Millis() { return acquireP95Millis; }
+        public double getAcquireP99Millis() { return acquireP99Millis; }
+        public double getAcquireMaxMillis() { return acquireMaxMillis; }
+        public double getUsageMeanMillis() { return usageMeanMillis; }
+        public double getUsageP95Millis() { return usageP95Millis; }
+        public double getUsageMaxMillis() { return usageMaxMillis; }
+
+        /**
+         * Tells whether callers mostly wait for the pool or for the queries they run on it
+         * @return "pool" when acquire timeouts happened or the p95 wait for a connection exceeds
+         *         the mean time a connection is held, otherwise "database/tunnel"
+         */
+        public String getBottleneck() {
+            if (acquireCount == 0) {
+                return "idle";
+            }
+            return timeouts > 0 || acquireP95Millis > usageMeanMillis ? "pool" : "database/tunnel";
+        }
+
+        @Override
+        public String toString() {
+            return String.format("pool[%s active=%d idle=%d pending=%d total=%d acquire n=%d mean=%.1fms " +
+                                 "p95=%.1fms p99=%.1fms max=%.1fms usage mean=%.1fms p95=%.1fms max=%.1fms " +
+                                 "timeouts=%d bottleneck=%s]",
+                configName, active, idle, pending, total, acquireCount, acquireMeanMillis,
+                acquireP95Millis, acquireP99Millis, acquireMaxMillis, usageMeanMillis, usageP95Millis,
+                usageMaxMillis, timeouts, getBottleneck());
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.cloud.omuni_cloud.dbutil;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Several SELECT queries sent to the database together, in one statement and one round trip,
+ * relying on the allowMultiQueries setting of the pools. Over the SSH tunnel each round trip
+ * costs more than a point lookup itself, so the booking, sale and status checks of an order
+ * are cheaper as one bundle than as separate queries.
+ * <pre>
+ * Map&lt;String, ResultTable&gt; results = dbManager.bundle()
+ *     .add("booking", "SELECT id, status FROM nickfury.store_orders WHERE orderId = ?", orderId)
+ *     .add("sale", "SELECT id, status FROM nickfury.sale_orders WHERE orderNo = ?", orderId)
+ *     .execute();
+ * </pre>
+ * MySQL runs the queries in order and stops at the first failing one, so a bundle either
+ * returns every result or fails as a whole.
+ */
+public class QueryBundle {
+    private final DatabaseManager databaseManager;
+    private final List<String> names = new ArrayList<>();
+    private final List<String> queries = new ArrayList<>();
+    private final List<Object[]> params = new ArrayList<>();
+
+    QueryBundle(DatabaseManager databaseManager) {
+        this.databaseManager = databaseManager;
+    }
+
+    /**
+     * Adds a query to the bundle
+     * @param name Name its result is returned under; unique within the bundle
+     * @param query A single SELECT query, without a trailing semicolon
+     * @param queryParams Optional query parameters
+     * @return this bundle
+     */
+    public QueryBundle add(String name, String query, Object... queryParams) {
+        if (names.contains(name)) {
+            throw new IllegalArgumentException("Bundle already has a query named " + name);
+        }
+        String trimmed = query.trim();
+        while (trimmed.endsWith(";")) {
+            trimmed = trimmed.substring(0, trimmed.length() - 1).trim();
+        }
+        names.add(name);
+        queries.add(trimmed);
+        params.add(queryParams == null ? new Object[0] : queryParams);
+        return this;
+    }
+
+    // Getters
+    public int size() { return names.size(); }
+    List<String> getNames() { return Collections.unmodifiableList(names); }
+    List<String> getQueries() { return Collections.unmodifiableList(queries); }
+    List<Object[]> getParams() { return Collections.unmodifiableList(params); }
+
+    /**
+     * Sends every query of the bundle in one round trip
+     * @return result per query name, in the order the queries were added
+     * @throws SQLException if a query fails
+     */
+    public Map<String, ResultTable> execute() throws SQLException {
+        return databaseManager.execute(this);
+    }
+}
@@ -0,0 +1,164 @@
+package com.cloud.omuni_cloud.dbutil;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * What DatabaseManager knows about one SQL string on one database configuration: its number of
+ * parameter placeholders and, once it has run, the labels and types of its result columns.
+ * Descriptors are cached across DatabaseManager instances and pooled connections, so a
+ * verification query run thousands of times reads its metadata and builds its ColumnIndex once.
+ */
+class QueryDescriptor {
+    private static final int MAX_CACHED = 512;
+
+    private static final Map<String, QueryDescriptor> cache = new LinkedHashMap<String, QueryDescriptor>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, QueryDescriptor> eldest) {
+            return size() > MAX_CACHED;
+        }
+    };
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    private final String sql;
+    private final int parameterCount;
+    private volatile ColumnIndex columns;
+    private volatile Set<String> tablesRead;
+    private volatile String fingerprint;
+
+    QueryDescriptor(String sql) {
+        this.sql = sql;
+        this.parameterCount = countParameters(sql);
+    }
+
+    /**
+     * Gets the cached descriptor of a query, creating it on first use
+     * @param configName Database configuration the query runs on
+     * @param sql The SQL query
+     * @return the descriptor
+     */
+    static QueryDescriptor forQuery(String configName, String sql) {
+        String key = configName + '\u0000' + sql;
+        synchronized (cache) {
+            QueryDescriptor descriptor = cache.get(key);
+            if (descriptor != null) {
+                hits.incrementAndGet();
+                return descriptor;
+            }
+            misses.incrementAndGet();
+            descriptor = new QueryDescriptor(sql);
+            cache.put(key, descriptor);
+            return descriptor;
+        }
+    }
+
+    static long getHits() { return hits.get(); }
+    static long getMisses() { return misses.get(); }
+
+    static void clearCache() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    int getParameterCount() { return parameterCount; }
+
+    /**
+     * Gets the tables the query reads, for invalidating cached results
+     */
+    Set<String> getTablesRead() {
+        Set<String> tables = tablesRead;
+        if (tables == null) {
+            tables = QueryResultCache.tablesRead(sql);
+            tablesRead = tables;
+        }
+        return tables;
+    }
+
+    /**
+     * Gets the fingerprint the slow-query log groups this query under
+     */
+    String getFingerprint() {
+        String result = fingerprint;
+        if (result == null) {
+            result = SlowQueryLog.fingerprint(sql);
+            fingerprint = result;
+        }
+        return result;
+    }
+
+    /**
+     * Fails fast, before a connection is borrowed, when the parameters do not match the placeholders
+     * @param params The query parameters
+     * @throws SQLException if the number of parameters is wrong
+     */
+    void checkParameters(Object... params) throws SQLException {
+        int given = params == null ? 0 : params.length;
+        if (given != parameterCount) {
+            throw new SQLException("Query expects " + parameterCount + " parameters but " + given +
+                                   " were given: " + sql);
+        }
+    }
+
+    /**
+     * Gets the column index for a result of this query, reusing the cached one while the
+     * result still has the same column labels and types. A schema change that keeps the column
+     * count, such as a rename or a retype under SELECT *, builds a fresh index.
+     * @param rs A result set of this query
+     * @return the column index
+     * @throws SQLException if the metadata cannot be read
+     */
+    ColumnIndex columnsOf(ResultSet rs) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        ColumnIndex cached = columns;
+        if (cached != null && cached.matches(metaData)) {
+            return cached;
+        }
+        ColumnIndex fresh = ColumnIndex.from(metaData);
+        columns = fresh;
+        return fresh;
+    }
+
+    /**
+     * Counts the ? placeholders of a query, skipping string literals, quoted identifiers and comments
+     * @param sql The SQL query
+     * @return number of placeholders
+     */
+    static int countParameters(String sql) {
+        int count = 0;
+        int length = sql.length();
+        for (int i = 0; i < length; i++) {
+            char c = sql.charAt(i);
+            if (c == '\'' || c == '"' || c == '`') {
+                // Skip to the closing quote; backslash escapes and doubled quotes stay inside
+                for (i++; i < length; i++) {
+                    char q = sql.charAt(i);
+                    if (q == '\\' && c != '`') {
+                        i++;
+                    } else if (q == c) {
+                        if (i + 1 < length && sql.charAt(i + 1) == c) {
+                            i++;
+                        } else {
+                            break;
+                        }
+                    }
+                }
+            } else if (c == '#' || (c == '-' && sql.startsWith("-- ", i))) {
+                int end = sql.indexOf('\n', i);
+                i = end < 0 ? length : end;
+            } else if (c == '/' && sql.startsWith("/*", i)) {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 1;
+            } else if (c == '?') {
+                count++;
+            }
+        }
+        return count;
+    }
+}
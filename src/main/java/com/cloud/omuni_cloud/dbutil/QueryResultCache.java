@@ -0,0 +1,324 @@
+package com.cloud.omuni_cloud.dbutil;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Size-bounded LRU cache of lookup results, keyed by configuration, SQL and parameters. Only
+ * lookups made through {@link DatabaseManager#cached(long, TimeUnit)} use it, each with its own
+ * time to live. Every entry remembers the tables its query reads; writes through DatabaseManager
+ * drop the entries of the table they touch on their configuration, and
+ * {@link #invalidateTable(String)} those of a table on every configuration.
+ */
+public class QueryResultCache {
+    private static final Pattern READ_TABLES = Pattern.compile("(?i)\\b(?:FROM|JOIN)\\s+([`\\w.]+)");
+    private static final Pattern WRITE_TABLE = Pattern.compile(
+        "(?i)^\\s*(?:INSERT\\s+(?:IGNORE\\s+)?INTO|REPLACE\\s+INTO|UPDATE(?:\\s+IGNORE)?|DELETE\\s+FROM)\\s+([`\\w.]+)");
+
+    private static volatile int maxEntries = 10_000;
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong evictions = new AtomicLong();
+    private static final AtomicLong expirations = new AtomicLong();
+    private static final AtomicLong invalidations = new AtomicLong();
+
+    private static final Map<Key, Entry> cache = new LinkedHashMap<Key, Entry>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            if (size() > maxEntries) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    };
+    // Lookups in flight per scope, a configuration alone or a configuration and a table they read,
+    // and when each of those scopes was last invalidated. A lookup does not store its result when
+    // one of its scopes was invalidated after it started; invalidating a scope no lookup is loading
+    // leaves no trace (all guarded by cache)
+    private static final Map<String, Integer> loading = new HashMap<>();
+    private static final Map<String, Long> invalidatedAt = new HashMap<>();
+    private static long clock;
+
+    private QueryResultCache() {
+    }
+
+    /**
+     * Loads a result on a cache miss
+     */
+    @FunctionalInterface
+    interface Loader {
+        Object load() throws SQLException;
+    }
+
+    /**
+     * Sets the maximum number of cached results; the least recently used are evicted first
+     */
+    public static void setMaxEntries(int entries) {
+        maxEntries = entries;
+    }
+
+    // Getters
+    public static long getHits() { return hits.get(); }
+    public static long getMisses() { return misses.get(); }
+    public static long getEvictions() { return evictions.get(); }
+    public static long getExpirations() { return expirations.get(); }
+    public static long getInvalidations() { return invalidations.get(); }
+
+    public static int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Gets the share of lookups served from the cache
+     * @return hits / (hits + misses), or 0 before the first lookup
+     */
+    public static double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     * Gets a cached result or loads and caches it
+     * @param configName Database configuration the lookup runs on
+     * @param sql The query, or another text identifying the lookup
+     * @param params The lookup parameters
+     * @param tables Tables the lookup reads, unqualified and lower case
+     * @param ttlMillis How long the result may be served from the cache
+     * @param loader Loads the result on a miss
+     * @return the result, possibly null
+     * @throws SQLException if loading fails; failures are not cached
+     */
+    static Object get(String configName, String sql, List<Object> params, Set<String> tables,
+                      long ttlMillis, Loader loader) throws SQLException {
+        Key key = new Key(configName, sql, params);
+        List<String> scopes = scopes(configName, tables);
+        long started;
+        synchronized (cache) {
+            Entry entry = cache.get(key);
+            if (entry != null) {
+                if (System.nanoTime() - entry.expiresAt < 0) {
+                    hits.incrementAndGet();
+                    return entry.value;
+                }
+                cache.remove(key);
+                expirations.incrementAndGet();
+            }
+            misses.incrementAndGet();
+            for (String scope : scopes) {
+                loading.merge(scope, 1, Integer::sum);
+            }
+            started = clock;
+        }
+
+        Object value = null;
+        boolean loaded = false;
+        try {
+            value = loader.load();
+            loaded = true;
+            return value;
+        } finally {
+            synchronized (cache) {
+                boolean current = finishLoading(scopes, started);
+                if (loaded && current) {
+                    cache.put(key, new Entry(value, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttlMillis),
+                                             tables));
+                }
+            }
+        }
+    }
+
+    private static List<String> scopes(String configName, Set<String> tables) {
+        List<String> scopes = new ArrayList<>(tables.size() + 1);
+        scopes.add(configName + '\0');
+        for (String table : tables) {
+            scopes.add(configName + '\0' + table);
+        }
+        return scopes;
+    }
+
+    /**
+     * Ends a lookup's loading of its scopes (guarded by cache)
+     * @return false if one of the scopes was invalidated after the lookup started
+     */
+    private static boolean finishLoading(List<String> scopes, long started) {
+        boolean current = true;
+        for (String scope : scopes) {
+            Long at = invalidatedAt.get(scope);
+            if (at != null && at > started) {
+                current = false;
+            }
+            if (loading.compute(scope, (s, count) -> count == 1 ? null : count - 1) == null) {
+                invalidatedAt.remove(scope);
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Marks the scopes lookups are loading from as invalidated (guarded by cache)
+     * @param configName Configuration to match, or null for all
+     * @param table Table to match, or null for every table and the configuration-wide scope
+     */
+    private static void markInvalidated(String configName, String table) {
+        for (String scope : loading.keySet()) {
+            int split = scope.indexOf('\0');
+            if ((configName == null || configName.equals(scope.substring(0, split)))
+                && (table == null || table.equals(scope.substring(split + 1)))) {
+                invalidatedAt.put(scope, ++clock);
+            }
+        }
+    }
+
+    /**
+     * Drops every cached result that reads a table
+     * @param tableName The table, optionally schema-qualified; entries are matched on the table name alone
+     * @return number of entries dropped
+     */
+    public static int invalidateTable(String tableName) {
+        String table = normalize(tableName);
+        return invalidate(null, table);
+    }
+
+    private static int invalidate(String configName, String table) {
+        int removed = 0;
+        synchronized (cache) {
+            markInvalidated(configName, table);
+            Iterator<Map.Entry<Key, Entry>> entries = cache.entrySet().iterator();
+            while (entries.hasNext()) {
+                Map.Entry<Key, Entry> entry = entries.next();
+                if ((configName == null || entry.getKey().configName.equals(configName))
+                    && (table == null || entry.getValue().tables.contains(table))) {
+                    entries.remove();
+                    removed++;
+                }
+            }
+        }
+        invalidations.addAndGet(removed);
+        return removed;
+    }
+
+    /**
+     * Drops every cached result
+     */
+    public static void invalidateAll() {
+        synchronized (cache) {
+            markInvalidated(null, null);
+            invalidations.addAndGet(cache.size());
+            cache.clear();
+        }
+    }
+
+    /**
+     * Drops the results of the table an INSERT, REPLACE, UPDATE or DELETE statement writes, on the
+     * configuration it ran on. Lookups of other tables and configurations are left alone, in flight
+     * or cached.
+     * @param configName Database configuration the statement ran on
+     * @param sql The statement
+     */
+    static void invalidateWrites(String configName, String sql) {
+        Matcher matcher = WRITE_TABLE.matcher(sql);
+        // A write we cannot attribute to a table, e.g. a multi-table statement, drops the whole configuration
+        invalidate(configName, matcher.find() ? normalize(matcher.group(1)) : null);
+    }
+
+    /**
+     * Finds the tables a query reads from its FROM and JOIN clauses
+     * @param sql The query
+     * @return unqualified, lower-case table names
+     */
+    static Set<String> tablesRead(String sql) {
+        Set<String> tables = new HashSet<>();
+        Matcher matcher = READ_TABLES.matcher(sql);
+        while (matcher.find()) {
+            tables.add(normalize(matcher.group(1)));
+        }
+        return Collections.unmodifiableSet(tables);
+    }
+
+    static String normalize(String tableName) {
+        String table = tableName.replace("`", "");
+        return table.substring(table.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Formats the cache statistics on one line
+     */
+    public static String format() {
+        return String.format("resultCache[size=%d hits=%d misses=%d hitRate=%.1f%% evictions=%d expirations=%d invalidations=%d]",
+            size(), getHits(), getMisses(), getHitRate() * 100, getEvictions(), getExpirations(), getInvalidations());
+    }
+
+    static void clear() {
+        synchronized (cache) {
+            cache.clear();
+            markInvalidated(null, null);
+        }
+        hits.set(0);
+        misses.set(0);
+        evictions.set(0);
+        expirations.set(0);
+        invalidations.set(0);
+    }
+
+    private static class Key {
+        private final String configName;
+        private final String sql;
+        private final List<Object> params;
+        private final int hash;
+
+        Key(String configName, String sql, List<Object> params) {
+            this.configName = configName;
+            this.sql = sql;
+            this.params = params;
+            this.hash = Objects.hash(configName, sql, params);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash && configName.equals(other.configName) && sql.equals(other.sql)
+                   && params.equals(other.params);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static class Entry {
+        private final Object value;
+        private final long expiresAt;
+        private final Set<String> tables;
+
+        Entry(Object value, long expiresAt, Set<String> tables) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+            this.tables = tables;
+        }
+    }
+}
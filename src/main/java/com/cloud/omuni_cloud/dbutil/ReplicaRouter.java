@@ -0,0 +1,214 @@
+package com.cloud.omuni_cloud.dbutil;
+
+import com.cloud.omuni_cloud.dbutil.config.DbConnectionConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLSyntaxErrorException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Spreads the reads of one database configuration over its read replicas and keeps lagging or
+ * unreachable replicas out of rotation. Replica lag is read with SHOW REPLICA STATUS every few
+ * seconds, which needs the REPLICATION CLIENT privilege; a replica whose lag cannot be read is
+ * kept out of rotation, like a lagging one. When no replica is usable, reads fall back to the
+ * primary.
+ */
+class ReplicaRouter implements AutoCloseable {
+    static final String REPLICA_SUFFIX = "-replica-";
+    private static final long LAG_CHECK_INTERVAL_SECONDS = 5;
+    // MySQL error for a missing privilege, here REPLICATION CLIENT
+    private static final int ACCESS_DENIED = 1227;
+
+    private final String configName;
+    private final DatabaseConnection connection;
+    private final DbConnectionConfig.ReadRouting routing;
+    private final long maxLagSeconds;
+    private final Replica[] replicas;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ScheduledExecutorService monitor;
+
+    ReplicaRouter(String configName, DbConnectionConfig config, DatabaseConnection connection) {
+        this.configName = configName;
+        this.connection = connection;
+        this.routing = config.getReadRouting();
+        this.maxLagSeconds = config.getMaxReplicaLagSeconds();
+        List<DbConnectionConfig> replicaConfigs = config.getReplicas();
+        this.replicas = new Replica[replicaConfigs.size()];
+        for (int i = 0; i < replicas.length; i++) {
+            replicas[i] = new Replica(configName + REPLICA_SUFFIX + i, replicaConfigs.get(i));
+        }
+
+        // Check once before the first read so a lagging replica never serves it
+        checkLag();
+        monitor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "replica-lag-" + configName);
+            thread.setDaemon(true);
+            return thread;
+        });
+        monitor.scheduleWithFixedDelay(this::checkLag, LAG_CHECK_INTERVAL_SECONDS, LAG_CHECK_INTERVAL_SECONDS,
+            TimeUnit.SECONDS);
+    }
+
+    /**
+     * Borrows a connection from a replica in rotation
+     * @return a replica connection, or null if no replica is usable and the primary should be read
+     */
+    Connection getConnection() {
+        for (Replica replica : candidates()) {
+            try {
+                return connection.getReplicaDataSource(replica.name, replica.config).getConnection();
+            } catch (SQLException | RuntimeException e) {
+                replica.takeOut("connection failed: " + e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Orders the replicas in rotation by preference
+     */
+    private List<Replica> candidates() {
+        List<Replica> candidates = new ArrayList<>(replicas.length);
+        if (routing == DbConnectionConfig.ReadRouting.LEAST_LOADED) {
+            for (Replica replica : replicas) {
+                if (replica.inRotation) {
+                    candidates.add(replica);
+                }
+            }
+            candidates.sort((a, b) -> Integer.compare(load(a), load(b)));
+        } else {
+            int start = Math.floorMod(next.getAndIncrement(), replicas.length);
+            for (int i = 0; i < replicas.length; i++) {
+                Replica replica = replicas[(start + i) % replicas.length];
+                if (replica.inRotation) {
+                    candidates.add(replica);
+                }
+            }
+        }
+        return candidates;
+    }
+
+    // Busy plus waiting connections; a pool not opened yet counts as idle
+    private int load(Replica replica) {
+        HikariPoolMXBean pool = connection.getPoolMXBeans().get(replica.name);
+        return pool == null ? 0 : pool.getActiveConnections() + pool.getThreadsAwaitingConnection();
+    }
+
+    /**
+     * Reads the lag of every replica and updates which ones are in rotation
+     */
+    void checkLag() {
+        for (Replica replica : replicas) {
+            try {
+                HikariDataSource dataSource = connection.getReplicaDataSource(replica.name, replica.config);
+                try (Connection conn = dataSource.getConnection()) {
+                    Long lag = readLagSeconds(conn);
+                    replica.lagSeconds = lag;
+                    if (lag == null) {
+                        replica.takeOut("replication is not running");
+                    } else if (lag > maxLagSeconds) {
+                        replica.takeOut("lag " + lag + "s exceeds " + maxLagSeconds + "s");
+                    } else {
+                        replica.putBack();
+                    }
+                }
+            } catch (SQLException e) {
+                replica.lagSeconds = null;
+                if (e.getErrorCode() == ACCESS_DENIED) {
+                    // An unmeasured replica could lag any amount, so it gets no reads
+                    replica.takeOut("lag cannot be read without the REPLICATION CLIENT privilege");
+                } else {
+                    replica.takeOut("lag check failed: " + e.getMessage());
+                }
+            } catch (RuntimeException e) {
+                replica.takeOut("lag check failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Reads the replication lag of a server
+     * @return lag in seconds, 0 if the server is not a replica, or null if replication is stopped
+     */
+    private static Long readLagSeconds(Connection conn) throws SQLException {
+        try {
+            return readLagSeconds(conn, "SHOW REPLICA STATUS", "Seconds_Behind_Source");
+        } catch (SQLSyntaxErrorException e) {
+            // Servers before 8.0.22
+            return readLagSeconds(conn, "SHOW SLAVE STATUS", "Seconds_Behind_Master");
+        }
+    }
+
+    private static Long readLagSeconds(Connection conn, String statement, String column) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(statement)) {
+            if (!rs.next()) {
+                return 0L;
+            }
+            long lag = rs.getLong(column);
+            return rs.wasNull() ? null : lag;
+        }
+    }
+
+    /**
+     * Describes every replica: name, endpoint, lag and whether it is in rotation
+     */
+    List<String> status() {
+        List<String> status = new ArrayList<>();
+        for (Replica replica : replicas) {
+            status.add(replica.toString());
+        }
+        return status;
+    }
+
+    @Override
+    public void close() {
+        monitor.shutdownNow();
+    }
+
+    /**
+     * One replica and its routing state
+     */
+    private class Replica {
+        final String name;
+        final DbConnectionConfig config;
+        volatile boolean inRotation = true;
+        volatile Long lagSeconds;
+
+        Replica(String name, DbConnectionConfig config) {
+            this.name = name;
+            this.config = config;
+        }
+
+        void takeOut(String reason) {
+            if (inRotation) {
+                System.err.println("Replica " + name + " of " + configName + " out of rotation: " + reason);
+            }
+            inRotation = false;
+        }
+
+        void putBack() {
+            if (!inRotation) {
+                System.out.println("Replica " + name + " of " + configName + " back in rotation");
+            }
+            inRotation = true;
+        }
+
+        @Override
+        public String toString() {
+            return name + " " + config.getHost() + ":" + config.getPort() +
+                   " lag=" + (lagSeconds == null ? "unknown" : lagSeconds + "s") +
+                   (inRotation ? " in rotation" : " out of rotation");
+        }
+    }
+}
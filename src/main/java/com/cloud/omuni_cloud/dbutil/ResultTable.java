@@ -0,0 +1,424 @@
+package com.cloud.omuni_cloud.dbutil;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Compact, column-oriented query result. Column labels are held once in a shared ColumnIndex,
+ * integral columns are stored in long arrays and floating-point columns in double arrays, so
+ * numbers are neither boxed nor repeated with their column names in every row. Other values are
+ * kept in one object array per column.
+ *
+ * <p>Use the typed getters for hot paths, or {@link #asMaps()} for code written against
+ * the list-of-maps results of {@link DatabaseManager#executeQuery(String, Object...)}.
+ */
+public class ResultTable {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final ColumnIndex columns;
+    private final Column[] data;
+    private int size;
+
+    ResultTable(ColumnIndex columns) {
+        this.columns = columns;
+        this.data = new Column[columns.size()];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = Column.forClass(columns.getClassName(i));
+        }
+    }
+
+    /**
+     * Reads every remaining row of a result set
+     * @param rs The result set
+     * @return the table
+     * @throws SQLException if a value cannot be read
+     */
+    static ResultTable read(ResultSet rs) throws SQLException {
+        return read(rs, ColumnIndex.from(rs.getMetaData()));
+    }
+
+    /**
+     * Reads every remaining row of a result set whose columns are already known
+     * @param rs The result set
+     * @param columns Column index matching the result set
+     * @return the table
+     * @throws SQLException if a value cannot be read
+     */
+    static ResultTable read(ResultSet rs, ColumnIndex columns) throws SQLException {
+        ResultTable table = new ResultTable(columns);
+        while (rs.next()) {
+            table.append(rs);
+        }
+        table.trimToSize();
+        return table;
+    }
+
+    void append(ResultSet rs) throws SQLException {
+        for (int i = 0; i < data.length; i++) {
+            data[i].read(rs, i + 1, size);
+        }
+        size++;
+    }
+
+    void trimToSize() {
+        for (Column column : data) {
+            column.resize(size);
+        }
+    }
+
+    // Getters
+    public ColumnIndex getColumns() { return columns; }
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+
+    public boolean isNull(int row, int column) {
+        checkRow(row);
+        return data[column].nulls.get(row);
+    }
+
+    /**
+     * Gets a value as a long without boxing
+     * @param row Zero-based row
+     * @param column Zero-based column
+     * @return the value, or 0 for SQL NULL as with ResultSet.getLong
+     */
+    public long getLong(int row, int column) {
+        checkRow(row);
+        return data[column].getLong(row);
+    }
+
+    public int getInt(int row, int column) {
+        return (int) getLong(row, column);
+    }
+
+    /**
+     * Gets a value as a double without boxing
+     * @param row Zero-based row
+     * @param column Zero-based column
+     * @return the value, or 0 for SQL NULL as with ResultSet.getDouble
+     */
+    public double getDouble(int row, int column) {
+        checkRow(row);
+        return data[column].getDouble(row);
+    }
+
+    public String getString(int row, int column) {
+        Object value = getObject(row, column);
+        return value == null ? null : value.toString();
+    }
+
+    /**
+     * Gets a value as the object ResultSet.getObject would have returned
+     * @param row Zero-based row
+     * @param column Zero-based column
+     * @return the value, or null for SQL NULL
+     */
+    public Object getObject(int row, int column) {
+        checkRow(row);
+        return data[column].getObject(row);
+    }
+
+    public boolean isNull(int row, String label) { return isNull(row, columns.require(label)); }
+    public long getLong(int row, String label) { return getLong(row, columns.require(label)); }
+    public int getInt(int row, String label) { return getInt(row, columns.require(label)); }
+    public double getDouble(int row, String label) { return getDouble(row, columns.require(label)); }
+    public String getString(int row, String label) { return getString(row, columns.require(label)); }
+    public Object getObject(int row, String label) { return getObject(row, columns.require(label)); }
+
+    /**
+     * Copies one row out of the table
+     * @param row Zero-based row
+     * @return the row
+     */
+    public Row getRow(int row) {
+        Object[] values = new Object[data.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = getObject(row, i);
+        }
+        return new Row(columns, values);
+    }
+
+    /**
+     * Gets a read-only list-of-maps view of the table. No data is copied; each map reads its
+     * values from the table on access and iterates its columns in query order.
+     * @return the rows as maps of column label to value
+     */
+    public List<Map<String, Object>> asMaps() {
+        return new AbstractList<Map<String, Object>>() {
+            @Override
+            public Map<String, Object> get(int index) {
+                checkRow(index);
+                return new RowMap(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        }
+    }
+
+    /**
+     * Map view of one row
+     */
+    private class RowMap extends AbstractMap<String, Object> {
+        private final int row;
+
+        RowMap(int row) {
+            this.row = row;
+        }
+
+        private int position(Object key) {
+            if (!(key instanceof String)) {
+                return -1;
+            }
+            int index = columns.indexOf((String) key);
+            return index >= 0 && columns.getLabel(index).equals(key) ? index : -1;
+        }
+
+        @Override
+        public Object get(Object key) {
+            int index = position(key);
+            return index < 0 ? null : data[index].getObject(row);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return position(key) >= 0;
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<Entry<String, Object>>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    return new Iterator<Entry<String, Object>>() {
+                        private int next = advance(0);
+
+                        // Skips columns shadowed by a later column with the same label
+                        private int advance(int from) {
+                            int index = from;
+                            while (index < data.length && columns.indexOf(columns.getLabel(index)) != index) {
+                                index++;
+                            }
+                            return index;
+                        }
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < data.length;
+                        }
+
+                        @Override
+                        public Entry<String, Object> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            int index = next;
+                            next = advance(index + 1);
+                            return new SimpleImmutableEntry<>(columns.getLabel(index), data[index].getObject(row));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    int count = 0;
+                    for (int i = 0; i < data.length; i++) {
+                        if (columns.indexOf(columns.getLabel(i)) == i) {
+                            count++;
+                        }
+                    }
+                    return count;
+                }
+            };
+        }
+    }
+
+    /**
+     * Storage for the values of one column
+     */
+    private abstract static class Column {
+        final BitSet nulls = new BitSet();
+
+        static Column forClass(String className) {
+            if (className == null) {
+                return new ObjectColumn();
+            }
+            switch (className) {
+                case "java.lang.Long":
+                case "java.lang.Integer":
+                case "java.lang.Short":
+                case "java.lang.Byte":
+                    return new LongColumn(className);
+                case "java.lang.Double":
+                case "java.lang.Float":
+                    return new DoubleColumn("java.lang.Float".equals(className));
+                default:
+                    return new ObjectColumn();
+            }
+        }
+
+        abstract void read(ResultSet rs, int jdbcIndex, int row) throws SQLException;
+        abstract void resize(int capacity);
+        abstract long getLong(int row);
+        abstract double getDouble(int row);
+        abstract Object getObject(int row);
+
+        static int grow(int length, int row) {
+            return row < length ? length : Math.max(INITIAL_CAPACITY, length * 2);
+        }
+    }
+
+    private static class LongColumn extends Column {
+        private final String className;
+        private long[] values = new long[0];
+
+        LongColumn(String className) {
+            this.className = className;
+        }
+
+        @Override
+        void read(ResultSet rs, int jdbcIndex, int row) throws SQLException {
+            if (row >= values.length) {
+                resize(grow(values.length, row));
+            }
+            values[row] = rs.getLong(jdbcIndex);
+            if (rs.wasNull()) {
+                nulls.set(row);
+            }
+        }
+
+        @Override
+        void resize(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        long getLong(int row) {
+            return values[row];
+        }
+
+        @Override
+        double getDouble(int row) {
+            return values[row];
+        }
+
+        @Override
+        Object getObject(int row) {
+            if (nulls.get(row)) {
+                return null;
+            }
+            long value = values[row];
+            switch (className) {
+                case "java.lang.Integer": return (int) value;
+                case "java.lang.Short": return (short) value;
+                case "java.lang.Byte": return (byte) value;
+                default: return value;
+            }
+        }
+    }
+
+    private static class DoubleColumn extends Column {
+        private final boolean isFloat;
+        private double[] values = new double[0];
+
+        DoubleColumn(boolean isFloat) {
+            this.isFloat = isFloat;
+        }
+
+        @Override
+        void read(ResultSet rs, int jdbcIndex, int row) throws SQLException {
+            if (row >= values.length) {
+                resize(grow(values.length, row));
+            }
+            values[row] = rs.getDouble(jdbcIndex);
+            if (rs.wasNull()) {
+                nulls.set(row);
+            }
+        }
+
+        @Override
+        void resize(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        long getLong(int row) {
+            return (long) values[row];
+        }
+
+        @Override
+        double getDouble(int row) {
+            return values[row];
+        }
+
+        @Override
+        Object getObject(int row) {
+            if (nulls.get(row)) {
+                return null;
+            }
+            return isFloat ? (Object) (float) values[row] : (Object) values[row];
+        }
+    }
+
+    private static class ObjectColumn extends Column {
+        private Object[] values = new Object[0];
+
+        @Override
+        void read(ResultSet rs, int jdbcIndex, int row) throws SQLException {
+            if (row >= values.length) {
+                resize(grow(values.length, row));
+            }
+            Object value = rs.getObject(jdbcIndex);
+            values[row] = value;
+            if (value == null) {
+                nulls.set(row);
+            }
+        }
+
+        @Override
+        void resize(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        long getLong(int row) {
+            Object value = values[row];
+            if (value == null) {
+                return 0L;
+            }
+            return value instanceof Number ? ((Number) value).longValue() : Long.parseLong(value.toString().trim());
+        }
+
+        @Override
+        double getDouble(int row) {
+            Object value = values[row];
+            if (value == null) {
+                return 0.0;
+            }
+            return value instanceof Number ? ((Number) value).doubleValue() : Double.parseDouble(value.toString().trim());
+        }
+
+        @Override
+        Object getObject(int row) {
+            return values[row];
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.cloud.omuni_cloud.dbutil;
+
+import java.util.Arrays;
+
+/**
+ * One row of a query result. The column labels live in a ColumnIndex shared by all rows of
+ * the result, so a row holds nothing but its values.
+ */
+public class Row {
+    private final ColumnIndex columns;
+    private final Object[] values;
+
+    Row(ColumnIndex columns, Object[] values) {
+        this.columns = columns;
+        this.values = values;
+    }
+
+    public ColumnIndex getColumns() { return columns; }
+
+    /**
+     * Gets a value by zero-based column position
+     * @param index Column position
+     * @return the value, or null for SQL NULL
+     */
+    public Object get(int index) {
+        return values[index];
+    }
+
+    /**
+     * Gets a value by column label
+     * @param label Column label, case-insensitive
+     * @return the value, or null for SQL NULL
+     * @throws IllegalArgumentException if the result has no such column
+     */
+    public Object get(String label) {
+        return values[columns.require(label)];
+    }
+
+    /**
+     * Copies the values of this row
+     * @return the values in column order
+     */
+    public Object[] toArray() {
+        return values.clone();
+    }
+
+    /**
+     * Gets a value as a string
+     * @param label Column label, case-insensitive
+     * @return the value's string form, or null for SQL NULL
+     */
+    public String getString(String label) {
+        Object value = get(label);
+        return value == null ? null : value.toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(columns.getLabel(i)).append('=').append(values[i]);
+        }
+        return sb.append('}').toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Row)) return false;
+        Row other = (Row) o;
+        return columns.getLabels().equals(other.columns.getLabels()) && Arrays.equals(values, other.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * columns.getLabels().hashCode() + Arrays.hashCode(values);
+    }
+}
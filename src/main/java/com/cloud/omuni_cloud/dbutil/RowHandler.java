@@ -0,0 +1,16 @@
+package com.cloud.omuni_cloud.dbutil;
+
+import java.sql.SQLException;
+
+/**
+ * Receives the rows of a streamed query one at a time
+ */
+@FunctionalInterface
+public interface RowHandler {
+    /**
+     * Handles one row; the row is not kept by the caller after this returns
+     * @param row The current row
+     * @throws SQLException to abort the query
+     */
+    void handle(Row row) throws SQLException;
+}
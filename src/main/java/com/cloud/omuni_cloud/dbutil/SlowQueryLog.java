@@ -0,0 +1,309 @@
+package com.cloud.omuni_cloud.dbutil;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Timing of every statement run through DatabaseManager and the DatabaseConnection.validate*
+ * helpers, split into connection acquire time and execution time. Statements are grouped by
+ * fingerprint, the SQL with its literals and value lists replaced by placeholders, so the ten
+ * thousand runs of one verification query add up to one entry with counts and percentiles.
+ *
+ * <p>A statement taking longer than the threshold (1 s by default, or the db.slowQueryMillis
+ * system property) is logged as it finishes; {@link #format(int)} reports the fingerprints that
+ * took the most time in total, which is what the runners print at the end of a run.
+ */
+public class SlowQueryLog {
+    private static final int MAX_FINGERPRINTS = 2000;
+    private static final int SAMPLES_PER_FINGERPRINT = 1024;
+    private static final String OTHER = "(other statements)";
+
+    private static final Pattern VALUE_LIST = Pattern.compile("\\(\\?(?:\\s*,\\s*\\?)+\\)");
+    private static final Pattern ROW_LIST = Pattern.compile("(\\(\\?\\+?\\))(?:\\s*,\\s*\\(\\?\\+?\\))+");
+
+    private static final Map<String, QueryStats> stats = new ConcurrentHashMap<>();
+    private static volatile long thresholdMillis = Long.getLong("db.slowQueryMillis", 1000L);
+
+    private SlowQueryLog() {
+    }
+
+    public static long getThresholdMillis() {
+        return thresholdMillis;
+    }
+
+    /**
+     * Sets how long a statement may take, acquire included, before it is logged as slow
+     * @param millis The threshold; Long.MAX_VALUE turns the live log off
+     */
+    public static void setThresholdMillis(long millis) {
+        thresholdMillis = millis;
+    }
+
+    /**
+     * Starts timing a statement, before its connection is borrowed
+     * @param configName Database configuration the statement runs on
+     * @param fingerprint Fingerprint of the statement
+     * @return the timing, to be stopped when the statement is done
+     */
+    static Timing start(String configName, String fingerprint) {
+        return new Timing(configName, fingerprint);
+    }
+
+    /**
+     * Records one finished statement
+     * @param configName Database configuration the statement ran on
+     * @param fingerprint Fingerprint of the statement
+     * @param acquireNanos Time spent waiting for a connection
+     * @param executeNanos Time spent executing and reading the result
+     * @param failed Whether the statement failed
+     */
+    static void record(String configName, String fingerprint, long acquireNanos, long executeNanos, boolean failed) {
+        QueryStats entry = stats.get(configName + '\u0000' + fingerprint);
+        if (entry == null) {
+            String key = stats.size() < MAX_FINGERPRINTS ? fingerprint : OTHER;
+            entry = stats.computeIfAbsent(configName + '\u0000' + key, k -> new QueryStats(configName, key));
+        }
+        entry.add(acquireNanos, executeNanos, failed);
+
+        long totalMillis = TimeUnit.NANOSECONDS.toMillis(acquireNanos + executeNanos);
+        if (totalMillis >= thresholdMillis) {
+            System.out.println(String.format("[SLOW QUERY] %d ms (acquire %d ms) on %s%s: %s",
+                totalMillis, TimeUnit.NANOSECONDS.toMillis(acquireNanos), configName,
+                failed ? " FAILED" : "", fingerprint));
+        }
+    }
+
+    /**
+     * Normalizes a statement into its fingerprint: literals become ?, lists of values collapse to
+     * (?+), lists of rows to one row followed by ..., comments are dropped and whitespace squeezed.
+     * Statements that differ only in their values share a fingerprint.
+     * @param sql The SQL statement
+     * @return the fingerprint
+     */
+    public static String fingerprint(String sql) {
+        StringBuilder sb = new StringBuilder(sql.length());
+        int length = sql.length();
+        for (int i = 0; i < length; i++) {
+            char c = sql.charAt(i);
+            if (c == '\'' || c == '"') {
+                // Skip to the closing quote; backslash escapes and doubled quotes stay inside
+                for (i++; i < length; i++) {
+                    char q = sql.charAt(i);
+                    if (q == '\\') {
+                        i++;
+                    } else if (q == c) {
+                        if (i + 1 < length && sql.charAt(i + 1) == c) {
+                            i++;
+                        } else {
+                            break;
+                        }
+                    }
+                }
+                sb.append('?');
+            } else if (c == '`') {
+                int end = sql.indexOf('`', i + 1);
+                end = end < 0 ? length - 1 : end;
+                sb.append(sql, i, end + 1);
+                i = end;
+            } else if (c == '#' || (c == '-' && sql.startsWith("-- ", i))) {
+                int end = sql.indexOf('\n', i);
+                i = end < 0 ? length : end - 1;
+            } else if (c == '/' && sql.startsWith("/*", i)) {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 1;
+                appendSpace(sb);
+            } else if (Character.isWhitespace(c)) {
+                appendSpace(sb);
+            } else if (Character.isDigit(c) && !isIdentifierPart(sb)) {
+                // A number, decimal or hex literal; digits inside identifiers such as t1 stay
+                i++;
+                while (i < length && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+                    i++;
+                }
+                i--;
+                sb.append('?');
+            } else {
+                sb.append(c);
+            }
+        }
+        String fingerprint = VALUE_LIST.matcher(sb.toString().trim()).replaceAll("(?+)");
+        return ROW_LIST.matcher(fingerprint).replaceAll("$1, ...");
+    }
+
+    private static void appendSpace(StringBuilder sb) {
+        if (sb.length() > 0 && sb.charAt(sb.length() - 1) != ' ') {
+            sb.append(' ');
+        }
+    }
+
+    private static boolean isIdentifierPart(StringBuilder sb) {
+        if (sb.length() == 0) {
+            return false;
+        }
+        char last = sb.charAt(sb.length() - 1);
+        return Character.isLetterOrDigit(last) || last == '_' || last == '$';
+    }
+
+    /**
+     * Gets the statistics of every fingerprint, those that took the most time in total first
+     */
+    public static List<QueryStats> snapshot() {
+        // Read each total once, so entries updated during the sort keep a consistent order
+        Map<QueryStats, Long> totals = new IdentityHashMap<>();
+        for (QueryStats entry : stats.values()) {
+            totals.put(entry, entry.getTotalNanos());
+        }
+        List<QueryStats> entries = new ArrayList<>(totals.keySet());
+        entries.sort(Comparator.comparing(totals::get, Comparator.reverseOrder()));
+        return entries;
+    }
+
+    /**
+     * Formats the fingerprints that took the most time in total, one line each
+     * @param topN Maximum number of fingerprints to list
+     */
+    public static String format(int topN) {
+        List<QueryStats> entries = snapshot();
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Top %d of %d query fingerprints by total time (slow threshold %d ms):%n",
+            Math.min(topN, entries.size()), entries.size(), thresholdMillis));
+        for (QueryStats entry : entries.subList(0, Math.min(topN, entries.size()))) {
+            sb.append("  ").append(entry).append(System.lineSeparator());
+        }
+        return sb.toString();
+    }
+
+    static void clear() {
+        stats.clear();
+    }
+
+    /**
+     * Times one statement from the moment its connection is requested
+     */
+    static class Timing {
+        private final String configName;
+        private final String fingerprint;
+        private final long started = System.nanoTime();
+        private long acquired;
+        private boolean failed;
+        private boolean stopped;
+
+        Timing(String configName, String fingerprint) {
+            this.configName = configName;
+            this.fingerprint = fingerprint;
+        }
+
+        /**
+         * Marks the end of the connection acquire
+         * @param connection The borrowed connection
+         * @return the same connection
+         */
+        Connection acquired(Connection connection) {
+            acquired = System.nanoTime();
+            return connection;
+        }
+
+        void failed() {
+            failed = true;
+        }
+
+        /**
+         * Records the statement; later calls do nothing
+         */
+        void stop() {
+            if (stopped) {
+                return;
+            }
+            stopped = true;
+            long now = System.nanoTime();
+            // Without a connection the whole time was spent acquiring
+            long acquireEnd = acquired == 0 ? now : acquired;
+            record(configName, fingerprint, acquireEnd - started, now - acquireEnd, failed || acquired == 0);
+        }
+    }
+
+    /**
+     * Counts and latencies of one fingerprint on one configuration. Percentiles are taken over the
+     * most recent executions, so memory stays bounded on long runs.
+     */
+    public static class QueryStats {
+        private final String configName;
+        private final String fingerprint;
+        private final long[] samples = new long[SAMPLES_PER_FINGERPRINT];
+        private long count;
+        private long failures;
+        private long totalNanos;
+        private long acquireNanos;
+        private long maxNanos;
+
+        QueryStats(String configName, String fingerprint) {
+            this.configName = configName;
+            this.fingerprint = fingerprint;
+        }
+
+        synchronized void add(long acquire, long execute, boolean failed) {
+            long total = acquire + execute;
+            samples[(int) (count % samples.length)] = total;
+            count++;
+            if (failed) {
+                failures++;
+            }
+            totalNanos += total;
+            acquireNanos += acquire;
+            maxNanos = Math.max(maxNanos, total);
+        }
+
+        // Getters
+        public String getConfigName() { return configName; }
+        public String getFingerprint() { return fingerprint; }
+        public synchronized long getCount() { return count; }
+        public synchronized long getFailures() { return failures; }
+        public synchronized long getTotalNanos() { return totalNanos; }
+
+        public synchronized double getTotalMillis() { return totalNanos / 1e6; }
+        public synchronized double getMaxMillis() { return maxNanos / 1e6; }
+
+        public synchronized double getMeanMillis() {
+            return count == 0 ? 0.0 : totalNanos / 1e6 / count;
+        }
+
+        /**
+         * Gets the mean time spent waiting for a connection
+         */
+        public synchronized double getAcquireMeanMillis() {
+            return count == 0 ? 0.0 : acquireNanos / 1e6 / count;
+        }
+
+        /**
+         * Gets the nearest-rank percentile of the recent executions, acquire included
+         * @param percentile Percentile between 0 and 100
+         * @return the latency in milliseconds, or 0 before the first execution
+         */
+        public synchronized double getPercentileMillis(double percentile) {
+            int size = (int) Math.min(count, samples.length);
+            if (size == 0) {
+                return 0.0;
+            }
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            int rank = (int) Math.ceil(percentile / 100.0 * size);
+            return sorted[Math.max(0, Math.min(size - 1, rank - 1))] / 1e6;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format("%s n=%d failed=%d total=%.0fms mean=%.1fms acquire=%.1fms p50=%.1fms " +
+                "p95=%.1fms p99=%.1fms max=%.1fms %s", configName, count, failures, getTotalMillis(),
+                getMeanMillis(), getAcquireMeanMillis(), getPercentileMillis(50), getPercentileMillis(95),
+                getPercentileMillis(99), getMaxMillis(), fingerprint);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.cloud.omuni_cloud.dbutil;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rows inserted, updated and deleted between two {@link DatabaseSnapshot}s, per table, as keys.
+ * The current values of inserted and updated rows can be read back by key; deleted rows are
+ * gone, and a snapshot keeps only hashes, so they are known by key alone.
+ * <pre>
+ * SnapshotDiff diff = before.diff(snapshotter.capture());
+ * SnapshotDiff.TableDiff orders = diff.getTable("nickfury.sale_orders");
+ * assertEquals(1, orders.getInserted().size());
+ * for (Row row : orders.readInsertedRows()) { ... }
+ * </pre>
+ */
+public class SnapshotDiff {
+    private static final int READ_CHUNK_SIZE = 500;
+
+    private final Map<String, TableDiff> tables;
+
+    SnapshotDiff(Map<String, TableDiff> tables) {
+        this.tables = tables;
+    }
+
+    // Getters
+    public Map<String, TableDiff> getTables() { return Collections.unmodifiableMap(tables); }
+
+    /**
+     * Gets the changes of one table
+     * @param tableName Table name as added to the snapshotter
+     * @return the table's changes
+     */
+    public TableDiff getTable(String tableName) {
+        TableDiff table = tables.get(tableName);
+        if (table == null) {
+            throw new IllegalArgumentException("Diff has no table " + tableName);
+        }
+        return table;
+    }
+
+    public boolean isEmpty() {
+        for (TableDiff table : tables.values()) {
+            if (!table.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Formats the change counts of every table, one line each
+     */
+    public String format() {
+        StringBuilder sb = new StringBuilder();
+        for (TableDiff table : tables.values()) {
+            sb.append(table).append(System.lineSeparator());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Changes of one table, keys in key order
+     */
+    public static class TableDiff {
+        private final DatabaseManager databaseManager;
+        private final String tableName;
+        private final String keyColumn;
+        private final int rowsBefore;
+        private final int rowsAfter;
+        private final List<Object> inserted;
+        private final List<Object> updated;
+        private final List<Object> deleted;
+
+        TableDiff(DatabaseManager databaseManager, String tableName, String keyColumn, int rowsBefore, int rowsAfter,
+                  List<Object> inserted, List<Object> updated, List<Object> deleted) {
+            this.databaseManager = databaseManager;
+            this.tableName = tableName;
+            this.keyColumn = keyColumn;
+            this.rowsBefore = rowsBefore;
+            this.rowsAfter = rowsAfter;
+            this.inserted = inserted;
+            this.updated = updated;
+            this.deleted = deleted;
+        }
+
+        // Getters
+        public String getTableName() { return tableName; }
+        public String getKeyColumn() { return keyColumn; }
+        public int getRowsBefore() { return rowsBefore; }
+        public int getRowsAfter() { return rowsAfter; }
+        public List<Object> getInserted() { return Collections.unmodifiableList(inserted); }
+        public List<Object> getUpdated() { return Collections.unmodifiableList(updated); }
+        public List<Object> getDeleted() { return Collections.unmodifiableList(deleted); }
+
+        public boolean isEmpty() { return inserted.isEmpty() && updated.isEmpty() && deleted.isEmpty(); }
+
+        /**
+         * Reads the current values of the inserted rows from the primary
+         * @return the rows still present
+         * @throws SQLException if a database access error occurs
+         */
+        public List<Row> readInsertedRows() throws SQLException {
+            return readRows(inserted);
+        }
+
+        /**
+         * Reads the current values of the updated rows from the primary
+         * @return the rows still present
+         * @throws SQLException if a database access error occurs
+         */
+        public List<Row> readUpdatedRows() throws SQLException {
+            return readRows(updated);
+        }
+
+        private List<Row> readRows(List<Object> keys) throws SQLException {
+            List<Row> rows = new ArrayList<>(keys.size());
+            for (int from = 0; from < keys.size(); from += READ_CHUNK_SIZE) {
+                List<Object> chunk = keys.subList(from, Math.min(from + READ_CHUNK_SIZE, keys.size()));
+                StringBuilder query = new StringBuilder("SELECT * FROM ").append(tableName)
+                    .append(" WHERE ").append(keyColumn).append(" IN (");
+                for (int i = 0; i < chunk.size(); i++) {
+                    query.append(i > 0 ? ", ?" : "?");
+                }
+                query.append(") ORDER BY ").append(keyColumn);
+                databaseManager.forEachRowOnPrimary(query.toString(), rows::add, chunk.toArray());
+            }
+            return rows;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d inserted, %d updated, %d deleted (%d rows before, %d after)",
+                tableName, inserted.size(), updated.size(), deleted.size(), rowsBefore, rowsAfter);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.cloud.omuni_cloud.dbutil;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Captures {@link DatabaseSnapshot}s of a fixed set of tables or key ranges, so the same set can
+ * be captured before and after an order flow and the two diffed. Each table is streamed on its
+ * own thread, and the rows are hashed by MySQL: only the key and a 60-bit hash of each row come
+ * over the connection and are kept, so a table of millions of rows costs a few tens of megabytes
+ * and one pass over its primary key.
+ *
+ * <p>Snapshots read the primary, so the after snapshot sees the flow's writes at once even when
+ * the configuration routes reads to replicas. Every table needs a unique key column.
+ */
+public class Snapshotter {
+    private static ExecutorService snapshotExecutor;
+
+    private final DatabaseManager databaseManager;
+    private final Map<String, TableSpec> tables = new LinkedHashMap<>();
+
+    /**
+     * Creates an empty snapshotter; use {@link DatabaseManager#snapshotter()}
+     */
+    Snapshotter(DatabaseManager databaseManager) {
+        this.databaseManager = databaseManager;
+    }
+
+    /**
+     * Adds a whole table
+     * @param tableName Table to capture, optionally qualified with its schema
+     * @param keyColumn Unique key the rows are matched by between snapshots
+     * @param columns Columns whose changes count; none for all columns
+     * @return this snapshotter
+     */
+    public Snapshotter add(String tableName, String keyColumn, String... columns) {
+        return addRange(tableName, keyColumn, null, null, columns);
+    }
+
+    /**
+     * Adds the rows of a table within a key range
+     * @param tableName Table to capture, optionally qualified with its schema
+     * @param keyColumn Unique key the rows are matched by between snapshots
+     * @param fromKey Lowest key included, or null for no lower bound
+     * @param toKey Key the range stops before, or null for no upper bound
+     * @param columns Columns whose changes count; none for all columns
+     * @return this snapshotter
+     */
+    public Snapshotter addRange(String tableName, String keyColumn, Object fromKey, Object toKey, String... columns) {
+        if (tables.containsKey(tableName)) {
+            throw new IllegalArgumentException("Snapshot already has table " + tableName);
+        }
+        tables.put(tableName, new TableSpec(tableName, keyColumn, fromKey, toKey, columns));
+        return this;
+    }
+
+    // Getters
+    public List<String> getTableNames() { return Collections.unmodifiableList(new ArrayList<>(tables.keySet())); }
+
+    /**
+     * Captures every table, in parallel
+     * @return the snapshot
+     * @throws SQLException if a table cannot be read; the other tables are still read to the end
+     */
+    public DatabaseSnapshot capture() throws SQLException {
+        long start = System.currentTimeMillis();
+        Map<String, Future<DatabaseSnapshot.TableSnapshot>> futures = new LinkedHashMap<>();
+        for (TableSpec spec : tables.values()) {
+            futures.put(spec.tableName, executor().submit(() -> captureTable(spec)));
+        }
+        Map<String, DatabaseSnapshot.TableSnapshot> captured = new LinkedHashMap<>();
+        SQLException failure = null;
+        for (Map.Entry<String, Future<DatabaseSnapshot.TableSnapshot>> entry : futures.entrySet()) {
+            try {
+                captured.put(entry.getKey(), entry.getValue().get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while capturing a snapshot", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                SQLException tableFailure = new SQLException("Error capturing snapshot of " + entry.getKey() +
+                                                             ": " + cause.getMessage(), cause);
+                if (failure == null) {
+                    failure = tableFailure;
+                } else {
+                    failure.addSuppressed(tableFailure);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return new DatabaseSnapshot(databaseManager, captured, start, System.currentTimeMillis() - start);
+    }
+
+    private DatabaseSnapshot.TableSnapshot captureTable(TableSpec spec) throws SQLException {
+        List<String> columns = spec.columns;
+        if (columns.isEmpty()) {
+            columns = databaseManager.query("SELECT * FROM " + spec.tableName + " LIMIT 0").getColumns().getLabels();
+        }
+        StringBuilder sql = new StringBuilder("SELECT ").append(spec.keyColumn)
+            // 15 hex digits of the MD5 fit a signed BIGINT; JSON_ARRAY keeps NULL apart from ''
+            .append(", CAST(CONV(LEFT(MD5(JSON_ARRAY(");
+        for (int i = 0; i < columns.size(); i++) {
+            sql.append(i > 0 ? ", " : "").append('`').append(columns.get(i).replace("`", "``")).append('`');
+        }
+        sql.append(")), 15), 16, 10) AS SIGNED) FROM ").append(spec.tableName);
+        List<Object> params = new ArrayList<>();
+        List<String> conditions = new ArrayList<>();
+        if (spec.fromKey != null) {
+            conditions.add(spec.keyColumn + " >= ?");
+            params.add(spec.fromKey);
+        }
+        if (spec.toKey != null) {
+            conditions.add(spec.keyColumn + " < ?");
+            params.add(spec.toKey);
+        }
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        sql.append(" ORDER BY ").append(spec.keyColumn);
+
+        DatabaseSnapshot.TableSnapshot table = new DatabaseSnapshot.TableSnapshot(spec.tableName, spec.keyColumn);
+        databaseManager.forEachRowOnPrimary(sql.toString(),
+            row -> table.add(row.get(0), ((Number) row.get(1)).longValue()), params.toArray());
+        table.seal();
+        return table;
+    }
+
+    static synchronized ExecutorService executor() {
+        if (snapshotExecutor == null) {
+            snapshotExecutor = Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "db-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return snapshotExecutor;
+    }
+
+    /**
+     * One table or key range of the snapshot
+     */
+    private static class TableSpec {
+        private final String tableName;
+        private final String keyColumn;
+        private final Object fromKey;
+        private final Object toKey;
+        private final List<String> columns = new ArrayList<>();
+
+        TableSpec(String tableName, String keyColumn, Object fromKey, Object toKey, String... columns) {
+            this.tableName = DatabaseCopier.identifier(tableName);
+            this.keyColumn = DatabaseCopier.identifier(keyColumn);
+            this.fromKey = fromKey;
+            this.toKey = toKey;
+            if (columns != null) {
+                for (String column : columns) {
+                    this.columns.add(DatabaseCopier.identifier(column));
+                }
+            }
+        }
+    }
+}
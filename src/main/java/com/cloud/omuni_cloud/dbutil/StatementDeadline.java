@@ -0,0 +1,127 @@
+package com.cloud.omuni_cloud.dbutil;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The point in time by which a caller needs a statement's answer. Once the statement has its
+ * connection, {@link #arm(Connection, Statement)} enforces the deadline three ways:
+ * <ul>
+ *   <li>the statement's query timeout, rounded up to whole seconds, lets the driver kill it;</li>
+ *   <li>Statement.cancel() is called exactly at the deadline, so the caller is not kept waiting
+ *       for the next whole second;</li>
+ *   <li>the connection's network timeout, a little past the deadline, breaks a read stalled in
+ *       the SSH tunnel, where a KILL QUERY cannot get through. The broken connection is then
+ *       evicted by the pool instead of staying borrowed.</li>
+ * </ul>
+ */
+class StatementDeadline {
+    static final StatementDeadline NONE = new StatementDeadline(0, Long.MAX_VALUE);
+
+    // Time for a cancelled statement to return before its socket read is given up on
+    private static final long NETWORK_GRACE_MILLIS = 2000;
+
+    private static ScheduledExecutorService timer;
+    private static ExecutorService cancellers;
+
+    private final long timeoutMillis;
+    private final long deadlineNanos;
+
+    private StatementDeadline(long timeoutMillis, long deadlineNanos) {
+        this.timeoutMillis = timeoutMillis;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * Creates a deadline the given time from now
+     * @param timeout Time the statement may take, counted from now; time spent waiting for a pooled
+     *                connection uses it up, but that wait is bounded by the pool, not by the deadline
+     * @param unit Unit of the timeout
+     * @return the deadline, or {@link #NONE} for a timeout of zero or less
+     */
+    static StatementDeadline after(long timeout, TimeUnit unit) {
+        if (timeout <= 0) {
+            return NONE;
+        }
+        return new StatementDeadline(unit.toMillis(timeout), System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    long getTimeoutMillis() { return timeoutMillis; }
+
+    boolean isExpired() {
+        return this != NONE && System.nanoTime() - deadlineNanos >= 0;
+    }
+
+    long remainingNanos() {
+        return this == NONE ? Long.MAX_VALUE : Math.max(0, deadlineNanos - System.nanoTime());
+    }
+
+    /**
+     * Applies the deadline to a statement about to be executed
+     * @param connection The statement's connection
+     * @param statement The statement
+     * @return handle to close once the statement is done, which stops the pending cancel
+     * @throws SQLTimeoutException if the deadline passed while the connection was acquired
+     * @throws SQLException if the timeouts cannot be set
+     */
+    Armed arm(Connection connection, Statement statement) throws SQLException {
+        if (this == NONE) {
+            return Armed.NOTHING;
+        }
+        long remaining = remainingNanos();
+        if (remaining == 0) {
+            throw new SQLTimeoutException("Deadline of " + timeoutMillis + " ms passed before the statement started");
+        }
+        long remainingMillis = TimeUnit.NANOSECONDS.toMillis(remaining);
+        statement.setQueryTimeout((int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(remainingMillis + 999)));
+        connection.setNetworkTimeout(cancellers(), (int) Math.min(Integer.MAX_VALUE, remainingMillis + NETWORK_GRACE_MILLIS));
+        // The cancel sends KILL QUERY over a new connection, which may itself hang on a stalled
+        // tunnel, so it runs on its own thread rather than the timer's
+        ScheduledFuture<?> cancel = timer().schedule(() -> cancellers().execute(() -> {
+            try {
+                statement.cancel();
+            } catch (SQLException e) {
+                // The network timeout still frees the caller
+                System.err.println("Could not cancel statement after " + timeoutMillis + " ms: " + e.getMessage());
+            }
+        }), remaining, TimeUnit.NANOSECONDS);
+        return () -> cancel.cancel(false);
+    }
+
+    private static synchronized ScheduledExecutorService timer() {
+        if (timer == null) {
+            timer = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "db-deadline"));
+        }
+        return timer;
+    }
+
+    private static synchronized ExecutorService cancellers() {
+        if (cancellers == null) {
+            cancellers = Executors.newCachedThreadPool(r -> daemon(r, "db-cancel"));
+        }
+        return cancellers;
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread thread = new Thread(r, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Pending enforcement of a deadline on one statement
+     */
+    interface Armed extends AutoCloseable {
+        Armed NOTHING = () -> { };
+
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,170 @@
+package com.cloud.omuni_cloud.dbutil;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Statements run on the one connection pinned for a transaction. Nothing is committed until
+ * the work passed to {@link DatabaseManager#inTransaction(TransactionWork)} returns, so fixture
+ * setup of many statements pays one pool borrow and one commit instead of one per statement.
+ * A transaction is only valid inside its work and must not be handed to other threads.
+ */
+public class Transaction {
+    private final String configName;
+    private final Connection connection;
+    private final long statementTimeoutMillis;
+    private final int attempt;
+    private final long started = System.nanoTime();
+    private final List<String> writes = new ArrayList<>();
+    private int statementCount;
+    private boolean finished;
+
+    Transaction(String configName, Connection connection, long statementTimeoutMillis, int attempt) {
+        this.configName = configName;
+        this.connection = connection;
+        this.statementTimeoutMillis = statementTimeoutMillis;
+        this.attempt = attempt;
+    }
+
+    // Getters
+    public String getConfigName() { return configName; }
+    public int getStatementCount() { return statementCount; }
+
+    /**
+     * Gets the number of this attempt, 1 unless the transaction was retried after a deadlock
+     */
+    public int getAttempt() { return attempt; }
+
+    public long getElapsedMillis() { return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started); }
+
+    /**
+     * Executes a SELECT query inside the transaction; it sees the transaction's own uncommitted writes
+     * @param query The SQL query to execute
+     * @param params Optional query parameters
+     * @return The result table
+     * @throws SQLException if a database access error occurs
+     */
+    public ResultTable query(String query, Object... params) throws SQLException {
+        QueryDescriptor descriptor = prepare(query);
+        descriptor.checkParameters(params);
+        StatementDeadline deadline = StatementDeadline.after(statementTimeoutMillis, TimeUnit.MILLISECONDS);
+        SlowQueryLog.Timing timing = SlowQueryLog.start(configName, descriptor.getFingerprint());
+        try (PreparedStatement stmt = timing.acquired(connection).prepareStatement(query);
+             StatementDeadline.Armed armed = deadline.arm(connection, stmt)) {
+            DatabaseManager.setParameters(stmt, params);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return ResultTable.read(rs, descriptor.columnsOf(rs));
+            }
+        } catch (SQLException e) {
+            timing.failed();
+            throw DatabaseManager.failure("Error executing query: ", deadline, e);
+        } finally {
+            timing.stop();
+        }
+    }
+
+    /**
+     * Executes a SELECT query inside the transaction and returns the results as a list of maps
+     * @param query The SQL query to execute
+     * @param params Optional query parameters
+     * @return List of maps representing the result set rows
+     * @throws SQLException if a database access error occurs
+     */
+    public List<Map<String, Object>> executeQuery(String query, Object... params) throws SQLException {
+        return query(query, params).asMaps();
+    }
+
+    /**
+     * Gets a single value inside the transaction
+     * @param query The SQL query to execute
+     * @param params Optional query parameters
+     * @return The value of the first column of the first row, or null if no results
+     * @throws SQLException if a database access error occurs
+     */
+    public Object getSingleValue(String query, Object... params) throws SQLException {
+        ResultTable results = query(query, params);
+        if (results.isEmpty() || results.getColumns().size() == 0) {
+            return null;
+        }
+        return results.getObject(0, 0);
+    }
+
+    /**
+     * Executes an INSERT, UPDATE, or DELETE statement inside the transaction
+     * @param query The SQL statement to execute
+     * @param params Optional statement parameters
+     * @return The number of rows affected
+     * @throws SQLException if a database access error occurs
+     */
+    public int executeUpdate(String query, Object... params) throws SQLException {
+        QueryDescriptor descriptor = prepare(query);
+        descriptor.checkParameters(params);
+        StatementDeadline deadline = StatementDeadline.after(statementTimeoutMillis, TimeUnit.MILLISECONDS);
+        SlowQueryLog.Timing timing = SlowQueryLog.start(configName, descriptor.getFingerprint());
+        try (PreparedStatement stmt = timing.acquired(connection).prepareStatement(query);
+             StatementDeadline.Armed armed = deadline.arm(connection, stmt)) {
+            DatabaseManager.setParameters(stmt, params);
+            writes.add(query);
+            return stmt.executeUpdate();
+        } catch (SQLException e) {
+            timing.failed();
+            throw DatabaseManager.failure("Error executing update: ", deadline, e);
+        } finally {
+            timing.stop();
+        }
+    }
+
+    /**
+     * Executes one INSERT, UPDATE or DELETE statement for many parameter sets in a single JDBC
+     * batch. Unlike {@link DatabaseManager#executeBatch(String, Iterable, int)} nothing is
+     * committed in between; the rows commit or roll back with the rest of the transaction.
+     * @param query The SQL statement to execute
+     * @param params One parameter array per statement
+     * @return The number of rows affected, as far as the driver reports it
+     * @throws SQLException if a database access error occurs
+     */
+    public long executeBatch(String query, Iterable<Object[]> params) throws SQLException {
+        QueryDescriptor descriptor = prepare(query);
+        StatementDeadline deadline = StatementDeadline.after(statementTimeoutMillis, TimeUnit.MILLISECONDS);
+        SlowQueryLog.Timing timing = SlowQueryLog.start(configName, descriptor.getFingerprint());
+        try (PreparedStatement stmt = timing.acquired(connection).prepareStatement(query)) {
+            for (Object[] row : params) {
+                descriptor.checkParameters(row);
+                DatabaseManager.setParameters(stmt, row);
+                stmt.addBatch();
+            }
+            writes.add(query);
+            try (StatementDeadline.Armed armed = deadline.arm(connection, stmt)) {
+                return DatabaseManager.sumUpdateCounts(stmt.executeBatch());
+            }
+        } catch (SQLException e) {
+            timing.failed();
+            throw DatabaseManager.failure("Error executing batch: ", deadline, e);
+        } finally {
+            timing.stop();
+        }
+    }
+
+    private QueryDescriptor prepare(String query) throws SQLException {
+        if (finished) {
+            throw new SQLException("Transaction has already ended; statements must run inside its work");
+        }
+        statementCount++;
+        return QueryDescriptor.forQuery(configName, query);
+    }
+
+    /**
+     * Marks the transaction as ended, so a leaked reference cannot use the returned connection
+     * @return the write statements run, for cache invalidation after a commit
+     */
+    List<String> finish() {
+        finished = true;
+        return writes;
+    }
+}
@@ -0,0 +1,19 @@
+package com.cloud.omuni_cloud.dbutil;
+
+import java.sql.SQLException;
+
+/**
+ * The statements of one transaction, run by {@link DatabaseManager#inTransaction(TransactionWork)}
+ * @param <T> Type of the value the work returns
+ */
+@FunctionalInterface
+public interface TransactionWork<T> {
+    /**
+     * Runs the statements; may be called again from the start when the transaction is retried,
+     * so it must not depend on side effects of an earlier, rolled back attempt
+     * @param tx The transaction to run statements in
+     * @return the value passed back to the caller after the commit
+     * @throws SQLException to roll the transaction back
+     */
+    T run(Transaction tx) throws SQLException;
+}
@@ -0,0 +1,188 @@
+package com.cloud.omuni_cloud.dbutil;
+
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches an order table for new rows by remembering the highest id seen (the watermark) and
+ * fetching only rows above it on every poll. Callers wait for an order with {@link #await(String)},
+ * and the wait completes when the order's row shows up, so one query per interval serves every
+ * in-flight order instead of one point lookup per order.
+ *
+ * <p>AUTO_INCREMENT ids can commit out of order, so each poll re-reads a small overlap below the
+ * watermark; matching is idempotent, so rows read twice do no harm.
+ */
+public class WatermarkPoller implements OrderWatcher, AutoCloseable {
+    private final DatabaseManager databaseManager;
+    private final String tableName;
+    private final String orderColumn;
+    private int pageSize = 1000;
+    private int overlap = 100;
+    private Long startWatermark;
+
+    private final OrderWaits waits = new OrderWaits(100_000);
+    private volatile long watermark = -1;
+    private volatile long lastPollRows;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Creates a poller for an order table
+     * @param databaseManager Manager for the database holding the table
+     * @param tableName Table to watch, optionally schema-qualified; must have an AUTO_INCREMENT id and a status column
+     * @param orderColumn Column holding the order reference
+     */
+    public WatermarkPoller(DatabaseManager databaseManager, String tableName, String orderColumn) {
+        this.databaseManager = databaseManager;
+        this.tableName = DatabaseCopier.identifier(tableName);
+        this.orderColumn = DatabaseCopier.identifier(orderColumn);
+    }
+
+    /**
+     * Creates a poller for booking calls in nickfury.store_orders
+     */
+    public static WatermarkPoller forStoreOrders(DatabaseManager databaseManager) {
+        return new WatermarkPoller(databaseManager, "nickfury.store_orders", "orderId");
+    }
+
+    /**
+     * Creates a poller for sale calls in nickfury.sale_orders
+     */
+    public static WatermarkPoller forSaleOrders(DatabaseManager databaseManager) {
+        return new WatermarkPoller(databaseManager, "nickfury.sale_orders", "orderNo");
+    }
+
+    // Builder-style setters for fluent configuration
+    public WatermarkPoller withPageSize(int pageSize) {
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    public WatermarkPoller withOverlap(int overlap) {
+        this.overlap = overlap;
+        return this;
+    }
+
+    /**
+     * Sets how many recently seen orders are remembered for waits registered after their row appeared
+     */
+    public WatermarkPoller withRecentCapacity(int recentCapacity) {
+        waits.setRecentCapacity(recentCapacity);
+        return this;
+    }
+
+    /**
+     * Starts from the given id instead of the table's current maximum
+     */
+    public WatermarkPoller withStartWatermark(long startWatermark) {
+        this.startWatermark = startWatermark;
+        return this;
+    }
+
+    // Getters
+    public long getWatermark() { return watermark; }
+    public long getLastPollRows() { return lastPollRows; }
+
+    public int getPendingCount() { return waits.getPendingCount(); }
+
+    /**
+     * Sets the initial watermark and starts polling in the background
+     * @param interval Delay between polls
+     * @param unit Unit of the delay
+     * @return this poller
+     * @throws SQLException if the initial watermark cannot be read
+     */
+    public synchronized WatermarkPoller start(long interval, TimeUnit unit) throws SQLException {
+        if (scheduler != null) {
+            throw new IllegalStateException("Poller for " + tableName + " already started");
+        }
+        initialize();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "watermark-poller-" + tableName);
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                poll();
+            } catch (Exception e) {
+                // Keep polling; a transient failure must not cancel the schedule
+                System.err.println("Watermark poll of " + tableName + " failed: " + e.getMessage());
+            }
+        }, interval, interval, unit);
+        return this;
+    }
+
+    /**
+     * Sets the initial watermark if not set yet, to the configured start or the table's current maximum id
+     * @throws SQLException if the maximum id cannot be read
+     */
+    public void initialize() throws SQLException {
+        if (watermark >= 0) {
+            return;
+        }
+        if (startWatermark != null) {
+            watermark = startWatermark;
+        } else {
+            Object maxId = databaseManager.getSingleValue("SELECT MAX(id) FROM " + tableName);
+            watermark = maxId == null ? 0 : ((Number) maxId).longValue();
+        }
+        System.out.println("Watching " + tableName + " for new rows after id " + watermark);
+    }
+
+    @Override
+    public CompletableFuture<OrderVerification> await(String orderId) {
+        return waits.await(orderId);
+    }
+
+    @Override
+    public void cancel(String orderId) {
+        waits.cancel(orderId);
+    }
+
+    /**
+     * Fetches the rows added since the last poll and completes the waits they match
+     * @return number of rows read
+     * @throws SQLException if the query fails
+     */
+    public long poll() throws SQLException {
+        initialize();
+        String query = "SELECT id, " + orderColumn + ", status FROM " + tableName +
+                       " WHERE id > ? ORDER BY id LIMIT " + pageSize;
+        long rowsRead = 0;
+        long from = Math.max(0, watermark - overlap);
+        while (true) {
+            ResultTable rows = databaseManager.query(query, from);
+            for (int row = 0; row < rows.size(); row++) {
+                long id = rows.getLong(row, 0);
+                String orderId = rows.getString(row, 1);
+                if (orderId != null) {
+                    waits.matched(OrderVerification.found(orderId, id, rows.getString(row, 2)));
+                }
+                from = id;
+            }
+            rowsRead += rows.size();
+            if (from > watermark) {
+                watermark = from;
+            }
+            if (rows.size() < pageSize) {
+                break;
+            }
+        }
+        lastPollRows = rowsRead;
+        return rowsRead;
+    }
+
+    /**
+     * Stops polling; waits still pending complete exceptionally
+     */
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        waits.failAll("Watermark poller for " + tableName + " closed");
+    }
+}
@@ -1,9 +1,23 @@
 package com.cloud.omuni_cloud.dbutil.config;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Configuration class for a single database connection
  */
 public class DbConnectionConfig {
+    /**
+     * How reads are spread over the read replicas
+     */
+    public enum ReadRouting {
+        /** Each read goes to the next healthy replica in turn */
+        ROUND_ROBIN,
+        /** Each read goes to the healthy replica with the fewest busy and waiting connections */
+        LEAST_LOADED
+    }
+
     private final String host;
     private final String port;
     private final String database;
@@ -15,6 +29,9 @@ public class DbConnectionConfig {
     private String sshUsername;
     private String sshPassword;
     private int sshLocalPort;
+    private final List<DbConnectionConfig> replicas = new ArrayList<>();
+    private ReadRouting readRouting = ReadRouting.ROUND_ROBIN;
+    private long maxReplicaLagSeconds = 5;
 
     public DbConnectionConfig(String host, String port, String database, String username, String password) {
         this.host = host;
@@ -37,6 +54,10 @@ public class DbConnectionConfig {
     public String getSshUsername() { return sshUsername; }
     public String getSshPassword() { return sshPassword; }
     public int getSshLocalPort() { return sshLocalPort; }
+    public List<DbConnectionConfig> getReplicas() { return Collections.unmodifiableList(replicas); }
+    public boolean hasReplicas() { return !replicas.isEmpty(); }
+    public ReadRouting getReadRouting() { return readRouting; }
+    public long getMaxReplicaLagSeconds() { return maxReplicaLagSeconds; }
 
     // Builder-style setters for fluent configuration
     public DbConnectionConfig withSsh(String sshHost, int sshPort, String sshUsername, String sshPassword, int sshLocalPort) {
@@ -49,6 +70,29 @@ public class DbConnectionConfig {
         return this;
     }
 
+    /**
+     * Adds a read replica; reads through DatabaseManager are routed to replicas while writes stay here.
+     * A replica behind SSH needs its own local tunnel port.
+     * @param replica Connection configuration of the replica
+     */
+    public DbConnectionConfig withReplica(DbConnectionConfig replica) {
+        this.replicas.add(replica);
+        return this;
+    }
+
+    public DbConnectionConfig withReadRouting(ReadRouting readRouting) {
+        this.readRouting = readRouting;
+        return this;
+    }
+
+    /**
+     * Sets how far a replica may fall behind before it is taken out of rotation
+     */
+    public DbConnectionConfig withMaxReplicaLagSeconds(long maxReplicaLagSeconds) {
+        this.maxReplicaLagSeconds = maxReplicaLagSeconds;
+        return this;
+    }
+
     @Override
     public String toString() {
         return "DbConnectionConfig{" +
@@ -62,6 +106,7 @@ public class DbConnectionConfig {
                     ", sshPort=" + sshPort +
                     ", sshUsername='" + sshUsername + '\''
                     : "") +
+                (replicas.isEmpty() ? "" : ", replicas=" + replicas.size() + ", readRouting=" + readRouting) +
                 '}';
     }
 }
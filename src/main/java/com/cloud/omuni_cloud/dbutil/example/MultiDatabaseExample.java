@@ -1,10 +1,13 @@
 package com.cloud.omuni_cloud.dbutil.example;
 
+import com.cloud.omuni_cloud.dbutil.DatabaseCopier;
 import com.cloud.omuni_cloud.dbutil.DatabaseManager;
 import com.cloud.omuni_cloud.dbutil.config.DatabaseConfig;
 import com.cloud.omuni_cloud.dbutil.config.DbConnectionConfig;
 
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -33,6 +36,14 @@ public class MultiDatabaseExample {
             System.err.println("Error during data transfer: " + e.getMessage());
             e.printStackTrace();
         }
+
+        // Example 4: Streaming copy of a whole table
+        try {
+            copyTableBetweenDatabases();
+        } catch (Exception e) {
+            System.err.println("Error during table copy: " + e.getMessage());
+            e.printStackTrace();
+        }
     }
 
     /**
@@ -132,7 +143,7 @@ public class MultiDatabaseExample {
         try (DatabaseManager sourceDb = new DatabaseManager(PRIMARY_DB);
              DatabaseManager targetDb = new DatabaseManager(SECONDARY_DB)) {
             
-            // Start transaction (simplified - in a real app, you'd use proper transaction management)
+            // The two databases cannot share a transaction, so only the target's writes commit together
             System.out.println("Starting data transfer...");
             
             // Example: Get data from source
@@ -146,18 +157,14 @@ public class MultiDatabaseExample {
             
             System.out.println("Found " + inactiveUsers.size() + " inactive users to archive.");
             
-            // Example: Insert into target
+            // Example: Insert every archived user into target with one commit
             String insertQuery = "INSERT INTO archived_users (user_id, username, email, archived_date) VALUES (?, ?, ?, NOW())";
-            int count = 0;
-            
+            List<Object[]> rows = new ArrayList<>(inactiveUsers.size());
             for (Map<String, Object> user : inactiveUsers) {
-                targetDb.executeUpdate(insertQuery,
-                    user.get("id"),
-                    user.get("name"),
-                    user.get("email")
-                );
-                count++;
+                rows.add(new Object[]{user.get("id"), user.get("name"), user.get("email")});
             }
+            long count = targetDb.inTransaction(Connection.TRANSACTION_READ_COMMITTED,
+                tx -> tx.executeBatch(insertQuery, rows));
             
             System.out.println("Successfully archived " + count + " users.");
             
@@ -166,4 +173,20 @@ public class MultiDatabaseExample {
             throw e;
         }
     }
-}
+
+    /**
+     * Example: Copy a whole table without loading it into memory, resuming where a previous run stopped
+     */
+    private static void copyTableBetweenDatabases() throws Exception {
+        System.out.println("\n=== Copying a Table Between Databases ===");
+        
+        DatabaseCopier.CopyResult result = new DatabaseCopier(PRIMARY_DB, SECONDARY_DB)
+            .withBatchSize(1000)
+            .withUpsert(true)
+            .withResume(true)
+            .copyTable("users", "users_copy", "id", "id", "name", "email", "status");
+        
+        System.out.println("Copied " + result.getRowsWritten() + " users at " +
+            Math.round(result.getRowsPerSecond()) + " rows/s (bottleneck: " + result.getBottleneck() + ")");
+    }
+}
\ No newline at end of file
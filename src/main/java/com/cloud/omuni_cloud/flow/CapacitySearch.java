@@ -0,0 +1,325 @@
+package com.cloud.omuni_cloud.flow;
+
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds the highest order arrival rate at which the lifecycle SLO still holds. Each probe runs
+ * orders at a constant rate for a fixed window against the same environment, measures the SLO
+ * latency and error rate, and the rate is binary-searched between the last passing and the first
+ * failing probe until the gap is below the configured resolution.
+ *
+ * <p>Errors are orders that failed or timed out before the SLO's end stage, plus arrivals dropped
+ * at the in-flight cap, since an arrival that could not even be started was not served.
+ *
+ * <p>Run standalone with system properties:
+ * <ul>
+ *   <li>{@code capacity.slo} - SLO to hold (default "CREATED->ASSIGNED p95<60s error<0.5%")</li>
+ *   <li>{@code capacity.minRate}, {@code capacity.maxRate} - search bounds in orders/s (default 0.05 and 5)</li>
+ *   <li>{@code capacity.resolution} - stop once the bracket is narrower than this (default 0.05 orders/s)</li>
+ *   <li>{@code capacity.probeMinutes} - length of each probe window (default 10)</li>
+ *   <li>{@code capacity.maxProbes} - upper bound on probes (default 10)</li>
+ *   <li>{@code capacity.cooldownSeconds} - pause between probes (default 60)</li>
+ *   <li>{@code capacity.maxInFlight} - cap on concurrently running orders (default 500)</li>
+ *   <li>{@code flow.fcId}, {@code flow.ean}, {@code flow.db} - FC, EAN and database config name</li>
+ *   <li>{@code flow.dbTimeoutSeconds} - deadline of each verification query (default 30)</li>
+ * </ul>
+ * The authorization token is read from the AUTH_TOKEN environment variable.
+ */
+public class CapacitySearch {
+    private final OrderLifecycle lifecycle;
+    private final FlowSlo slo;
+    private final long probeWindowMillis;
+    private double minRate = 0.05;
+    private double maxRate = 5.0;
+    private double resolution = 0.05;
+    private int maxProbes = 10;
+    private long cooldownMillis = TimeUnit.SECONDS.toMillis(60);
+    private int maxInFlight = 500;
+
+    private volatile RollingStats.LongList currentLatencies;
+
+    public CapacitySearch(OrderLifecycle lifecycle, FlowSlo slo, long probeWindow, TimeUnit unit) {
+        this.lifecycle = lifecycle;
+        this.slo = slo;
+        this.probeWindowMillis = unit.toMillis(probeWindow);
+        lifecycle.withListener(new OrderStageListener() {
+            @Override
+            public void onStageCompleted(OrderProgress progress, OrderStage stage, long durationMillis) {
+                RollingStats.LongList latencies = currentLatencies;
+                if (stage == slo.getToStage() && latencies != null) {
+                    long latency = slo.latencyOf(progress);
+                    if (latency >= 0) {
+                        synchronized (latencies) {
+                            latencies.add(latency);
+                        }
+                    }
+                }
+            }
+
+            @Override
+            public void onStageFailed(OrderProgress progress, OrderStage stage, long durationMillis, Exception error) {
+                // Failures are counted by the driver
+            }
+        });
+    }
+
+    // Builder-style setters for fluent configuration
+    public CapacitySearch withRateBounds(double minRate, double maxRate) {
+        if (minRate <= 0 || maxRate <= minRate) {
+            throw new IllegalArgumentException("Rate bounds must satisfy 0 < min < max");
+        }
+        this.minRate = minRate;
+        this.maxRate = maxRate;
+        return this;
+    }
+
+    public CapacitySearch withResolution(double resolution) {
+        this.resolution = resolution;
+        return this;
+    }
+
+    public CapacitySearch withMaxProbes(int maxProbes) {
+        this.maxProbes = maxProbes;
+        return this;
+    }
+
+    public CapacitySearch withCooldown(long cooldown, TimeUnit unit) {
+        this.cooldownMillis = unit.toMillis(cooldown);
+        return this;
+    }
+
+    public CapacitySearch withMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    public static void main(String[] args) throws Exception {
+        FlowSlo slo = FlowSlo.parse(System.getProperty("capacity.slo", "CREATED->ASSIGNED p95<60s error<0.5%"));
+        double minRate = Double.parseDouble(System.getProperty("capacity.minRate", "0.05"));
+        double maxRate = Double.parseDouble(System.getProperty("capacity.maxRate", "5"));
+        double resolution = Double.parseDouble(System.getProperty("capacity.resolution", "0.05"));
+        long probeMinutes = Long.getLong("capacity.probeMinutes", 10L);
+        Path reportFile = Paths.get(CapacitySearch.class.getSimpleName() + "_" +
+            ZonedDateTime.now(ZoneId.of("Asia/Kolkata")).format(DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss")));
+
+        try (FlowEnvironment environment = FlowEnvironment.open()) {
+            OrderLifecycle lifecycle = environment.getLifecycle();
+            CapacitySearch search = new CapacitySearch(lifecycle, slo, probeMinutes, TimeUnit.MINUTES)
+                .withRateBounds(minRate, maxRate)
+                .withResolution(resolution)
+                .withMaxProbes(Integer.getInteger("capacity.maxProbes", 10))
+                .withCooldown(Long.getLong("capacity.cooldownSeconds", 60L), TimeUnit.SECONDS)
+                .withMaxInFlight(Integer.getInteger("capacity.maxInFlight", 500));
+
+            Report report = search.run();
+            String text = report.format() + environment.formatDatabaseReport();
+            System.out.println(text);
+            Files.write(reportFile, text.getBytes(StandardCharsets.UTF_8));
+            System.out.println("Capacity report written to " + reportFile);
+        } catch (IOException e) {
+            System.out.println("[FATAL] Could not write capacity report: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Runs the search
+     * @return the report with the knee point and every probe as evidence
+     * @throws InterruptedException if interrupted while probing
+     */
+    public Report run() throws InterruptedException {
+        List<ProbeResult> probes = new ArrayList<>();
+        System.out.println("Capacity search for SLO " + slo + " between " + minRate + " and " + maxRate + " orders/s");
+
+        ProbeResult low = runProbe(minRate, probes);
+        if (!low.isPassed()) {
+            return new Report(slo, probes, null, low);
+        }
+        ProbeResult high = runProbe(maxRate, probes);
+        if (high.isPassed()) {
+            return new Report(slo, probes, high, null);
+        }
+
+        ProbeResult lastPass = low;
+        ProbeResult firstFail = high;
+        while (firstFail.getRate() - lastPass.getRate() > resolution && probes.size() < maxProbes) {
+            double rate = (lastPass.getRate() + firstFail.getRate()) / 2;
+            ProbeResult result = runProbe(rate, probes);
+            if (result.isPassed()) {
+                lastPass = result;
+            } else {
+                firstFail = result;
+            }
+        }
+        return new Report(slo, probes, lastPass, firstFail);
+    }
+
+    private ProbeResult runProbe(double rate, List<ProbeResult> probes) throws InterruptedException {
+        if (!probes.isEmpty() && cooldownMillis > 0) {
+            // Let queues and pools settle so each probe starts from the same state
+            Thread.sleep(cooldownMillis);
+        }
+        ProbeResult result = probe(rate);
+        probes.add(result);
+        System.out.println("[PROBE " + probes.size() + "] " + result);
+        return result;
+    }
+
+    /**
+     * Runs orders at a constant rate for one probe window, up to the SLO's end stage
+     * @param rate Arrival rate in orders per second
+     * @return the probe's measurements
+     * @throws InterruptedException if interrupted while probing
+     */
+    ProbeResult probe(double rate) throws InterruptedException {
+        int expectedOrders = (int) Math.ceil(rate * probeWindowMillis / 1000.0);
+        int required = Math.max(1, expectedOrders) * lifecycle.getQuantity();
+        try {
+            lifecycle.getInventory().ensureAvailable(lifecycle.getFcId(), lifecycle.getEan(),
+                required, Math.max(1500, required * 2));
+        } catch (Exception e) {
+            // A probe starved of stock would measure the inventory, not the system
+            throw new IllegalStateException("Inventory preconditioning failed: " + e.getMessage(), e);
+        }
+
+        RollingStats.LongList latencies = new RollingStats.LongList();
+        currentLatencies = latencies;
+        LoadProfileDriver driver = new LoadProfileDriver(lifecycle,
+            LoadProfile.constant(rate, probeWindowMillis, TimeUnit.MILLISECONDS), maxInFlight)
+            .withLastStage(slo.getToStage());
+        try {
+            driver.run();
+        } finally {
+            currentLatencies = null;
+        }
+
+        long[] sorted;
+        synchronized (latencies) {
+            sorted = latencies.toSortedArray();
+        }
+        // Orders cut off by the drain timeout were neither delivered nor counted as failed, yet
+        // they are the ones that hung near the knee
+        return new ProbeResult(slo, rate, probeWindowMillis, driver.getStarted(), driver.getDropped(),
+            driver.getStarted() - driver.getDelivered(), sorted);
+    }
+
+    /**
+     * Measurements of one probe window
+     */
+    public static class ProbeResult {
+        private final double rate;
+        private final long windowMillis;
+        private final long started;
+        private final long dropped;
+        private final long failed;
+        private final int samples;
+        private final long latencyPercentileMillis;
+        private final double errorRate;
+        private final boolean passed;
+
+        ProbeResult(FlowSlo slo, double rate, long windowMillis, long started, long dropped, long failed,
+                    long[] sortedLatencies) {
+            this.rate = rate;
+            this.windowMillis = windowMillis;
+            this.started = started;
+            this.dropped = dropped;
+            this.failed = failed;
+            this.samples = sortedLatencies.length;
+            this.latencyPercentileMillis = RollingStats.percentile(sortedLatencies, slo.getPercentile());
+            long arrivals = started + dropped;
+            this.errorRate = arrivals == 0 ? 0.0 : (double) (failed + dropped) / arrivals;
+            this.passed = samples > 0 && slo.isMet(latencyPercentileMillis, errorRate);
+        }
+
+        // Getters
+        public double getRate() { return rate; }
+        public long getStarted() { return started; }
+        public long getDropped() { return dropped; }
+        public long getFailed() { return failed; }
+        public int getSamples() { return samples; }
+        public long getLatencyPercentileMillis() { return latencyPercentileMillis; }
+        public double getErrorRate() { return errorRate; }
+        public boolean isPassed() { return passed; }
+
+        /**
+         * Gets the rate at which orders were actually started during the window
+         * @return started orders per second
+         */
+        public double getAchievedRate() {
+            return windowMillis == 0 ? 0.0 : started * 1000.0 / windowMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                "rate=%.3f/s achieved=%.3f/s started=%d dropped=%d failed=%d samples=%d latency=%dms error=%.2f%% %s",
+                rate, getAchievedRate(), started, dropped, failed, samples, latencyPercentileMillis,
+                errorRate * 100, passed ? "PASS" : "FAIL");
+        }
+    }
+
+    /**
+     * Outcome of a capacity search
+     */
+    public static class Report {
+        private final FlowSlo slo;
+        private final List<ProbeResult> probes;
+        private final ProbeResult knee;
+        private final ProbeResult firstFailure;
+
+        Report(FlowSlo slo, List<ProbeResult> probes, ProbeResult knee, ProbeResult firstFailure) {
+            this.slo = slo;
+            this.probes = Collections.unmodifiableList(new ArrayList<>(probes));
+            this.knee = knee;
+            this.firstFailure = firstFailure;
+        }
+
+        // Getters
+        public List<ProbeResult> getProbes() { return probes; }
+        public ProbeResult getKnee() { return knee; }
+        public ProbeResult getFirstFailure() { return firstFailure; }
+
+        /**
+         * Gets the highest rate found to hold the SLO
+         * @return orders per second, or 0 if the SLO failed even at the minimum rate
+         */
+        public double getSustainableRate() {
+            return knee == null ? 0.0 : knee.getRate();
+        }
+
+        public String format() {
+            StringBuilder sb = new StringBuilder();
+            sb.append("Capacity search for SLO ").append(slo).append('\n');
+            if (knee == null) {
+                sb.append("SLO not met even at the minimum rate of ")
+                  .append(String.format(Locale.ROOT, "%.3f", firstFailure.getRate())).append(" orders/s\n");
+            } else if (firstFailure == null) {
+                sb.append(String.format(Locale.ROOT,
+                    "SLO held at the maximum rate searched: capacity is at least %.3f orders/s%n", knee.getRate()));
+            } else {
+                sb.append(String.format(Locale.ROOT,
+                    "Knee point: %.3f orders/s holds the SLO, %.3f orders/s breaks it%n",
+                    knee.getRate(), firstFailure.getRate()));
+                sb.append("  last pass:  ").append(knee).append('\n');
+                sb.append("  first fail: ").append(firstFailure).append('\n');
+            }
+            sb.append("Probes in order:\n");
+            for (int i = 0; i < probes.size(); i++) {
+                sb.append(String.format("  %2d. ", i + 1)).append(probes.get(i)).append('\n');
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.cloud.omuni_cloud.flow;
+
+import com.cloud.omuni_cloud.InventoryApi;
+import com.cloud.omuni_cloud.InventoryPreconditioner;
+import com.cloud.omuni_cloud.dbutil.DatabaseConnection;
+import com.cloud.omuni_cloud.dbutil.DatabaseManager;
+import com.cloud.omuni_cloud.dbutil.PoolMetrics;
+import com.cloud.omuni_cloud.dbutil.SlowQueryLog;
+import com.cloud.omuni_cloud.dbutil.WatermarkPoller;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What every flow runner's main method sets up: the authorization token, the database manager
+ * and a lifecycle verifying bookings and sales through shared watermark pollers. Closing it stops
+ * the pollers and closes every connection pool.
+ *
+ * <p>Configured through system properties:
+ * <ul>
+ *   <li>{@code flow.fcId}, {@code flow.ean}, {@code flow.db} - FC, EAN and database config name</li>
+ *   <li>{@code flow.dbTimeoutSeconds} - deadline of each verification query (default 30)</li>
+ *   <li>{@code inventory.baseUrl} - inventory service the runners top up stock through</li>
+ * </ul>
+ * The authorization token is read from the AUTH_TOKEN environment variable.
+ */
+class FlowEnvironment implements AutoCloseable {
+    private static final long POLL_INTERVAL_SECONDS = 2;
+
+    private final DatabaseManager databaseManager;
+    private final WatermarkPoller bookings;
+    private final WatermarkPoller sales;
+    private final OrderLifecycle lifecycle;
+
+    private FlowEnvironment(String authToken, DatabaseManager databaseManager,
+                            WatermarkPoller bookings, WatermarkPoller sales) {
+        this.databaseManager = databaseManager;
+        this.bookings = bookings;
+        this.sales = sales;
+        this.lifecycle = new OrderLifecycle(authToken, System.getProperty("flow.fcId", "Bata_3051"),
+            System.getProperty("flow.ean", "9287018100"), databaseManager)
+            .withOrderWatchers(bookings, sales)
+            .withInventory(new InventoryPreconditioner(
+                System.getProperty("inventory.baseUrl", InventoryApi.DEFAULT_BASE_URL), authToken));
+    }
+
+    /**
+     * Reads the token and properties, connects and starts the pollers
+     * @return the environment, to be closed when the runner finishes
+     * @throws IllegalStateException if AUTH_TOKEN is not set
+     * @throws SQLException if a poller cannot read its starting watermark
+     */
+    static FlowEnvironment open() throws SQLException {
+        String authToken = System.getenv("AUTH_TOKEN");
+        if (authToken == null || authToken.trim().isEmpty()) {
+            throw new IllegalStateException("AUTH_TOKEN environment variable is not set");
+        }
+        DatabaseManager databaseManager = new DatabaseManager(System.getProperty("flow.db", "nickfury"))
+            .withStatementTimeout(Long.getLong("flow.dbTimeoutSeconds", 30L), TimeUnit.SECONDS);
+        WatermarkPoller bookings = null;
+        try {
+            bookings = WatermarkPoller.forStoreOrders(databaseManager).start(POLL_INTERVAL_SECONDS, TimeUnit.SECONDS);
+            WatermarkPoller sales = WatermarkPoller.forSaleOrders(databaseManager)
+                .start(POLL_INTERVAL_SECONDS, TimeUnit.SECONDS);
+            return new FlowEnvironment(authToken, databaseManager, bookings, sales);
+        } catch (SQLException | RuntimeException e) {
+            if (bookings != null) {
+                bookings.close();
+            }
+            DatabaseConnection.getInstance().closeAllConnections();
+            throw e;
+        }
+    }
+
+    // Getters
+    public OrderLifecycle getLifecycle() { return lifecycle; }
+
+    /**
+     * Formats the pool metrics and the ten slowest queries, for the end of a runner's report
+     */
+    public String formatDatabaseReport() {
+        return PoolMetrics.format() + SlowQueryLog.format(10);
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try {
+            sales.close();
+            bookings.close();
+            databaseManager.close();
+        } finally {
+            DatabaseConnection.getInstance().closeAllConnections();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.cloud.omuni_cloud.flow;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Service level objective for the order lifecycle: a latency percentile between two stages
+ * and a maximum error rate, e.g. "CREATED->ASSIGNED p95<60s error<0.5%".
+ */
+public class FlowSlo {
+    private static final Pattern SPEC = Pattern.compile(
+        "\\s*(\\w+)\\s*(?:->|→)\\s*(\\w+)\\s+p(\\d+(?:\\.\\d+)?)\\s*<\\s*(\\d+(?:\\.\\d+)?)(ms|s|m)" +
+        "\\s+(?:and\\s+)?error\\s*<\\s*(\\d+(?:\\.\\d+)?)%\\s*", Pattern.CASE_INSENSITIVE);
+
+    private final OrderStage fromStage;
+    private final OrderStage toStage;
+    private final double percentile;
+    private final long maxLatencyMillis;
+    private final double maxErrorRate;
+
+    /**
+     * Creates an SLO
+     * @param fromStage Stage the latency is measured from
+     * @param toStage Stage the latency is measured to
+     * @param percentile Latency percentile between 0 and 100
+     * @param maxLatency Latency the percentile must stay below
+     * @param unit Unit of the latency
+     * @param maxErrorRate Error rate (0..1) that must not be reached
+     */
+    public FlowSlo(OrderStage fromStage, OrderStage toStage, double percentile, long maxLatency, TimeUnit unit,
+                   double maxErrorRate) {
+        if (fromStage.compareTo(toStage) >= 0) {
+            throw new IllegalArgumentException("SLO stage " + toStage + " must come after " + fromStage);
+        }
+        if (percentile <= 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+        }
+        this.fromStage = fromStage;
+        this.toStage = toStage;
+        this.percentile = percentile;
+        this.maxLatencyMillis = unit.toMillis(maxLatency);
+        this.maxErrorRate = maxErrorRate;
+    }
+
+    /**
+     * Parses an SLO such as "CREATED->ASSIGNED p95<60s error<0.5%"
+     * @param spec SLO specification; latency takes an ms, s or m suffix
+     * @return the SLO
+     * @throws IllegalArgumentException if the specification cannot be parsed
+     */
+    public static FlowSlo parse(String spec) {
+        Matcher m = SPEC.matcher(spec);
+        if (!m.matches()) {
+            throw new IllegalArgumentException("Invalid SLO '" + spec + "', expected e.g. CREATED->ASSIGNED p95<60s error<0.5%");
+        }
+        double latency = Double.parseDouble(m.group(4));
+        String suffix = m.group(5).toLowerCase(Locale.ROOT);
+        long latencyMillis = (long) (latency * ("ms".equals(suffix) ? 1 : "s".equals(suffix) ? 1000 : 60_000));
+        return new FlowSlo(
+            OrderStage.valueOf(m.group(1).toUpperCase(Locale.ROOT)),
+            OrderStage.valueOf(m.group(2).toUpperCase(Locale.ROOT)),
+            Double.parseDouble(m.group(3)),
+            latencyMillis, TimeUnit.MILLISECONDS,
+            Double.parseDouble(m.group(6)) / 100.0);
+    }
+
+    // Getters
+    public OrderStage getFromStage() { return fromStage; }
+    public OrderStage getToStage() { return toStage; }
+    public double getPercentile() { return percentile; }
+    public long getMaxLatencyMillis() { return maxLatencyMillis; }
+    public double getMaxErrorRate() { return maxErrorRate; }
+
+    /**
+     * Gets the latency this SLO measures for an order
+     * @param progress The order's progress
+     * @return millis from the start stage to the end stage, or -1 if the order has not reached both
+     */
+    public long latencyOf(OrderProgress progress) {
+        Long from = progress.getStageTimestamp(fromStage);
+        Long to = progress.getStageTimestamp(toStage);
+        return from == null || to == null ? -1 : to - from;
+    }
+
+    /**
+     * Checks measured values against the SLO
+     * @param latencyPercentileMillis Measured latency at the SLO's percentile
+     * @param errorRate Measured error rate (0..1)
+     * @return true if both stay below their limits
+     */
+    public boolean isMet(long latencyPercentileMillis, double errorRate) {
+        return latencyPercentileMillis < maxLatencyMillis && errorRate < maxErrorRate;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%s->%s p%s<%dms error<%s%%", fromStage, toStage,
+            trim(percentile), maxLatencyMillis, trim(maxErrorRate * 100));
+    }
+
+    private static String trim(double value) {
+        return value == Math.rint(value) ? String.valueOf((long) value) : String.valueOf(value);
+    }
+}
@@ -0,0 +1,330 @@
+package com.cloud.omuni_cloud.flow;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Order arrival rate over time, built from consecutive segments: linear ramps, steady holds,
+ * spikes relative to the preceding rate and step-ups. Rates are in orders per second.
+ *
+ * <p>Profiles can be built in code:
+ * <pre>
+ * LoadProfile.builder()
+ *     .ramp(1, 50, 10, TimeUnit.MINUTES)
+ *     .hold(50, 20, TimeUnit.MINUTES)
+ *     .spike(3.0, 2, TimeUnit.MINUTES)
+ *     .build();
+ * </pre>
+ * or read from a file with one segment per line ({@code #} starts a comment):
+ * <pre>
+ * ramp  1 50 10m        # from, to, duration
+ * hold  50 20m          # rate, duration
+ * spike 3x 2m           # multiplier of the preceding rate, duration
+ * step  10 5 4 1m       # start rate, increment, number of steps, duration of each step
+ * </pre>
+ * Durations take an ms, s, m or h suffix.
+ */
+public class LoadProfile {
+    private final List<Segment> segments;
+    private final long durationMillis;
+
+    private LoadProfile(List<Segment> segments) {
+        if (segments.isEmpty()) {
+            throw new IllegalArgumentException("A load profile needs at least one segment");
+        }
+        this.segments = Collections.unmodifiableList(new ArrayList<>(segments));
+        long total = 0;
+        for (Segment segment : segments) {
+            total += segment.durationMillis;
+        }
+        this.durationMillis = total;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Creates a profile holding one rate for the whole duration
+     * @param ratePerSecond Orders per second
+     * @param duration Length of the profile
+     * @param unit Unit of the duration
+     * @return the profile
+     */
+    public static LoadProfile constant(double ratePerSecond, long duration, TimeUnit unit) {
+        return builder().hold(ratePerSecond, duration, unit).build();
+    }
+
+    public long getDurationMillis() { return durationMillis; }
+    public List<Segment> getSegments() { return segments; }
+
+    /**
+     * Gets the target arrival rate at a point in the profile
+     * @param elapsedMillis Time since the profile started
+     * @return orders per second, or 0 after the profile ended
+     */
+    public double rateAt(long elapsedMillis) {
+        long offset = 0;
+        for (Segment segment : segments) {
+            if (elapsedMillis < offset + segment.durationMillis) {
+                return segment.rateAt(elapsedMillis - offset);
+            }
+            offset += segment.durationMillis;
+        }
+        return 0.0;
+    }
+
+    /**
+     * Gets the number of arrivals the profile calls for between its start and the given time,
+     * i.e. the integral of the rate
+     * @param elapsedMillis Time since the profile started
+     * @return expected arrivals, fractional
+     */
+    public double expectedArrivals(long elapsedMillis) {
+        double arrivals = 0;
+        long offset = 0;
+        for (Segment segment : segments) {
+            long within = Math.min(elapsedMillis - offset, segment.durationMillis);
+            if (within <= 0) {
+                break;
+            }
+            arrivals += segment.arrivals(within);
+            offset += segment.durationMillis;
+        }
+        return arrivals;
+    }
+
+    /**
+     * Gets the time at which the given arrival is due: the earliest time at which the
+     * expected arrivals reach {@code index + 1}, so a profile expecting N arrivals starts
+     * exactly N orders and arrival 0 is due after the first interval, not at the start.
+     * @param index Zero-based arrival index
+     * @return elapsed millis at which the arrival is due, or -1 if the profile has fewer arrivals
+     */
+    public long arrivalTimeMillis(long index) {
+        long count = index + 1;
+        // Tolerate rounding in the integral, so the last of N arrivals is not lost
+        if (expectedArrivals(durationMillis) + 1e-9 < count) {
+            return -1;
+        }
+        long low = 0, high = durationMillis;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (expectedArrivals(mid) + 1e-9 >= count) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Reads a profile definition file
+     * @param file Path of the profile file
+     * @return the profile
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if a line cannot be parsed
+     */
+    public static LoadProfile parse(Path file) throws IOException {
+        return parse(Files.readAllLines(file, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parses profile definition lines
+     * @param lines Lines of the profile definition
+     * @return the profile
+     * @throws IllegalArgumentException if a line cannot be parsed
+     */
+    public static LoadProfile parse(List<String> lines) {
+        Builder builder = builder();
+        int lineNumber = 0;
+        for (String rawLine : lines) {
+            lineNumber++;
+            int comment = rawLine.indexOf('#');
+            String line = (comment >= 0 ? rawLine.substring(0, comment) : rawLine).trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            String[] parts = line.split("\\s+");
+            try {
+                switch (parts[0].toLowerCase(Locale.ROOT)) {
+                    case "ramp":
+                        expectArgs(parts, 3);
+                        builder.ramp(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]), parseDuration(parts[3]));
+                        break;
+                    case "hold":
+                        expectArgs(parts, 2);
+                        builder.hold(Double.parseDouble(parts[1]), parseDuration(parts[2]));
+                        break;
+                    case "spike":
+                        expectArgs(parts, 2);
+                        String multiplier = parts[1].toLowerCase(Locale.ROOT);
+                        if (multiplier.endsWith("x")) {
+                            multiplier = multiplier.substring(0, multiplier.length() - 1);
+                        }
+                        builder.spike(Double.parseDouble(multiplier), parseDuration(parts[2]));
+                        break;
+                    case "step":
+                        expectArgs(parts, 4);
+                        builder.stepUp(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]),
+                            Integer.parseInt(parts[3]), parseDuration(parts[4]));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown segment type '" + parts[0] + "'");
+                }
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                throw new IllegalArgumentException("Invalid load profile line " + lineNumber + ": " +
+                                                   rawLine.trim() + " (" + e.getMessage() + ")", e);
+            }
+        }
+        return builder.build();
+    }
+
+    private static void expectArgs(String[] parts, int count) {
+        if (parts.length != count + 1) {
+            throw new IllegalArgumentException("expected " + count + " arguments");
+        }
+    }
+
+    private static long parseDuration(String value) {
+        String v = value.toLowerCase(Locale.ROOT);
+        long multiplier;
+        if (v.endsWith("ms")) {
+            multiplier = 1;
+            v = v.substring(0, v.length() - 2);
+        } else if (v.endsWith("s")) {
+            multiplier = 1000;
+            v = v.substring(0, v.length() - 1);
+        } else if (v.endsWith("m")) {
+            multiplier = 60_000;
+            v = v.substring(0, v.length() - 1);
+        } else if (v.endsWith("h")) {
+            multiplier = 3_600_000;
+            v = v.substring(0, v.length() - 1);
+        } else {
+            throw new IllegalArgumentException("duration needs an ms, s, m or h suffix: " + value);
+        }
+        return (long) (Double.parseDouble(v) * multiplier);
+    }
+
+    @Override
+    public String toString() {
+        return "LoadProfile" + segments;
+    }
+
+    /**
+     * A stretch of the profile where the rate changes linearly from a start to an end rate
+     */
+    public static class Segment {
+        private final String type;
+        private final double startRate;
+        private final double endRate;
+        private final long durationMillis;
+
+        Segment(String type, double startRate, double endRate, long durationMillis) {
+            if (startRate < 0 || endRate < 0) {
+                throw new IllegalArgumentException("rates must not be negative");
+            }
+            if (durationMillis <= 0) {
+                throw new IllegalArgumentException("duration must be positive");
+            }
+            this.type = type;
+            this.startRate = startRate;
+            this.endRate = endRate;
+            this.durationMillis = durationMillis;
+        }
+
+        // Getters
+        public String getType() { return type; }
+        public double getStartRate() { return startRate; }
+        public double getEndRate() { return endRate; }
+        public long getDurationMillis() { return durationMillis; }
+
+        double rateAt(long offsetMillis) {
+            return startRate + (endRate - startRate) * offsetMillis / durationMillis;
+        }
+
+        double arrivals(long offsetMillis) {
+            double t = offsetMillis / 1000.0;
+            double d = durationMillis / 1000.0;
+            return startRate * t + (endRate - startRate) * t * t / (2 * d);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s(%.2f->%.2f/s, %ds)", type, startRate, endRate, durationMillis / 1000);
+        }
+    }
+
+    /**
+     * Builder for load profiles
+     */
+    public static class Builder {
+        private final List<Segment> segments = new ArrayList<>();
+
+        public Builder ramp(double fromRate, double toRate, long duration, TimeUnit unit) {
+            return ramp(fromRate, toRate, unit.toMillis(duration));
+        }
+
+        public Builder hold(double rate, long duration, TimeUnit unit) {
+            return hold(rate, unit.toMillis(duration));
+        }
+
+        /**
+         * Adds a spike at a multiple of the rate the preceding segment ended at
+         */
+        public Builder spike(double multiplier, long duration, TimeUnit unit) {
+            return spike(multiplier, unit.toMillis(duration));
+        }
+
+        /**
+         * Adds {@code steps} consecutive holds, starting at {@code startRate} and increasing by
+         * {@code increment} each step
+         */
+        public Builder stepUp(double startRate, double increment, int steps, long stepDuration, TimeUnit unit) {
+            return stepUp(startRate, increment, steps, unit.toMillis(stepDuration));
+        }
+
+        Builder ramp(double fromRate, double toRate, long durationMillis) {
+            segments.add(new Segment("ramp", fromRate, toRate, durationMillis));
+            return this;
+        }
+
+        Builder hold(double rate, long durationMillis) {
+            segments.add(new Segment("hold", rate, rate, durationMillis));
+            return this;
+        }
+
+        Builder spike(double multiplier, long durationMillis) {
+            if (segments.isEmpty()) {
+                throw new IllegalStateException("spike needs a preceding segment to be relative to");
+            }
+            double base = segments.get(segments.size() - 1).endRate;
+            segments.add(new Segment("spike", base * multiplier, base * multiplier, durationMillis));
+            return this;
+        }
+
+        Builder stepUp(double startRate, double increment, int steps, long stepDurationMillis) {
+            if (steps <= 0) {
+                throw new IllegalArgumentException("steps must be positive");
+            }
+            for (int i = 0; i < steps; i++) {
+                double rate = startRate + i * increment;
+                segments.add(new Segment("step", rate, rate, stepDurationMillis));
+            }
+            return this;
+        }
+
+        public LoadProfile build() {
+            return new LoadProfile(segments);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.cloud.omuni_cloud.flow;
+
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Starts order lifecycles following a LoadProfile. Each arrival is scheduled at the exact time the
+ * profile's cumulative rate reaches it, so the achieved arrival curve tracks the target without
+ * drifting. Arrivals are open-loop and capped by a maximum number of in-flight orders; arrivals
+ * over the cap are dropped and recorded as such in the timeline.
+ *
+ * <p>Run standalone with system properties:
+ * <ul>
+ *   <li>{@code load.profile} - profile definition file (required, see LoadProfile)</li>
+ *   <li>{@code load.maxInFlight} - cap on concurrently running orders (default 500)</li>
+ *   <li>{@code load.timeline} - CSV file for the per-second timeline (default load_timeline.csv)</li>
+ *   <li>{@code flow.fcId}, {@code flow.ean}, {@code flow.db} - FC, EAN and database config name</li>
+ *   <li>{@code flow.dbTimeoutSeconds} - deadline of each verification query (default 30)</li>
+ * </ul>
+ * The authorization token is read from the AUTH_TOKEN environment variable.
+ */
+public class LoadProfileDriver {
+    private static final int ORDER_REFERENCE_LENGTH = 17;
+
+    private final OrderLifecycle lifecycle;
+    private final LoadProfile profile;
+    private final int maxInFlight;
+    private final LoadTimeline timeline;
+    private OrderFlowCheckpoint checkpoint;
+    private Runnable onStarted;
+    private OrderStage lastStage = OrderStage.DELIVERED;
+    private long drainTimeoutMillis = TimeUnit.MINUTES.toMillis(30);
+
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile long startNanos;
+
+    public LoadProfileDriver(OrderLifecycle lifecycle, LoadProfile profile, int maxInFlight) {
+        this.lifecycle = lifecycle;
+        this.profile = profile;
+        this.maxInFlight = maxInFlight;
+        this.timeline = new LoadTimeline(profile);
+    }
+
+    // Builder-style setters for fluent configuration
+    public LoadProfileDriver withCheckpoint(OrderFlowCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+        return this;
+    }
+
+    /**
+     * Sets a callback run for every order that was started (not for dropped arrivals)
+     */
+    public LoadProfileDriver withOnStarted(Runnable onStarted) {
+        this.onStarted = onStarted;
+        return this;
+    }
+
+    /**
+     * Stops each order after the given stage instead of running it to delivery; orders reaching
+     * that stage are counted as delivered
+     */
+    public LoadProfileDriver withLastStage(OrderStage lastStage) {
+        this.lastStage = lastStage;
+        return this;
+    }
+
+    public LoadProfileDriver withDrainTimeout(long timeout, TimeUnit unit) {
+        this.drainTimeoutMillis = unit.toMillis(timeout);
+        return this;
+    }
+
+    // Getters
+    public LoadProfile getProfile() { return profile; }
+    public LoadTimeline getTimeline() { return timeline; }
+    public long getStarted() { return started.get(); }
+    public long getDropped() { return dropped.get(); }
+    public long getDelivered() { return delivered.get(); }
+    public long getFailed() { return failed.get(); }
+
+    public static void main(String[] args) throws Exception {
+        String profilePath = System.getProperty("load.profile");
+        if (profilePath == null) {
+            throw new IllegalStateException("load.profile system property is not set");
+        }
+
+        LoadProfile profile = LoadProfile.parse(Paths.get(profilePath));
+        int maxInFlight = Integer.getInteger("load.maxInFlight", 500);
+        Path timelineFile = Paths.get(System.getProperty("load.timeline", "load_timeline.csv"));
+
+        try (FlowEnvironment environment = FlowEnvironment.open()) {
+            OrderLifecycle lifecycle = environment.getLifecycle();
+            LoadProfileDriver driver = new LoadProfileDriver(lifecycle, profile, maxInFlight);
+            System.out.println("Running " + profile);
+            driver.run();
+
+            driver.getTimeline().writeCsv(timelineFile);
+            System.out.println(driver.getTimeline().format(60));
+            System.out.println(String.format("started=%d dropped=%d delivered=%d failed=%d, timeline written to %s",
+                driver.getStarted(), driver.getDropped(), driver.getDelivered(), driver.getFailed(), timelineFile));
+            System.out.print(environment.formatDatabaseReport());
+        }
+    }
+
+    /**
+     * Gets the time since the run started
+     * @return elapsed millis, or 0 before the run started
+     */
+    public long elapsedMillis() {
+        return startNanos == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Runs the profile to its end, then waits for in-flight orders to finish
+     * @return the timeline of the run
+     * @throws InterruptedException if interrupted while running
+     */
+    public LoadTimeline run() throws InterruptedException {
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(maxInFlight, maxInFlight, 60, TimeUnit.SECONDS,
+            new SynchronousQueue<>());
+        startNanos = System.nanoTime();
+        try {
+            for (long index = 0; ; index++) {
+                long due = profile.arrivalTimeMillis(index);
+                if (due < 0) {
+                    break;
+                }
+                long waitNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(due) - System.nanoTime();
+                while (waitNanos > 0) {
+                    LockSupport.parkNanos(waitNanos);
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                    waitNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(due) - System.nanoTime();
+                }
+                startOrder(workers);
+            }
+        } finally {
+            workers.shutdown();
+            // Stages time out on their own, so in-flight orders drain in bounded time
+            if (!workers.awaitTermination(drainTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                workers.shutdownNow();
+            }
+        }
+        return timeline;
+    }
+
+    private void startOrder(ThreadPoolExecutor workers) {
+        OrderProgress progress = new OrderProgress(MulesoftOrderPayload.newOrderReference(ORDER_REFERENCE_LENGTH));
+        long now = elapsedMillis();
+        try {
+            workers.execute(() -> {
+                try {
+                    lifecycle.runUntil(progress, lastStage, checkpoint);
+                    delivered.incrementAndGet();
+                    timeline.recordDelivered(elapsedMillis());
+                } catch (InterruptedException e) {
+                    // Cut off by the drain timeout, so it never reached its last stage
+                    failed.incrementAndGet();
+                    timeline.recordFailed(elapsedMillis());
+                    Thread.currentThread().interrupt();
+                } catch (Exception e) {
+                    failed.incrementAndGet();
+                    timeline.recordFailed(elapsedMillis());
+                }
+            });
+            started.incrementAndGet();
+            timeline.recordStarted(now);
+            if (onStarted != null) {
+                onStarted.run();
+            }
+        } catch (RejectedExecutionException e) {
+            dropped.incrementAndGet();
+            timeline.recordDropped(now);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.cloud.omuni_cloud.flow;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.TreeMap;
+
+/**
+ * Per-second record of a load run: the rate the profile asked for next to what was achieved
+ * (orders started, dropped at the in-flight cap, delivered and failed in that second).
+ */
+public class LoadTimeline {
+    private final LoadProfile profile;
+    private final TreeMap<Integer, long[]> seconds = new TreeMap<>();
+
+    private static final int STARTED = 0;
+    private static final int DROPPED = 1;
+    private static final int DELIVERED = 2;
+    private static final int FAILED = 3;
+
+    public LoadTimeline(LoadProfile profile) {
+        this.profile = profile;
+    }
+
+    void recordStarted(long elapsedMillis) { increment(elapsedMillis, STARTED); }
+    void recordDropped(long elapsedMillis) { increment(elapsedMillis, DROPPED); }
+    void recordDelivered(long elapsedMillis) { increment(elapsedMillis, DELIVERED); }
+    void recordFailed(long elapsedMillis) { increment(elapsedMillis, FAILED); }
+
+    private synchronized void increment(long elapsedMillis, int column) {
+        int second = (int) (elapsedMillis / 1000);
+        seconds.computeIfAbsent(second, s -> new long[4])[column]++;
+    }
+
+    /**
+     * Gets the number of arrivals the profile asked for in a given second
+     * @param second Second of the run, starting at 0
+     * @return target arrivals in that second
+     */
+    public double targetArrivals(int second) {
+        return profile.expectedArrivals((second + 1) * 1000L) - profile.expectedArrivals(second * 1000L);
+    }
+
+    /**
+     * Gets the number of orders started in a given second
+     * @param second Second of the run, starting at 0
+     * @return orders started
+     */
+    public synchronized long startedIn(int second) {
+        long[] counts = seconds.get(second);
+        return counts == null ? 0 : counts[STARTED];
+    }
+
+    /**
+     * Writes the timeline as CSV, one row per second of the run including the drain period
+     * @param file Output file
+     * @throws IOException if the file cannot be written
+     */
+    public synchronized void writeCsv(Path file) throws IOException {
+        int lastSecond = (int) Math.max((profile.getDurationMillis() - 1) / 1000,
+            seconds.isEmpty() ? 0 : seconds.lastKey());
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            out.println("second,targetRate,achievedRate,dropped,delivered,failed");
+            for (int second = 0; second <= lastSecond; second++) {
+                long[] counts = seconds.getOrDefault(second, new long[4]);
+                out.println(String.format(Locale.ROOT, "%d,%.3f,%d,%d,%d,%d", second, targetArrivals(second),
+                    counts[STARTED], counts[DROPPED], counts[DELIVERED], counts[FAILED]));
+            }
+        }
+    }
+
+    /**
+     * Summarises target against achieved rate per interval
+     * @param intervalSeconds Length of each summarised interval
+     * @return report lines
+     */
+    public synchronized String format(int intervalSeconds) {
+        int profileSeconds = (int) ((profile.getDurationMillis() + 999) / 1000);
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-12s %12s %14s %8s %10s %7s%n",
+            "interval", "target/s", "achieved/s", "dropped", "delivered", "failed"));
+        for (int from = 0; from < profileSeconds; from += intervalSeconds) {
+            int to = Math.min(from + intervalSeconds, profileSeconds);
+            double target = 0;
+            long[] totals = new long[4];
+            for (int second = from; second < to; second++) {
+                target += targetArrivals(second);
+                long[] counts = seconds.get(second);
+                if (counts != null) {
+                    for (int i = 0; i < totals.length; i++) {
+                        totals[i] += counts[i];
+                    }
+                }
+            }
+            int length = to - from;
+            sb.append(String.format(Locale.ROOT, "%-12s %12.2f %14.2f %8d %10d %7d%n",
+                from + "-" + to + "s", target / length, (double) totals[STARTED] / length,
+                totals[DROPPED], totals[DELIVERED], totals[FAILED]));
+        }
+        return sb.toString();
+    }
+}
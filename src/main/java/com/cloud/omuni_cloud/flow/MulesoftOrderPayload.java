@@ -0,0 +1,162 @@
+package com.cloud.omuni_cloud.flow;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.UUID;
+
+/**
+ * Builds Mulesoft order payloads for the Bata marketplace, as sent to OrderCreationApi.createOrder.
+ */
+public class MulesoftOrderPayload {
+
+    /**
+     * Generates a unique order reference of the given length, starting with "OS"
+     * @param length Total length of the reference, between 11 and 17
+     * @return a new order reference
+     */
+    public static String newOrderReference(int length) {
+        if (length < 11 || length > 17) {
+            throw new IllegalArgumentException("Order reference length must be between 11 and 17");
+        }
+        String uuidPart = UUID.randomUUID().toString().replaceAll("-", "");
+        String base = System.currentTimeMillis() + uuidPart;
+        return "OS" + base.substring(0, length - 2);
+    }
+
+    /**
+     * Builds the order creation body for a single-item order
+     * @param orderReference Unique reference for the order
+     * @param fcId The fulfillment center ID the item ships from
+     * @param ean The product EAN
+     * @param quantity The quantity to order
+     * @return The JSON request body
+     */
+    public static String build(String orderReference, String fcId, String ean, int quantity) {
+        JSONObject body = new JSONObject();
+        body.put("metadata", new JSONObject()
+                .put("billing_address_city", "città test")
+                .put("billing_address_address_line2", "")
+                .put("billing_address_address_line1", "via dei test 33")
+                .put("grossTotal", "599")
+                .put("customer_userid", "+2432432438")
+                .put("netPrice", "5138")
+                .put("customer_username", "+2432432438")
+                .put("merchandiseTotal", "5999")
+                .put("locale", "en_IN")
+                .put("billing_address_zip", "12345")
+                .put("customer_middleName", "")
+                .put("customer_lastName", "test")
+                .put("discountTotal", "0")
+                .put("paymentProvider", "")
+                .put("billing_address_phone", "+2432432438")
+                .put("orderHistoryUrl", "")
+                .put("customer_firstName", "Mattia test")
+                .put("customer_email", "mpalla@deloitte.it")
+                .put("netTotal", "6269")
+                .put("billing_address_state", "Cagliari")
+                .put("billing_address_country", "IT")
+                .put("isSmsNotification", "true")
+                .put("customer_phoneNumber", "+2432432438")
+                .put("paymentTransactionId", "")
+        );
+        body.put("marketPlaceName", "bata");
+        body.put("netAmount", 2895);
+        body.put("paymentRatioMetadata", new JSONObject()
+                .put("a", 100)
+                .put("b", 100)
+                .put("c", 100)
+        );
+        body.put("orderingChannel", "cloud");
+        body.put("orderStatus", "processing");
+        body.put("clusterId", JSONObject.NULL);
+        body.put("createdAt", 1539598799000L);
+        body.put("orderReference2", orderReference);
+        body.put("grossValue", 2895);
+        body.put("service", "Bata");
+        body.put("orderReference", orderReference);
+        body.put("shippingAddress", new JSONObject()
+                .put("zip", "560001")
+                .put("country", "India")
+                .put("address_line1", "AKR Tech Park- B Block, 7th Mile, Off Hosur Road,nKrishna Reddy Industrial Area, Garebhavipalya, Singasandra")
+                .put("city", "Bangalore")
+                .put("phone", "6362745384")
+                .put("state", "karanatka")
+                .put("customerName", "Valluru Suresh")
+        );
+        body.put("currency", JSONObject.NULL);
+
+        // Items array
+        JSONArray items = new JSONArray();
+        JSONObject item = new JSONObject();
+        item.put("tradeSp", 1000);
+        item.put("metadata", new JSONObject()
+                .put("ABCDE", "XYZ")
+                .put("ORDER_REFSITE", "BD07")
+                .put("ORDER_REFSITE1", "BD07")
+                .put("ABCDF", "XYZ")
+                .put("ORDER_REFSITE2", "BD07")
+                .put("ABCD", "XYZ")
+        );
+        item.put("quantity", quantity);
+        item.put("netAmount", 1000);
+        item.put("discount", 0);
+        item.put("mrp", 1000);
+        item.put("grossAmount", 1000);
+        item.put("productDetails", new JSONObject()
+                .put("category2", JSONObject.NULL)
+                .put("category3", JSONObject.NULL)
+                .put("image", JSONObject.NULL)
+                .put("color", JSONObject.NULL)
+                .put("category1", JSONObject.NULL)
+                .put("sapStyleId", JSONObject.NULL)
+                .put("description", JSONObject.NULL)
+                .put("mrp", JSONObject.NULL)
+                .put("sapSkuId", JSONObject.NULL)
+                .put("size", JSONObject.NULL)
+                .put("eoisSkuId", JSONObject.NULL)
+                .put("styleId", JSONObject.NULL)
+                .put("eanCode", JSONObject.NULL)
+                .put("brand", JSONObject.NULL)
+                .put("grossSP", JSONObject.NULL)
+                .put("skuId", ean)
+        );
+        item.put("typeOfTaxes", new JSONArray());
+        item.put("itemId", orderReference);
+        item.put("itemReference", orderReference);
+        item.put("warehouseId", fcId);
+        JSONArray financialStatus = new JSONArray();
+        financialStatus.put(new JSONObject()
+                .put("amount", 1000)
+                .put("paymentMode", "paytm233")
+                .put("paymentStatus", "paid")
+        );
+        financialStatus.put(new JSONObject()
+                .put("amount", 440)
+                .put("paymentMode", "voucher234")
+                .put("paymentStatus", "paid")
+        );
+        item.put("financialStatus", financialStatus);
+        item.put("shippingAmount", 0);
+        item.put("taxAmount", 0);
+        item.put("skuId", ean);
+        items.put(item);
+        body.put("items", items);
+
+        body.put("channelId", "19");
+        body.put("customer", new JSONObject()
+                .put("firstName", "valluru")
+                .put("lastName", "suresh")
+                .put("gender", JSONObject.NULL)
+                .put("phonenumber", "6362745384")
+                .put("middleName", JSONObject.NULL)
+                .put("dateOfBirth", JSONObject.NULL)
+                .put("title", JSONObject.NULL)
+                .put("userId", "")
+                .put("email", "sureshvalluru@arvindinternet.com")
+                .put("channelId", JSONObject.NULL)
+                .put("username", JSONObject.NULL)
+        );
+        return body.toString();
+    }
+}
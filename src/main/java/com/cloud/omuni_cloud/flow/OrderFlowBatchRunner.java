@@ -0,0 +1,141 @@
+package com.cloud.omuni_cloud.flow;
+
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a batch of orders through the lifecycle in parallel, checkpointing every completed stage.
+ * In resume mode the checkpoint file is loaded first and every unfinished order continues from
+ * its last completed stage; new orders are only created to make up the rest of the batch.
+ *
+ * <p>Configured through system properties:
+ * <ul>
+ *   <li>{@code flow.orders} - total number of orders in the batch (default 1)</li>
+ *   <li>{@code flow.parallelism} - orders processed concurrently (default 4)</li>
+ *   <li>{@code flow.checkpoint} - checkpoint file (default order_flow_checkpoint.tsv)</li>
+ *   <li>{@code flow.resume} - resume from the checkpoint file (default false)</li>
+ *   <li>{@code flow.fcId}, {@code flow.ean}, {@code flow.db} - FC, EAN and database config name</li>
+ *   <li>{@code flow.dbTimeoutSeconds} - deadline of each verification query (default 30)</li>
+ * </ul>
+ * The authorization token is read from the AUTH_TOKEN environment variable.
+ */
+public class OrderFlowBatchRunner {
+    private static final int ORDER_REFERENCE_LENGTH = 17;
+
+    private final OrderLifecycle lifecycle;
+    private final int parallelism;
+
+    public OrderFlowBatchRunner(OrderLifecycle lifecycle, int parallelism) {
+        this.lifecycle = lifecycle;
+        this.parallelism = parallelism;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int orders = Integer.getInteger("flow.orders", 1);
+        int parallelism = Integer.getInteger("flow.parallelism", 4);
+        Path checkpointFile = Paths.get(System.getProperty("flow.checkpoint", "order_flow_checkpoint.tsv"));
+        boolean resume = Boolean.getBoolean("flow.resume");
+
+        try (FlowEnvironment environment = FlowEnvironment.open()) {
+            OrderLifecycle lifecycle = environment.getLifecycle();
+            List<OrderProgress> results = new OrderFlowBatchRunner(lifecycle, parallelism)
+                .run(orders, checkpointFile, resume);
+
+            long completed = results.stream().filter(OrderProgress::isComplete).count();
+            System.out.println("Batch finished: " + completed + "/" + results.size() + " orders delivered");
+            for (OrderProgress progress : results) {
+                if (!progress.isComplete()) {
+                    System.out.println("  incomplete: " + progress);
+                }
+            }
+            System.out.print(environment.formatDatabaseReport());
+        }
+    }
+
+    /**
+     * Runs the batch
+     * @param totalOrders Total number of orders in the batch, including resumed ones
+     * @param checkpointFile Checkpoint file to append progress to
+     * @param resume Whether to continue the orders already recorded in the checkpoint file
+     * @return Progress of every order in the batch
+     * @throws IOException if the checkpoint file cannot be read or opened
+     * @throws InterruptedException if interrupted while waiting for the batch
+     */
+    public List<OrderProgress> run(int totalOrders, Path checkpointFile, boolean resume)
+            throws IOException, InterruptedException {
+        List<OrderProgress> batch = new ArrayList<>();
+        if (resume) {
+            Map<String, OrderProgress> recorded = OrderFlowCheckpoint.load(checkpointFile);
+            batch.addAll(recorded.values());
+            long pending = recorded.values().stream().filter(p -> !p.isComplete()).count();
+            System.out.println("Resuming from " + checkpointFile + ": " + recorded.size() +
+                               " orders recorded, " + pending + " unfinished");
+        }
+
+        int newOrders = Math.max(0, totalOrders - batch.size());
+        for (int i = 0; i < newOrders; i++) {
+            batch.add(new OrderProgress(MulesoftOrderPayload.newOrderReference(ORDER_REFERENCE_LENGTH)));
+        }
+
+        // Orders that still have to be created need stock; the rest already hold their reservation
+        long toCreate = batch.stream().filter(p -> p.nextStage() == OrderStage.CREATED).count();
+        if (toCreate > 0) {
+            try {
+                int required = (int) toCreate * lifecycle.getQuantity();
+                lifecycle.getInventory().ensureAvailable(lifecycle.getFcId(), lifecycle.getEan(),
+                    required, Math.max(1500, required));
+            } catch (Exception e) {
+                throw new IllegalStateException("Failed to precondition inventory: " + e.getMessage(), e);
+            }
+        }
+
+        AtomicInteger failed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try (OrderFlowCheckpoint checkpoint = new OrderFlowCheckpoint(checkpointFile)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (OrderProgress progress : batch) {
+                if (progress.isComplete()) {
+                    continue;
+                }
+                futures.add(executor.submit(() -> {
+                    try {
+                        lifecycle.runToCompletion(progress, checkpoint);
+                        System.out.println("Order " + progress.getOrderReference() + " delivered");
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                        System.err.println("Order " + progress.getOrderReference() + " stopped after " +
+                                           progress.getLastStage() + ": " + e.getMessage());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    // Failures are reported by the task itself
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(30, TimeUnit.SECONDS);
+        }
+
+        if (failed.get() > 0) {
+            System.err.println(failed.get() + " orders did not finish; rerun with -Dflow.resume=true to continue them");
+        }
+        return batch;
+    }
+}
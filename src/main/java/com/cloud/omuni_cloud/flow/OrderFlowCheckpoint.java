@@ -0,0 +1,120 @@
+package com.cloud.omuni_cloud.flow;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Append-only checkpoint file recording each order's progress through the lifecycle.
+ * Every completed stage appends one tab-separated line:
+ * <pre>epochMillis  orderReference  stage  consignmentId[,consignmentId...]</pre>
+ * Lines are flushed as they are written, so after a crash the file holds every stage that
+ * completed. A torn last line is skipped on load.
+ */
+public class OrderFlowCheckpoint implements AutoCloseable {
+    private static final String SEPARATOR = "\t";
+
+    private final Path file;
+    private final BufferedWriter writer;
+
+    /**
+     * Opens the checkpoint file for appending, creating it if needed
+     * @param file Path of the checkpoint file
+     * @throws IOException if the file cannot be opened
+     */
+    public OrderFlowCheckpoint(Path file) throws IOException {
+        this.file = file;
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    public Path getFile() { return file; }
+
+    /**
+     * Records that the order completed its last stage
+     * @param progress the order's progress
+     * @throws IOException if the record cannot be written
+     */
+    public void record(OrderProgress progress) throws IOException {
+        OrderStage stage = progress.getLastStage();
+        if (stage == null) {
+            throw new IllegalArgumentException("Order " + progress.getOrderReference() + " has not completed any stage");
+        }
+        Long timestamp = progress.getStageTimestamp(stage);
+        String line = (timestamp != null ? timestamp : System.currentTimeMillis()) + SEPARATOR +
+                progress.getOrderReference() + SEPARATOR +
+                stage.name() + SEPARATOR +
+                String.join(",", progress.getConsignmentIds());
+
+        synchronized (writer) {
+            writer.write(line);
+            writer.newLine();
+            writer.flush();
+        }
+    }
+
+    /**
+     * Loads the progress of every order recorded in a checkpoint file
+     * @param file Path of the checkpoint file
+     * @return Map of orderReference to progress, in the order orders were first recorded
+     * @throws IOException if the file cannot be read
+     */
+    public static Map<String, OrderProgress> load(Path file) throws IOException {
+        Map<String, OrderProgress> orders = new LinkedHashMap<>();
+        if (!Files.exists(file)) {
+            return orders;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                String[] parts = line.split(SEPARATOR, -1);
+                if (parts.length != 4) {
+                    System.err.println("Skipping malformed checkpoint line " + lineNumber + " in " + file);
+                    continue;
+                }
+
+                long timestamp;
+                OrderStage stage;
+                try {
+                    timestamp = Long.parseLong(parts[0]);
+                    stage = OrderStage.valueOf(parts[2]);
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Skipping malformed checkpoint line " + lineNumber + " in " + file);
+                    continue;
+                }
+
+                OrderProgress progress = orders.computeIfAbsent(parts[1], OrderProgress::new);
+                if (!parts[3].isEmpty()) {
+                    for (String consignmentId : parts[3].split(",")) {
+                        progress.addConsignmentId(consignmentId);
+                    }
+                }
+                progress.completeStage(stage, timestamp);
+            }
+        }
+        return orders;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (writer) {
+            writer.close();
+        }
+    }
+}
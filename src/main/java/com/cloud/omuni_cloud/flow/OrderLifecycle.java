@@ -0,0 +1,357 @@
+package com.cloud.omuni_cloud.flow;
+
+import com.cloud.omuni_cloud.BumblebeeShipmentStatusApi;
+import com.cloud.omuni_cloud.ChandlerOrderStatusApi;
+import com.cloud.omuni_cloud.ConsignmentStatusApi;
+import com.cloud.omuni_cloud.GenericDetailsApi;
+import com.cloud.omuni_cloud.InventoryPreconditioner;
+import com.cloud.omuni_cloud.OrderCreationApi;
+import com.cloud.omuni_cloud.OrderDetailsApi;
+import com.cloud.omuni_cloud.dbutil.DatabaseManager;
+import com.cloud.omuni_cloud.dbutil.OrderVerification;
+import com.cloud.omuni_cloud.dbutil.OrderWatcher;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Drives a single order through the Mulesoft order flow one stage at a time, the same steps
+ * MulesoftOrderFlowTest runs: create, verify booking, wait for assignment, Chandler acceptance,
+ * invoicing, sale verification, shipping and delivery.
+ * Instead of fixed sleeps each stage polls until its expected state shows up or the stage times out.
+ */
+public class OrderLifecycle {
+    // Consignment statuses the stages after CHANDLER_ACCEPTED move an order through, in order
+    private static final List<String> CONSIGNMENT_STATUSES = Arrays.asList("Assigned", "Packed", "Shipped", "Delivered");
+    // Stages whose external call must not be made twice for an order
+    private static final Set<OrderStage> UNREPEATABLE = EnumSet.of(
+        OrderStage.CHANDLER_ACCEPTED, OrderStage.INVOICED, OrderStage.SHIPPED, OrderStage.DELIVERED);
+
+    private final String authToken;
+    private final String fcId;
+    private final String ean;
+    private final DatabaseManager databaseManager;
+    private final List<OrderStageListener> listeners = new CopyOnWriteArrayList<>();
+    private int quantity = 5;
+    private String deliveryShopNo = "3051";
+    private long stageTimeoutMillis = TimeUnit.MINUTES.toMillis(3);
+    private long pollIntervalMillis = TimeUnit.SECONDS.toMillis(2);
+    private OrderWatcher bookingWatcher;
+    private OrderWatcher saleWatcher;
+    private InventoryPreconditioner inventory;
+
+    /**
+     * Creates a lifecycle driver
+     * @param authToken Authorization token for the order APIs
+     * @param fcId The fulfillment center ID orders are placed against
+     * @param ean The product EAN
+     * @param databaseManager Manager used for booking and sale verification
+     */
+    public OrderLifecycle(String authToken, String fcId, String ean, DatabaseManager databaseManager) {
+        this.authToken = authToken;
+        this.fcId = fcId;
+        this.ean = ean;
+        this.databaseManager = databaseManager;
+        this.inventory = new InventoryPreconditioner(authToken);
+    }
+
+    // Getters
+    public String getFcId() { return fcId; }
+    public String getEan() { return ean; }
+    public int getQuantity() { return quantity; }
+    public InventoryPreconditioner getInventory() { return inventory; }
+
+    // Builder-style setters for fluent configuration
+    public OrderLifecycle withQuantity(int quantity) {
+        this.quantity = quantity;
+        return this;
+    }
+
+    public OrderLifecycle withDeliveryShopNo(String deliveryShopNo) {
+        this.deliveryShopNo = deliveryShopNo;
+        return this;
+    }
+
+    public OrderLifecycle withStageTimeout(long timeout, TimeUnit unit) {
+        this.stageTimeoutMillis = unit.toMillis(timeout);
+        return this;
+    }
+
+    public OrderLifecycle withPollInterval(long interval, TimeUnit unit) {
+        this.pollIntervalMillis = unit.toMillis(interval);
+        return this;
+    }
+
+    /**
+     * Verifies booking and sale calls through shared watchers, such as watermark pollers or the
+     * binlog listener, instead of one point lookup per order and poll interval
+     * @param bookingWatcher Watcher of nickfury.store_orders, or null for point lookups
+     * @param saleWatcher Watcher of nickfury.sale_orders, or null for point lookups
+     */
+    public OrderLifecycle withOrderWatchers(OrderWatcher bookingWatcher, OrderWatcher saleWatcher) {
+        this.bookingWatcher = bookingWatcher;
+        this.saleWatcher = saleWatcher;
+        return this;
+    }
+
+    /**
+     * Tops up inventory through another service than the default one
+     * @param inventory Preconditioner the runners use for this lifecycle's FC/EAN
+     */
+    public OrderLifecycle withInventory(InventoryPreconditioner inventory) {
+        this.inventory = inventory;
+        return this;
+    }
+
+    public OrderLifecycle withListener(OrderStageListener listener) {
+        this.listeners.add(listener);
+        return this;
+    }
+
+    /**
+     * Runs every remaining stage of the order, recording each completed stage in the checkpoint
+     * @param progress The order's progress; stages up to its last completed stage are skipped
+     * @param checkpoint Checkpoint to record completed stages in, or null to skip recording
+     * @throws Exception if a stage fails or times out; progress keeps the last completed stage
+     */
+    public void runToCompletion(OrderProgress progress, OrderFlowCheckpoint checkpoint) throws Exception {
+        runUntil(progress, OrderStage.DELIVERED, checkpoint);
+    }
+
+    /**
+     * Runs the remaining stages of the order up to and including the given stage
+     * @param progress The order's progress; stages up to its last completed stage are skipped
+     * @param lastStage The last stage to run
+     * @param checkpoint Checkpoint to record completed stages in, or null to skip recording
+     * @throws Exception if a stage fails or times out; progress keeps the last completed stage
+     */
+    public void runUntil(OrderProgress progress, OrderStage lastStage, OrderFlowCheckpoint checkpoint)
+            throws Exception {
+        OrderStage stage;
+        // Only the first stage can have taken effect without being recorded, in an earlier run or attempt
+        boolean first = true;
+        while ((stage = progress.nextStage()) != null && stage.compareTo(lastStage) <= 0) {
+            if (first && alreadyApplied(progress, stage)) {
+                progress.completeStage(stage, System.currentTimeMillis());
+                System.out.println("Order " + progress.getOrderReference() + ": " + stage +
+                                   " already took effect, not repeating it");
+            } else {
+                runStage(progress, stage);
+            }
+            first = false;
+            if (checkpoint != null) {
+                checkpoint.record(progress);
+            }
+        }
+    }
+
+    /**
+     * Checks whether a stage whose external call cannot be repeated already took effect, as when an
+     * earlier run made the call but stopped before recording the stage
+     * @throws Exception if the consignment status cannot be read; the stage is then not repeated either
+     */
+    private boolean alreadyApplied(OrderProgress progress, OrderStage stage) throws Exception {
+        String consignmentId = progress.getConsignmentId();
+        if (!UNREPEATABLE.contains(stage) || consignmentId == null) {
+            return false;
+        }
+        try {
+            return isApplied(stage, GenericDetailsApi.getConsignmentStatus(consignmentId));
+        } catch (Exception e) {
+            progress.setLastError(stage + ": cannot tell whether it already took effect: " + e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * Tells from the consignment status whether a stage took effect. Chandler's acceptance moves the
+     * consignment on from Assigned; invoicing, shipping and delivery make it Packed, Shipped and Delivered.
+     * @param stage A stage from CHANDLER_ACCEPTED on
+     * @param consignmentStatus Status from GenericDetailsApi
+     * @return true if the status shows the stage or a later one
+     */
+    static boolean isApplied(OrderStage stage, String consignmentStatus) {
+        if ("NOT_FOUND".equals(consignmentStatus)) {
+            return false;
+        }
+        if (stage == OrderStage.CHANDLER_ACCEPTED) {
+            return !"Assigned".equalsIgnoreCase(consignmentStatus);
+        }
+        String expected = stage == OrderStage.INVOICED ? "Packed"
+                        : stage == OrderStage.SHIPPED ? "Shipped"
+                        : stage == OrderStage.DELIVERED ? "Delivered" : null;
+        return expected != null && statusIndex(consignmentStatus) >= statusIndex(expected);
+    }
+
+    private static int statusIndex(String consignmentStatus) {
+        for (int i = 0; i < CONSIGNMENT_STATUSES.size(); i++) {
+            if (CONSIGNMENT_STATUSES.get(i).equalsIgnoreCase(consignmentStatus)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Runs a single stage of the order and marks it completed
+     * @param progress The order's progress
+     * @param stage The stage to run
+     * @throws Exception if the stage fails or times out
+     */
+    public void runStage(OrderProgress progress, OrderStage stage) throws Exception {
+        String orderReference = progress.getOrderReference();
+        long start = System.currentTimeMillis();
+        try {
+            switch (stage) {
+                case CREATED:
+                    OrderCreationApi.createOrder(
+                        MulesoftOrderPayload.build(orderReference, fcId, ean, quantity), authToken);
+                    break;
+                case BOOKING_VERIFIED:
+                    if (bookingWatcher != null) {
+                        awaitWatched(stage, orderReference, bookingWatcher, () -> databaseManager
+                            .verifyBookingCallInChandlerDBforBataOrders(orderReference)
+                            .startsWith("Store order found"));
+                    } else {
+                        awaitTrue(stage, orderReference, () -> databaseManager
+                            .verifyBookingCallInChandlerDBforBataOrders(orderReference)
+                            .startsWith("Store order found"));
+                    }
+                    break;
+                case ASSIGNED:
+                    String consignmentId = awaitValue(stage, orderReference,
+                        () -> OrderDetailsApi.getFirstConsignmentId(orderReference, authToken));
+                    progress.addConsignmentId(consignmentId);
+                    awaitConsignmentStatus(stage, progress, "Assigned");
+                    break;
+                case CHANDLER_ACCEPTED:
+                    ChandlerOrderStatusApi.updateOrderStatus(orderReference, deliveryShopNo);
+                    break;
+                case INVOICED:
+                    ConsignmentStatusApi.updateConsignmentStatus(
+                        progress.getConsignmentId(), "INVOICED", "Auto change by System", 7);
+                    awaitConsignmentStatus(stage, progress, "Packed");
+                    break;
+                case SALE_VERIFIED:
+                    if (saleWatcher != null) {
+                        awaitWatched(stage, orderReference, saleWatcher, () -> databaseManager
+                            .verifySaleCallInChandlerDBforBataOrders(orderReference)
+                            .startsWith("Sale order found"));
+                    } else {
+                        awaitTrue(stage, orderReference, () -> databaseManager
+                            .verifySaleCallInChandlerDBforBataOrders(orderReference)
+                            .startsWith("Sale order found"));
+                    }
+                    break;
+                case SHIPPED:
+                    BumblebeeShipmentStatusApi.updateShipmentStatus(progress.getConsignmentId(), "SHIPPED", now());
+                    awaitConsignmentStatus(stage, progress, "Shipped");
+                    break;
+                case DELIVERED:
+                    BumblebeeShipmentStatusApi.updateShipmentStatus(progress.getConsignmentId(), "DELIVERED", now());
+                    awaitConsignmentStatus(stage, progress, "Delivered");
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown stage: " + stage);
+            }
+        } catch (Exception e) {
+            progress.setLastError(stage + ": " + e.getMessage());
+            long duration = System.currentTimeMillis() - start;
+            for (OrderStageListener listener : listeners) {
+                listener.onStageFailed(progress, stage, duration, e);
+            }
+            throw e;
+        }
+        long end = System.currentTimeMillis();
+        progress.completeStage(stage, end);
+        for (OrderStageListener listener : listeners) {
+            listener.onStageCompleted(progress, stage, end - start);
+        }
+    }
+
+    // Date of a shipment status change, e.g. 2025-07-20T05:04:00Z
+    private static String now() {
+        return Instant.now().truncatedTo(ChronoUnit.SECONDS).toString();
+    }
+
+    private void awaitConsignmentStatus(OrderStage stage, OrderProgress progress, String expectedStatus)
+            throws Exception {
+        String consignmentId = progress.getConsignmentId();
+        if (consignmentId == null) {
+            throw new IllegalStateException("No consignment known for order " + progress.getOrderReference());
+        }
+        awaitTrue(stage, progress.getOrderReference(),
+            () -> expectedStatus.equalsIgnoreCase(GenericDetailsApi.getConsignmentStatus(consignmentId)));
+    }
+
+    /**
+     * Waits for the watcher to see the order's row. One point lookup right after registering catches
+     * rows the watcher will never report, such as those of a resumed order committed before it
+     * started; if the stage times out, a last point lookup decides.
+     */
+    private void awaitWatched(OrderStage stage, String orderReference, OrderWatcher watcher,
+                             Callable<Boolean> pointLookup) throws Exception {
+        // Registered before the lookup, so a row committed in between is still reported
+        CompletableFuture<OrderVerification> seen = watcher.await(orderReference);
+        try {
+            if (Boolean.TRUE.equals(pointLookup.call())) {
+                watcher.cancel(orderReference);
+                return;
+            }
+        } catch (InterruptedException e) {
+            watcher.cancel(orderReference);
+            throw e;
+        } catch (Exception e) {
+            // A failed lookup leaves the order to the watcher
+        }
+        try {
+            seen.get(stageTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            watcher.cancel(orderReference);
+            if (!Boolean.TRUE.equals(pointLookup.call())) {
+                throw new IllegalStateException("Timed out waiting for " + stage + " of order " + orderReference);
+            }
+        }
+    }
+
+    private void awaitTrue(OrderStage stage, String orderReference, Callable<Boolean> condition) throws Exception {
+        awaitValue(stage, orderReference, () -> Boolean.TRUE.equals(condition.call()) ? Boolean.TRUE : null);
+    }
+
+    /**
+     * Polls until the supplier returns a non-null value or the stage timeout expires
+     */
+    private <T> T awaitValue(OrderStage stage, String orderReference, Callable<T> supplier) throws Exception {
+        long deadline = System.currentTimeMillis() + stageTimeoutMillis;
+        Exception lastFailure = null;
+        while (true) {
+            try {
+                T value = supplier.call();
+                if (value != null) {
+                    return value;
+                }
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                // Transient API/DB failures are retried until the deadline
+                lastFailure = e;
+            }
+            if (System.currentTimeMillis() + pollIntervalMillis > deadline) {
+                String message = "Timed out waiting for " + stage + " of order " + orderReference;
+                throw lastFailure != null ? new IllegalStateException(message, lastFailure)
+                                          : new IllegalStateException(message);
+            }
+            Thread.sleep(pollIntervalMillis);
+        }
+    }
+}
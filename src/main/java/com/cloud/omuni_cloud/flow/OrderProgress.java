@@ -0,0 +1,98 @@
+package com.cloud.omuni_cloud.flow;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Progress of a single order through the lifecycle: the consignments it produced,
+ * the last completed stage and when each stage completed.
+ */
+public class OrderProgress {
+    private final String orderReference;
+    private final List<String> consignmentIds = new ArrayList<>();
+    private final Map<OrderStage, Long> stageTimestamps = new EnumMap<>(OrderStage.class);
+    private OrderStage lastStage;
+    private String lastError;
+
+    public OrderProgress(String orderReference) {
+        this.orderReference = orderReference;
+    }
+
+    // Getters
+    public String getOrderReference() { return orderReference; }
+    public synchronized OrderStage getLastStage() { return lastStage; }
+    public synchronized String getLastError() { return lastError; }
+    public synchronized List<String> getConsignmentIds() { return new ArrayList<>(consignmentIds); }
+    public synchronized Map<OrderStage, Long> getStageTimestamps() {
+        return Collections.unmodifiableMap(new EnumMap<>(stageTimestamps));
+    }
+
+    /**
+     * Gets the first consignment of the order
+     * @return the consignment ID, or null if none is known yet
+     */
+    public synchronized String getConsignmentId() {
+        return consignmentIds.isEmpty() ? null : consignmentIds.get(0);
+    }
+
+    /**
+     * Gets the completion time of a stage
+     * @param stage the stage
+     * @return epoch millis when the stage completed, or null if it has not completed
+     */
+    public synchronized Long getStageTimestamp(OrderStage stage) {
+        return stageTimestamps.get(stage);
+    }
+
+    /**
+     * Checks whether the order has completed every stage
+     * @return true if the order is delivered
+     */
+    public synchronized boolean isComplete() {
+        return lastStage == OrderStage.DELIVERED;
+    }
+
+    /**
+     * Gets the next stage to run
+     * @return the next stage, or null if the order is complete
+     */
+    public synchronized OrderStage nextStage() {
+        return OrderStage.firstPending(lastStage);
+    }
+
+    public synchronized void addConsignmentId(String consignmentId) {
+        if (consignmentId != null && !consignmentIds.contains(consignmentId)) {
+            consignmentIds.add(consignmentId);
+        }
+    }
+
+    /**
+     * Marks a stage as completed at the given time
+     * @param stage the completed stage
+     * @param timestamp epoch millis of completion
+     */
+    public synchronized void completeStage(OrderStage stage, long timestamp) {
+        stageTimestamps.put(stage, timestamp);
+        if (lastStage == null || stage.compareTo(lastStage) > 0) {
+            lastStage = stage;
+        }
+        lastError = null;
+    }
+
+    public synchronized void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "OrderProgress{" +
+                "orderReference='" + orderReference + '\'' +
+                ", consignmentIds=" + consignmentIds +
+                ", lastStage=" + lastStage +
+                (lastError != null ? ", lastError='" + lastError + '\'' : "") +
+                '}';
+    }
+}
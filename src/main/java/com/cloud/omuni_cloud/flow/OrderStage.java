@@ -0,0 +1,33 @@
+package com.cloud.omuni_cloud.flow;
+
+/**
+ * Stages an order goes through in the Mulesoft order flow, in execution order.
+ */
+public enum OrderStage {
+    CREATED,
+    BOOKING_VERIFIED,
+    ASSIGNED,
+    CHANDLER_ACCEPTED,
+    INVOICED,
+    SALE_VERIFIED,
+    SHIPPED,
+    DELIVERED;
+
+    /**
+     * Gets the stage that follows this one
+     * @return the next stage, or null if this is the last stage
+     */
+    public OrderStage next() {
+        OrderStage[] stages = values();
+        return ordinal() + 1 < stages.length ? stages[ordinal() + 1] : null;
+    }
+
+    /**
+     * Gets the first stage to run for an order whose last completed stage is given
+     * @param lastCompleted the last completed stage, or null if nothing has run yet
+     * @return the stage to run next, or null if the order is complete
+     */
+    public static OrderStage firstPending(OrderStage lastCompleted) {
+        return lastCompleted == null ? CREATED : lastCompleted.next();
+    }
+}
@@ -0,0 +1,25 @@
+package com.cloud.omuni_cloud.flow;
+
+/**
+ * Receives a callback each time OrderLifecycle finishes running a stage.
+ * Callbacks run on the thread driving the order, so implementations must be thread-safe and quick.
+ */
+public interface OrderStageListener {
+
+    /**
+     * Called after a stage completed
+     * @param progress The order's progress, already updated with the completed stage
+     * @param stage The completed stage
+     * @param durationMillis How long the stage took, including polling
+     */
+    void onStageCompleted(OrderProgress progress, OrderStage stage, long durationMillis);
+
+    /**
+     * Called after a stage failed or timed out
+     * @param progress The order's progress
+     * @param stage The failed stage
+     * @param durationMillis How long the stage ran before failing
+     * @param error The failure
+     */
+    void onStageFailed(OrderProgress progress, OrderStage stage, long durationMillis, Exception error);
+}
@@ -0,0 +1,213 @@
+package com.cloud.omuni_cloud.flow;
+
+import com.cloud.omuni_cloud.dbutil.DatabaseConnection;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Periodically samples JVM heap, live thread count and the Hikari pools opened through
+ * DatabaseConnection, and flags trends that look like slow leaks during long soak runs.
+ * A leak is suspected when a resource keeps growing (positive least-squares slope) across
+ * the whole sample history rather than just spiking.
+ */
+public class ResourceSampler {
+    private static final double BYTES_PER_MB = 1024.0 * 1024.0;
+
+    private final MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+    private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    private final Deque<Sample> history = new ArrayDeque<>();
+    private final int historySize;
+    private final int minSamplesForTrend;
+    private double heapLeakMbPerMinute = 5.0;
+    private double threadLeakPerMinute = 1.0;
+
+    /**
+     * Creates a sampler
+     * @param historySize Number of samples kept for trend detection
+     */
+    public ResourceSampler(int historySize) {
+        this.historySize = historySize;
+        this.minSamplesForTrend = Math.max(5, historySize / 2);
+    }
+
+    // Builder-style setters for fluent configuration
+    public ResourceSampler withHeapLeakThreshold(double mbPerMinute) {
+        this.heapLeakMbPerMinute = mbPerMinute;
+        return this;
+    }
+
+    public ResourceSampler withThreadLeakThreshold(double threadsPerMinute) {
+        this.threadLeakPerMinute = threadsPerMinute;
+        return this;
+    }
+
+    /**
+     * Takes a sample and adds it to the history
+     * @return the new sample
+     */
+    public synchronized Sample sample() {
+        Sample sample = new Sample(
+            System.currentTimeMillis(),
+            memoryBean.getHeapMemoryUsage().getUsed(),
+            memoryBean.getHeapMemoryUsage().getCommitted(),
+            threadBean.getThreadCount());
+
+        for (Map.Entry<String, HikariPoolMXBean> entry : DatabaseConnection.getInstance().getPoolMXBeans().entrySet()) {
+            HikariPoolMXBean pool = entry.getValue();
+            sample.pools.add(new PoolSample(entry.getKey(), pool.getActiveConnections(), pool.getIdleConnections(),
+                pool.getTotalConnections(), pool.getThreadsAwaitingConnection()));
+        }
+
+        history.addLast(sample);
+        while (history.size() > historySize) {
+            history.removeFirst();
+        }
+        return sample;
+    }
+
+    /**
+     * Checks the sample history for resources that keep growing
+     * @return human readable warnings, empty if nothing looks like a leak
+     */
+    public synchronized List<String> detectLeaks() {
+        List<String> warnings = new ArrayList<>();
+        if (history.size() < minSamplesForTrend) {
+            return warnings;
+        }
+
+        double heapSlope = slopePerMinute(s -> s.heapUsedBytes / BYTES_PER_MB);
+        if (heapSlope > heapLeakMbPerMinute) {
+            warnings.add(String.format("Heap used growing at %.1f MB/min over last %d samples", heapSlope, history.size()));
+        }
+
+        double threadSlope = slopePerMinute(s -> s.threadCount);
+        if (threadSlope > threadLeakPerMinute) {
+            warnings.add(String.format("Thread count growing at %.1f/min over last %d samples", threadSlope, history.size()));
+        }
+
+        // A pool whose borrowed connections never drop back, or that always has waiters, is leaking connections
+        for (PoolSample latest : history.getLast().pools) {
+            boolean alwaysWaiting = true;
+            int minActive = Integer.MAX_VALUE;
+            for (Sample sample : history) {
+                PoolSample pool = sample.pool(latest.name);
+                if (pool == null) {
+                    alwaysWaiting = false;
+                    minActive = 0;
+                    break;
+                }
+                alwaysWaiting &= pool.threadsAwaiting > 0;
+                minActive = Math.min(minActive, pool.active);
+            }
+            if (alwaysWaiting) {
+                warnings.add("Pool " + latest.name + " had threads waiting for a connection in every sample");
+            } else if (minActive > 0 && minActive >= latest.total) {
+                warnings.add("Pool " + latest.name + " never had an idle connection; connections may not be returned");
+            }
+        }
+        return warnings;
+    }
+
+    /**
+     * Least-squares slope of a sampled value, per minute
+     */
+    private double slopePerMinute(ToDoubleFunction<Sample> value) {
+        long t0 = history.getFirst().timestamp;
+        double n = history.size(), sumX = 0, sumY = 0, sumXY = 0, sumXX = 0;
+        for (Sample sample : history) {
+            double x = (sample.timestamp - t0) / 60000.0;
+            double y = value.applyAsDouble(sample);
+            sumX += x;
+            sumY += y;
+            sumXY += x * y;
+            sumXX += x * x;
+        }
+        double denominator = n * sumXX - sumX * sumX;
+        return denominator == 0 ? 0 : (n * sumXY - sumX * sumY) / denominator;
+    }
+
+    /**
+     * One resource sample
+     */
+    public static class Sample {
+        private final long timestamp;
+        private final long heapUsedBytes;
+        private final long heapCommittedBytes;
+        private final int threadCount;
+        private final List<PoolSample> pools = new ArrayList<>();
+
+        Sample(long timestamp, long heapUsedBytes, long heapCommittedBytes, int threadCount) {
+            this.timestamp = timestamp;
+            this.heapUsedBytes = heapUsedBytes;
+            this.heapCommittedBytes = heapCommittedBytes;
+            this.threadCount = threadCount;
+        }
+
+        // Getters
+        public long getTimestamp() { return timestamp; }
+        public long getHeapUsedBytes() { return heapUsedBytes; }
+        public long getHeapCommittedBytes() { return heapCommittedBytes; }
+        public int getThreadCount() { return threadCount; }
+        public List<PoolSample> getPools() { return pools; }
+
+        PoolSample pool(String name) {
+            for (PoolSample pool : pools) {
+                if (pool.name.equals(name)) {
+                    return pool;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(String.format("heap=%.1f/%.1fMB threads=%d",
+                heapUsedBytes / BYTES_PER_MB, heapCommittedBytes / BYTES_PER_MB, threadCount));
+            for (PoolSample pool : pools) {
+                sb.append(' ').append(pool);
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Connection counts of one Hikari pool at sample time
+     */
+    public static class PoolSample {
+        private final String name;
+        private final int active;
+        private final int idle;
+        private final int total;
+        private final int threadsAwaiting;
+
+        PoolSample(String name, int active, int idle, int total, int threadsAwaiting) {
+            this.name = name;
+            this.active = active;
+            this.idle = idle;
+            this.total = total;
+            this.threadsAwaiting = threadsAwaiting;
+        }
+
+        // Getters
+        public String getName() { return name; }
+        public int getActive() { return active; }
+        public int getIdle() { return idle; }
+        public int getTotal() { return total; }
+        public int getThreadsAwaiting() { return threadsAwaiting; }
+
+        @Override
+        public String toString() {
+            return "pool[" + name + " active=" + active + " idle=" + idle + " total=" + total +
+                   " waiting=" + threadsAwaiting + "]";
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.cloud.omuni_cloud.flow;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Order lifecycle statistics over a sliding time window: throughput, error rate and per-stage
+ * latency percentiles. Events are kept in one bucket per second, and buckets older than the
+ * window are reused, so memory stays bounded however long a soak run lasts.
+ */
+public class RollingStats implements OrderStageListener {
+    private static final double[] PERCENTILES = {50, 95, 99};
+
+    private final Bucket[] buckets;
+    private final int windowSeconds;
+
+    /**
+     * Creates rolling statistics over the given window
+     * @param windowSeconds Length of the sliding window in seconds
+     */
+    public RollingStats(int windowSeconds) {
+        if (windowSeconds <= 0) {
+            throw new IllegalArgumentException("Window must be at least one second");
+        }
+        this.windowSeconds = windowSeconds;
+        this.buckets = new Bucket[windowSeconds];
+        for (int i = 0; i < windowSeconds; i++) {
+            buckets[i] = new Bucket();
+        }
+    }
+
+    public int getWindowSeconds() { return windowSeconds; }
+
+    /**
+     * Records that a new order was started
+     */
+    public synchronized void recordStarted() {
+        bucket(System.currentTimeMillis()).started++;
+    }
+
+    @Override
+    public synchronized void onStageCompleted(OrderProgress progress, OrderStage stage, long durationMillis) {
+        long now = System.currentTimeMillis();
+        Bucket bucket = bucket(now);
+        bucket.latencies(stage).add(durationMillis);
+        if (stage == OrderStage.DELIVERED) {
+            bucket.completed++;
+        }
+    }
+
+    @Override
+    public synchronized void onStageFailed(OrderProgress progress, OrderStage stage, long durationMillis, Exception error) {
+        Bucket bucket = bucket(System.currentTimeMillis());
+        bucket.failed++;
+        bucket.failuresByStage.merge(stage, 1, Integer::sum);
+    }
+
+    /**
+     * Takes a snapshot of the statistics over the current window
+     * @return the window snapshot
+     */
+    public synchronized Snapshot snapshot() {
+        long nowSecond = System.currentTimeMillis() / 1000;
+        long oldest = nowSecond - windowSeconds + 1;
+
+        Snapshot snapshot = new Snapshot(windowSeconds);
+        Map<OrderStage, LongList> merged = new EnumMap<>(OrderStage.class);
+        for (Bucket bucket : buckets) {
+            if (bucket.second < oldest || bucket.second > nowSecond) {
+                continue;
+            }
+            snapshot.started += bucket.started;
+            snapshot.completed += bucket.completed;
+            snapshot.failed += bucket.failed;
+            bucket.failuresByStage.forEach((stage, count) -> snapshot.failuresByStage.merge(stage, count, Integer::sum));
+            // A reused bucket keeps the emptied lists of stages it no longer has samples of
+            bucket.stageLatencies.forEach((stage, values) -> {
+                if (!values.isEmpty()) {
+                    merged.computeIfAbsent(stage, s -> new LongList()).addAll(values);
+                }
+            });
+        }
+
+        merged.forEach((stage, values) -> {
+            long[] sorted = values.toSortedArray();
+            long[] result = new long[PERCENTILES.length];
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                result[i] = percentile(sorted, PERCENTILES[i]);
+            }
+            snapshot.stagePercentiles.put(stage, result);
+            snapshot.stageCounts.put(stage, sorted.length);
+        });
+        return snapshot;
+    }
+
+    /**
+     * Gets the nearest-rank percentile of a sorted array
+     * @param sorted Values in ascending order
+     * @param percentile Percentile between 0 and 100
+     * @return the percentile value, or 0 for an empty array
+     */
+    public static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    private Bucket bucket(long timeMillis) {
+        long second = timeMillis / 1000;
+        Bucket bucket = buckets[(int) (second % windowSeconds)];
+        if (bucket.second != second) {
+            bucket.reset(second);
+        }
+        return bucket;
+    }
+
+    /**
+     * Statistics of one window
+     */
+    public static class Snapshot {
+        private final int windowSeconds;
+        private long started;
+        private long completed;
+        private long failed;
+        private final Map<OrderStage, Integer> failuresByStage = new EnumMap<>(OrderStage.class);
+        private final Map<OrderStage, long[]> stagePercentiles = new EnumMap<>(OrderStage.class);
+        private final Map<OrderStage, Integer> stageCounts = new EnumMap<>(OrderStage.class);
+
+        Snapshot(int windowSeconds) {
+            this.windowSeconds = windowSeconds;
+        }
+
+        // Getters
+        public long getStarted() { return started; }
+        public long getCompleted() { return completed; }
+        public long getFailed() { return failed; }
+        public Map<OrderStage, Integer> getFailuresByStage() { return failuresByStage; }
+
+        /**
+         * Gets the completed orders per second over the window
+         */
+        public double getThroughput() {
+            return (double) completed / windowSeconds;
+        }
+
+        /**
+         * Gets the fraction of finished orders that failed in the window
+         */
+        public double getErrorRate() {
+            long finished = completed + failed;
+            return finished == 0 ? 0.0 : (double) failed / finished;
+        }
+
+        /**
+         * Gets a latency percentile for a stage
+         * @param stage The stage
+         * @param percentile One of 50, 95 or 99
+         * @return the latency in milliseconds, or -1 if the stage has no samples in the window
+         */
+        public long getStagePercentile(OrderStage stage, double percentile) {
+            long[] values = stagePercentiles.get(stage);
+            if (values == null) {
+                return -1;
+            }
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                if (PERCENTILES[i] == percentile) {
+                    return values[i];
+                }
+            }
+            throw new IllegalArgumentException("Unsupported percentile: " + percentile);
+        }
+
+        /**
+         * Formats the snapshot as report lines
+         */
+        public String format() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("window=%ds started=%d completed=%d failed=%d throughput=%.2f/s errorRate=%.2f%%%n",
+                windowSeconds, started, completed, failed, getThroughput(), getErrorRate() * 100));
+            for (Map.Entry<OrderStage, long[]> entry : stagePercentiles.entrySet()) {
+                long[] p = entry.getValue();
+                sb.append(String.format("  %-18s n=%-6d p50=%dms p95=%dms p99=%dms%n",
+                    entry.getKey(), stageCounts.get(entry.getKey()), p[0], p[1], p[2]));
+            }
+            if (!failuresByStage.isEmpty()) {
+                sb.append("  failures by stage: ").append(failuresByStage).append(System.lineSeparator());
+            }
+            return sb.toString();
+        }
+    }
+
+    private static class Bucket {
+        private long second = -1;
+        private long started;
+        private long completed;
+        private long failed;
+        private final Map<OrderStage, Integer> failuresByStage = new EnumMap<>(OrderStage.class);
+        private final Map<OrderStage, LongList> stageLatencies = new EnumMap<>(OrderStage.class);
+
+        void reset(long second) {
+            this.second = second;
+            started = 0;
+            completed = 0;
+            failed = 0;
+            failuresByStage.clear();
+            stageLatencies.values().forEach(LongList::clear);
+        }
+
+        LongList latencies(OrderStage stage) {
+            return stageLatencies.computeIfAbsent(stage, s -> new LongList());
+        }
+    }
+
+    /**
+     * Growable list of primitive longs, so latency samples aren't boxed
+     */
+    static class LongList {
+        private long[] values = new long[16];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(LongList other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.values[i]);
+            }
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        long[] toSortedArray() {
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+}
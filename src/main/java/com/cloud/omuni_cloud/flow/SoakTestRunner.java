@@ -0,0 +1,173 @@
+package com.cloud.omuni_cloud.flow;
+
+import com.cloud.omuni_cloud.dbutil.PoolMetrics;
+import com.cloud.omuni_cloud.dbutil.SlowQueryLog;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps starting order lifecycles at a target rate for a long period and periodically reports
+ * rolling throughput, error rate, per-stage latency percentiles and JVM/connection-pool samples.
+ * Arrivals are open-loop: a new order starts on schedule whether or not earlier ones finished,
+ * up to a cap on in-flight orders; arrivals over the cap are counted as dropped.
+ *
+ * <p>Configured through system properties:
+ * <ul>
+ *   <li>{@code soak.rate} - orders started per second (default 0.2)</li>
+ *   <li>{@code soak.durationMinutes} - how long to keep generating orders (default 60)</li>
+ *   <li>{@code soak.maxInFlight} - cap on concurrently running orders (default 200)</li>
+ *   <li>{@code soak.reportSeconds} - report and sample interval (default 60)</li>
+ *   <li>{@code soak.windowSeconds} - rolling statistics window (default 300)</li>
+ *   <li>{@code soak.checkpoint} - optional checkpoint file for completed stages</li>
+ *   <li>{@code flow.fcId}, {@code flow.ean}, {@code flow.db} - FC, EAN and database config name</li>
+ *   <li>{@code flow.dbTimeoutSeconds} - deadline of each verification query (default 30)</li>
+ * </ul>
+ * The authorization token is read from the AUTH_TOKEN environment variable.
+ */
+public class SoakTestRunner {
+    private final OrderLifecycle lifecycle;
+    private final double ratePerSecond;
+    private final long durationMillis;
+    private final int maxInFlight;
+    private final int reportSeconds;
+    private final RollingStats stats;
+    private final ResourceSampler sampler = new ResourceSampler(30);
+    private final String reportFile = SoakTestRunner.class.getSimpleName() + "_" +
+            ZonedDateTime.now(ZoneId.of("Asia/Kolkata"))
+                    .format(DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss"));
+    private final LoadProfileDriver driver;
+
+    public SoakTestRunner(OrderLifecycle lifecycle, double ratePerSecond, long duration, TimeUnit unit,
+                          int maxInFlight, int reportSeconds, int windowSeconds) {
+        if (ratePerSecond <= 0) {
+            throw new IllegalArgumentException("Rate must be positive");
+        }
+        this.lifecycle = lifecycle;
+        this.ratePerSecond = ratePerSecond;
+        this.durationMillis = unit.toMillis(duration);
+        this.maxInFlight = maxInFlight;
+        this.reportSeconds = reportSeconds;
+        this.stats = new RollingStats(windowSeconds);
+        lifecycle.withListener(stats);
+        this.driver = new LoadProfileDriver(lifecycle, LoadProfile.constant(ratePerSecond, duration, unit), maxInFlight)
+            .withOnStarted(stats::recordStarted);
+    }
+
+    public SoakTestRunner withCheckpoint(OrderFlowCheckpoint checkpoint) {
+        driver.withCheckpoint(checkpoint);
+        return this;
+    }
+
+    public static void main(String[] args) throws Exception {
+        double rate = Double.parseDouble(System.getProperty("soak.rate", "0.2"));
+        long minutes = Long.getLong("soak.durationMinutes", 60L);
+        int maxInFlight = Integer.getInteger("soak.maxInFlight", 200);
+        int reportSeconds = Integer.getInteger("soak.reportSeconds", 60);
+        int windowSeconds = Integer.getInteger("soak.windowSeconds", 300);
+        String checkpointPath = System.getProperty("soak.checkpoint");
+
+        try (FlowEnvironment environment = FlowEnvironment.open()) {
+            OrderLifecycle lifecycle = environment.getLifecycle();
+            SoakTestRunner runner = new SoakTestRunner(lifecycle, rate, minutes, TimeUnit.MINUTES,
+                maxInFlight, reportSeconds, windowSeconds);
+            if (checkpointPath != null) {
+                try (OrderFlowCheckpoint checkpoint = new OrderFlowCheckpoint(Paths.get(checkpointPath))) {
+                    runner.withCheckpoint(checkpoint).run();
+                }
+            } else {
+                runner.run();
+            }
+        }
+    }
+
+    /**
+     * Runs the soak test until the configured duration has passed and in-flight orders drained
+     * @throws InterruptedException if interrupted while running
+     */
+    public void run() throws InterruptedException {
+        log(String.format("[INFO] Soak test starting: rate=%.2f/s duration=%ds maxInFlight=%d window=%ds",
+            ratePerSecond, durationMillis / 1000, maxInFlight, stats.getWindowSeconds()));
+        topUpInventory();
+
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            scheduler.scheduleAtFixedRate(this::report, reportSeconds, reportSeconds, TimeUnit.SECONDS);
+            driver.run();
+        } finally {
+            scheduler.shutdownNow();
+        }
+
+        report();
+        log(String.format("[INFO] Soak test finished: started=%d delivered=%d failed=%d dropped=%d",
+            driver.getStarted(), driver.getDelivered(), driver.getFailed(), driver.getDropped()));
+    }
+
+    private void report() {
+        try {
+            RollingStats.Snapshot snapshot = stats.snapshot();
+            ResourceSampler.Sample sample = sampler.sample();
+            log("[STATS] " + snapshot.format().trim());
+            log(String.format("[STATS] totals started=%d delivered=%d failed=%d dropped=%d",
+                driver.getStarted(), driver.getDelivered(), driver.getFailed(), driver.getDropped()));
+            log("[RESOURCES] " + sample);
+            for (PoolMetrics.Snapshot pool : PoolMetrics.snapshot()) {
+                log("[POOLS] " + pool);
+            }
+            List<SlowQueryLog.QueryStats> queries = SlowQueryLog.snapshot();
+            for (SlowQueryLog.QueryStats query : queries.subList(0, Math.min(5, queries.size()))) {
+                log("[QUERIES] " + query);
+            }
+            List<String> leaks = sampler.detectLeaks();
+            for (String warning : leaks) {
+                log("[WARNING] Possible leak: " + warning);
+            }
+            topUpInventory();
+        } catch (RuntimeException e) {
+            // Never let a reporting failure cancel the periodic task
+            log("[ERROR] Soak report failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Keeps enough free stock for the orders expected until the next report, with headroom
+     */
+    private void topUpInventory() {
+        int expectedOrders = (int) Math.ceil(ratePerSecond * reportSeconds * 2);
+        int required = Math.max(1, expectedOrders) * lifecycle.getQuantity();
+        try {
+            lifecycle.getInventory().ensureAvailable(lifecycle.getFcId(), lifecycle.getEan(),
+                required, Math.max(1500, required * 2));
+        } catch (Exception e) {
+            // Nothing was written; the next report interval tries again
+            log("[ERROR] Inventory top-up skipped: " + e.getMessage());
+        }
+    }
+
+    private void log(String message) {
+        System.out.println(message);
+        try (PrintWriter out = new PrintWriter(new FileWriter(reportFile, true))) {
+            out.println(message);
+        } catch (IOException e) {
+            System.out.println("[FATAL] Could not write to report file: " + e.getMessage());
+        }
+    }
+
+    public Path getReportFile() {
+        return Paths.get(reportFile);
+    }
+
+    public LoadTimeline getTimeline() {
+        return driver.getTimeline();
+    }
+}
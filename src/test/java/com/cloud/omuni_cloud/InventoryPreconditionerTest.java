@@ -0,0 +1,42 @@
+package com.cloud.omuni_cloud;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for finding the FC/EAN entry in an inventory read response.
+ */
+public class InventoryPreconditionerTest {
+    private static final String FC_ID = "FC1";
+    private static final String EAN = "8901";
+
+    @Test
+    void testFindEntryRequiresBothFields() {
+        // Entries that do not name the FC and EAN are never taken for the requested SKU
+        String response = "{\"data\":[{\"quantity\":99},{\"ean\":\"8901\",\"quantity\":98}," +
+            "{\"fcId\":\"FC1\",\"quantity\":97},{\"fcId\":\"FC1\",\"ean\":\"8901\",\"quantity\":12,\"reserveQty\":3}]}";
+
+        JSONObject entry = InventoryPreconditioner.findEntry(response, FC_ID, EAN);
+        assertNotNull(entry);
+        assertEquals(12, entry.getInt("quantity"));
+        assertEquals(3, entry.getInt("reserveQty"));
+
+        assertNull(InventoryPreconditioner.findEntry("{\"data\":[{\"quantity\":99}]}", FC_ID, EAN));
+        assertNull(InventoryPreconditioner.findEntry("{\"data\":[]}", FC_ID, EAN));
+    }
+
+    @Test
+    void testFindEntryRejectsUndocumentedShapes() {
+        // Only {"data": [...]} is documented; anything else must not be guessed at
+        assertThrows(IllegalStateException.class, () -> InventoryPreconditioner.findEntry(
+            "[{\"fcId\":\"FC1\",\"ean\":\"8901\",\"quantity\":20}]", FC_ID, EAN));
+        assertThrows(IllegalStateException.class, () -> InventoryPreconditioner.findEntry(
+            "{\"data\":{\"fcId\":\"FC1\",\"ean\":\"8901\",\"quantity\":7}}", FC_ID, EAN));
+        assertThrows(IllegalStateException.class, () -> InventoryPreconditioner.findEntry(
+            "{\"message\":\"not found\"}", FC_ID, EAN));
+        assertThrows(IllegalStateException.class, () -> InventoryPreconditioner.findEntry(
+            "Service unavailable", FC_ID, EAN));
+    }
+}
@@ -190,7 +190,10 @@ public class DatabaseTestConfig {
     @Bean(destroyMethod = "closeAllConnections")
     @Primary
     public DatabaseConnection databaseConnection() {
-        return DatabaseConnection.getInstance();
+        DatabaseConnection connection = DatabaseConnection.getInstance();
+        // Open the pool and SSH tunnel the tests use in the background while the context starts
+        connection.bootstrap("nickfury");
+        return connection;
     }
     
     @Bean
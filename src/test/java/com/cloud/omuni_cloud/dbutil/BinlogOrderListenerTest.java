@@ -0,0 +1,156 @@
+package com.cloud.omuni_cloud.dbutil;
+
+import com.cloud.omuni_cloud.dbutil.config.DatabaseConfig;
+import com.cloud.omuni_cloud.dbutil.config.DbConnectionConfig;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.*;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for BinlogOrderListener using TestContainers.
+ * These tests require Docker to be running.
+ */
+@Testcontainers
+public class BinlogOrderListenerTest {
+    private static final String CONFIG_NAME = "binlog_test";
+    private static final String TEST_DB = "testdb";
+    private static final String TEST_USER = "testuser";
+    private static final String TEST_PASSWORD = "testpass";
+
+    @Container
+    private static final MySQLContainer<?> mysqlContainer = new MySQLContainer<>("mysql:8.0")
+            .withDatabaseName(TEST_DB)
+            .withUsername(TEST_USER)
+            .withPassword(TEST_PASSWORD)
+            .waitingFor(Wait.forListeningPort());
+
+    private static DatabaseManager dbManager;
+    private static BinlogOrderListener listener;
+    private static final List<OrderChangeEvent> changes = new CopyOnWriteArrayList<>();
+
+    @BeforeAll
+    static void setup() throws SQLException {
+        mysqlContainer.start();
+        grantReplication();
+
+        DatabaseConfig.addDatabaseConfig(CONFIG_NAME, new DbConnectionConfig(
+                mysqlContainer.getHost(),
+                String.valueOf(mysqlContainer.getMappedPort(3306)),
+                TEST_DB,
+                TEST_USER,
+                TEST_PASSWORD
+        ));
+        dbManager = new DatabaseManager(CONFIG_NAME);
+        dbManager.executeUpdate(
+            "CREATE TABLE store_orders (" +
+            "id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+            "orderId VARCHAR(32) NOT NULL, " +
+            "status VARCHAR(20)" +
+            ")"
+        );
+        dbManager.executeUpdate(
+            "CREATE TABLE sale_orders (" +
+            "id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+            "total DECIMAL(10,2), " +
+            "orderNo VARCHAR(32) NOT NULL, " +
+            "status VARCHAR(20)" +
+            ")"
+        );
+
+        listener = new BinlogOrderListener(CONFIG_NAME)
+            .watch("store_orders", "orderId")
+            .watch("sale_orders", "orderNo")
+            .addListener(changes::add)
+            .start(30, TimeUnit.SECONDS);
+    }
+
+    @AfterAll
+    static void teardown() throws SQLException {
+        if (listener != null) {
+            listener.close();
+        }
+        DatabaseConnection.getInstance().close(CONFIG_NAME);
+        if (mysqlContainer != null) {
+            mysqlContainer.stop();
+        }
+    }
+
+    // The binlog client needs replication privileges and an authentication plugin it can use without SSL
+    private static void grantReplication() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(mysqlContainer.getJdbcUrl(), "root", TEST_PASSWORD);
+             Statement stmt = connection.createStatement()) {
+            stmt.execute("ALTER USER '" + TEST_USER + "'@'%' IDENTIFIED WITH mysql_native_password BY '" + TEST_PASSWORD + "'");
+            stmt.execute("GRANT REPLICATION SLAVE, REPLICATION CLIENT ON *.* TO '" + TEST_USER + "'@'%'");
+        }
+    }
+
+    @Test
+    void testInsertCompletesWait() throws Exception {
+        CompletableFuture<OrderVerification> booking = listener.watcher("store_orders").await("OS_BINLOG_1");
+        dbManager.executeUpdate("INSERT INTO store_orders (orderId, status) VALUES (?, ?)", "OS_BINLOG_1", "BOOKED");
+
+        OrderVerification verification = booking.get(10, TimeUnit.SECONDS);
+        assertEquals("OS_BINLOG_1", verification.getOrderId());
+        assertEquals("BOOKED", verification.getStatus());
+        assertTrue(verification.getId() > 0);
+    }
+
+    @Test
+    void testUpdatesArePublishedAndTablesAreKeptApart() throws Exception {
+        dbManager.executeUpdate("INSERT INTO sale_orders (total, orderNo, status) VALUES (?, ?, ?)",
+            12.50, "OS_BINLOG_2", "CREATED");
+        dbManager.executeUpdate("UPDATE sale_orders SET status = ? WHERE orderNo = ?", "INVOICED", "OS_BINLOG_2");
+
+        OrderVerification sale = listener.watcher("sale_orders").await("OS_BINLOG_2").get(10, TimeUnit.SECONDS);
+        assertEquals("OS_BINLOG_2", sale.getOrderId());
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (changes.stream().noneMatch(c -> c.getType() == OrderChangeEvent.Type.UPDATE
+                && "OS_BINLOG_2".equals(c.getOrderId())) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        OrderChangeEvent update = changes.stream()
+            .filter(c -> c.getType() == OrderChangeEvent.Type.UPDATE && "OS_BINLOG_2".equals(c.getOrderId()))
+            .findFirst().orElseThrow(() -> new AssertionError("No update event for OS_BINLOG_2"));
+        assertEquals("INVOICED", update.getStatus());
+        assertEquals("sale_orders", update.getTableName());
+
+        // A sale row must not complete a booking wait for the same order
+        assertFalse(listener.watcher("store_orders").await("OS_BINLOG_2").isDone());
+        listener.watcher("store_orders").cancel("OS_BINLOG_2");
+    }
+
+    @Test
+    void testListenerCanBeStartedAgainAfterClose() throws Exception {
+        BinlogOrderListener restarted = new BinlogOrderListener(CONFIG_NAME)
+            .withServerId(65_001)
+            .watch("store_orders", "orderId");
+        try {
+            restarted.start(30, TimeUnit.SECONDS);
+            restarted.close();
+            assertFalse(restarted.isConnected());
+
+            restarted.start(30, TimeUnit.SECONDS);
+            CompletableFuture<OrderVerification> booking = restarted.watcher("store_orders").await("OS_BINLOG_3");
+            dbManager.executeUpdate("INSERT INTO store_orders (orderId, status) VALUES (?, ?)", "OS_BINLOG_3", "BOOKED");
+            assertEquals("BOOKED", booking.get(10, TimeUnit.SECONDS).getStatus());
+        } finally {
+            restarted.close();
+        }
+    }
+
+    @Test
+    void testUnwatchedTableIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> listener.watcher("returns"));
+    }
+}
@@ -12,6 +12,9 @@ import org.testcontainers.junit.jupiter.Testcontainers;
 import java.sql.*;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -198,4 +201,54 @@ public class DatabaseConnectionTest {
             dbManager.close();
         }
     }
+
+    @Test
+    void testBootstrapCreatesPoolsInBackground() throws Exception {
+        String port = String.valueOf(mysqlContainer.getMappedPort(3306));
+        DatabaseConfig.addDatabaseConfig("bootstrap_ok",
+                new DbConnectionConfig(mysqlContainer.getHost(), port, TEST_DB, TEST_USER, TEST_PASSWORD));
+        // Nothing listens on port 1
+        DatabaseConfig.addDatabaseConfig("bootstrap_down",
+                new DbConnectionConfig(mysqlContainer.getHost(), "1", TEST_DB, TEST_USER, TEST_PASSWORD));
+        DatabaseConnection dbConnection = DatabaseConnection.getInstance();
+
+        try {
+            CompletableFuture<Void> ok = dbConnection.bootstrap("bootstrap_ok");
+            CompletableFuture<Void> down = dbConnection.bootstrap("bootstrap_down");
+
+            ok.get(60, TimeUnit.SECONDS);
+            assertTrue(dbConnection.getDataSourcesForTesting().containsKey("bootstrap_ok"));
+            assertTrue(dbConnection.getBootstrapMillis().containsKey("bootstrap_ok"), "Bootstrap time should be recorded");
+            assertTrue(dbConnection.bootstrap("bootstrap_ok").isDone(), "A ready pool should not be bootstrapped again");
+            try (Connection conn = dbConnection.getConnection("bootstrap_ok")) {
+                assertTrue(conn.isValid(1));
+            }
+
+            assertThrows(ExecutionException.class, () -> down.get(60, TimeUnit.SECONDS));
+            assertFalse(dbConnection.getDataSourcesForTesting().containsKey("bootstrap_down"));
+            assertNotSame(down, dbConnection.bootstrap("bootstrap_down"), "A failed bootstrap should be retried");
+        } finally {
+            dbConnection.close("bootstrap_ok");
+            dbConnection.close("bootstrap_down");
+        }
+    }
+
+    @Test
+    void testPoolStartingWhenClosedIsNotLeaked() throws Exception {
+        String port = String.valueOf(mysqlContainer.getMappedPort(3306));
+        DatabaseConfig.addDatabaseConfig("bootstrap_closed",
+                new DbConnectionConfig(mysqlContainer.getHost(), port, TEST_DB, TEST_USER, TEST_PASSWORD));
+        DatabaseConnection dbConnection = DatabaseConnection.getInstance();
+
+        CompletableFuture<Void> startup = dbConnection.bootstrap("bootstrap_closed");
+        dbConnection.close("bootstrap_closed");
+        try {
+            startup.get(60, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            // Closed before it finished starting
+        }
+
+        // Whether it finished before or after close(), the pool must not be left behind
+        assertFalse(dbConnection.getDataSourcesForTesting().containsKey("bootstrap_closed"));
+    }
 }
@@ -0,0 +1,132 @@
+package com.cloud.omuni_cloud.dbutil;
+
+import com.cloud.omuni_cloud.dbutil.config.DatabaseConfig;
+import com.cloud.omuni_cloud.dbutil.config.DbConnectionConfig;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for DatabaseCopier using TestContainers. Source and target are two
+ * configurations pointing at different tables of the same container.
+ * These tests require Docker to be running.
+ */
+@Testcontainers
+public class DatabaseCopierTest {
+    private static final String SOURCE = "copy_source";
+    private static final String TARGET = "copy_target";
+    private static final int ROW_COUNT = 20_000;
+
+    @Container
+    private static final MySQLContainer<?> mysqlContainer = new MySQLContainer<>("mysql:8.0")
+            .withDatabaseName("testdb")
+            .withUsername("testuser")
+            .withPassword("testpass")
+            .waitingFor(Wait.forListeningPort());
+
+    @BeforeAll
+    static void setup() throws SQLException {
+        mysqlContainer.start();
+        for (String name : new String[]{SOURCE, TARGET}) {
+            DatabaseConfig.addDatabaseConfig(name, new DbConnectionConfig(
+                    mysqlContainer.getHost(),
+                    String.valueOf(mysqlContainer.getMappedPort(3306)),
+                    "testdb",
+                    "testuser",
+                    "testpass"
+            ));
+        }
+
+        try (DatabaseManager dbManager = new DatabaseManager(SOURCE)) {
+            dbManager.executeUpdate("CREATE TABLE orders_src (id BIGINT PRIMARY KEY, orderNo VARCHAR(32), status VARCHAR(20))");
+            dbManager.executeUpdate("CREATE TABLE orders_dst (id BIGINT PRIMARY KEY, orderNo VARCHAR(32), status VARCHAR(20))");
+            List<Object[]> rows = new ArrayList<>();
+            for (long id = 1; id <= ROW_COUNT; id++) {
+                rows.add(new Object[]{id, "OS" + id, id % 10 == 0 ? "CANCELLED" : "CREATED"});
+            }
+            dbManager.executeBatch("INSERT INTO orders_src (id, orderNo, status) VALUES (?, ?, ?)", rows, 1000);
+        }
+    }
+
+    @AfterAll
+    static void teardown() throws SQLException {
+        DatabaseConnection.getInstance().close(SOURCE);
+        DatabaseConnection.getInstance().close(TARGET);
+        if (mysqlContainer != null) {
+            mysqlContainer.stop();
+        }
+    }
+
+    @BeforeEach
+    void clearTarget() throws SQLException {
+        try (DatabaseManager dbManager = new DatabaseManager(TARGET)) {
+            dbManager.executeUpdate("DELETE FROM orders_dst");
+        }
+    }
+
+    private static long count(String sql) throws SQLException {
+        try (DatabaseManager dbManager = new DatabaseManager(TARGET)) {
+            return ((Number) dbManager.getSingleValue(sql)).longValue();
+        }
+    }
+
+    @Test
+    void testCopiesAllRowsThroughSmallQueue() throws Exception {
+        DatabaseCopier.CopyResult result = new DatabaseCopier(SOURCE, TARGET)
+            .withBatchSize(500)
+            .withQueueCapacity(100)
+            .copyTable("orders_src", "orders_dst", "id", "id", "orderNo", "status");
+
+        assertEquals(ROW_COUNT, result.getRowsRead());
+        assertEquals(ROW_COUNT, result.getRowsWritten());
+        assertEquals(Long.valueOf(ROW_COUNT), Long.valueOf(((Number) result.getLastKey()).longValue()));
+        assertEquals(ROW_COUNT, count("SELECT COUNT(*) FROM orders_dst"));
+    }
+
+    @Test
+    void testResumesAfterHighestCopiedKey() throws Exception {
+        new DatabaseCopier(SOURCE, TARGET)
+            .withWhere("id <= ?", 7_500)
+            .copyTable("orders_src", "orders_dst", "id", "id", "orderNo", "status");
+        assertEquals(7_500, count("SELECT COUNT(*) FROM orders_dst"));
+
+        DatabaseCopier.CopyResult resumed = new DatabaseCopier(SOURCE, TARGET)
+            .withResume(true)
+            .copyTable("orders_src", "orders_dst", "id", "id", "orderNo", "status");
+
+        assertEquals(ROW_COUNT - 7_500, resumed.getRowsWritten());
+        assertEquals(ROW_COUNT, count("SELECT COUNT(*) FROM orders_dst"));
+    }
+
+    @Test
+    void testUpsertAndFilter() throws Exception {
+        try (DatabaseManager dbManager = new DatabaseManager(TARGET)) {
+            dbManager.executeUpdate("INSERT INTO orders_dst (id, orderNo, status) VALUES (10, 'OS10', 'STALE')");
+        }
+
+        new DatabaseCopier(SOURCE, TARGET)
+            .withUpsert(true)
+            .withWhere("status = ?", "CANCELLED")
+            .copyTable("orders_src", "orders_dst", "id", "id", "orderNo", "status");
+
+        assertEquals(ROW_COUNT / 10, count("SELECT COUNT(*) FROM orders_dst"));
+        assertEquals(0, count("SELECT COUNT(*) FROM orders_dst WHERE status = 'STALE'"));
+    }
+
+    @Test
+    void testRejectsInvalidIdentifiers() {
+        DatabaseCopier copier = new DatabaseCopier(SOURCE, TARGET);
+        assertThrows(IllegalArgumentException.class,
+            () -> copier.copyTable("orders_src; DROP TABLE x", "orders_dst", "id", "id"));
+        assertThrows(IllegalArgumentException.class,
+            () -> copier.copyTable("orders_src", "orders_dst", "id", "orderNo"));
+    }
+}
@@ -0,0 +1,595 @@
+package com.cloud.omuni_cloud.dbutil;
+
+import com.cloud.omuni_cloud.dbutil.config.DatabaseConfig;
+import com.cloud.omuni_cloud.dbutil.config.DbConnectionConfig;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for DatabaseManager query and update helpers using TestContainers.
+ * These tests require Docker to be running.
+ */
+@Testcontainers
+public class DatabaseManagerTest {
+    private static final String CONFIG_NAME = "manager_test";
+    private static final String TEST_DB = "testdb";
+    private static final String TEST_USER = "testuser";
+    private static final String TEST_PASSWORD = "testpass";
+    private static final int ORDER_COUNT = 5000;
+
+    @TempDir
+    Path tempDir;
+
+    @Container
+    private static final MySQLContainer<?> mysqlContainer = new MySQLContainer<>("mysql:8.0")
+            .withDatabaseName(TEST_DB)
+            .withUsername(TEST_USER)
+            .withPassword(TEST_PASSWORD)
+            .waitingFor(Wait.forListeningPort());
+
+    @BeforeAll
+    static void setup() {
+        mysqlContainer.start();
+        initializeTestData();
+
+        DatabaseConfig.addDatabaseConfig(CONFIG_NAME, new DbConnectionConfig(
+                mysqlContainer.getHost(),
+                String.valueOf(mysqlContainer.getMappedPort(3306)),
+                TEST_DB,
+                TEST_USER,
+                TEST_PASSWORD
+        ));
+    }
+
+    @AfterAll
+    static void teardown() throws SQLException {
+        DatabaseConnection.getInstance().close(CONFIG_NAME);
+        if (mysqlContainer != null) {
+            mysqlContainer.stop();
+        }
+    }
+
+    private static void initializeTestData() {
+        try (Connection connection = DriverManager.getConnection(
+                mysqlContainer.getJdbcUrl(),
+                mysqlContainer.getUsername(),
+                mysqlContainer.getPassword());
+             Statement stmt = connection.createStatement()) {
+
+            // Same shape as the columns the order verification reads from nickfury
+            stmt.execute(
+                "CREATE TABLE IF NOT EXISTS sale_orders (" +
+                "id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                "orderNo VARCHAR(32) NOT NULL, " +
+                "status VARCHAR(20), " +
+                "total DECIMAL(10,2)" +
+                ")"
+            );
+
+            // Double the table until it holds ORDER_COUNT rows
+            stmt.execute("INSERT INTO sale_orders (orderNo, status, total) VALUES ('OS0', 'CREATED', 10.00)");
+            while (true) {
+                try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM sale_orders")) {
+                    rs.next();
+                    int count = rs.getInt(1);
+                    if (count >= ORDER_COUNT) {
+                        break;
+                    }
+                    stmt.execute("INSERT INTO sale_orders (orderNo, status, total) " +
+                        "SELECT CONCAT('OS', id + " + count + "), 'CREATED', total FROM sale_orders " +
+                        "ORDER BY id LIMIT " + (ORDER_COUNT - count));
+                }
+            }
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to initialize test data", e);
+        }
+    }
+
+    private static int activeConnections() {
+        HikariPoolMXBean pool = DatabaseConnection.getInstance().getPoolMXBeans().get(CONFIG_NAME);
+        return pool == null ? 0 : pool.getActiveConnections();
+    }
+
+    @Test
+    void testExecuteQueryReturnsConnectionToPool() throws SQLException {
+        try (DatabaseManager dbManager = new DatabaseManager(CONFIG_NAME)) {
+            for (int i = 0; i < 50; i++) {
+                List<?> rows = dbManager.executeQuery("SELECT * FROM sale_orders WHERE orderNo = ?", "OS0");
+                assertEquals(1, rows.size());
+            }
+            assertEquals(0, activeConnections(), "executeQuery must not keep pool connections");
+        }
+    }
+
+    @Test
+    void testForEachRowStreamsEveryRow() throws SQLException {
+        AtomicLong idSum = new AtomicLong();
+        try (DatabaseManager dbManager = new DatabaseManager(CONFIG_NAME)) {
+            long count = dbManager.forEachRow("SELECT id, orderNo FROM sale_orders WHERE status = ?",
+                row -> idSum.addAndGet(((Number) row.get("ID")).longValue()), "CREATED");
+
+            assertEquals(ORDER_COUNT, count);
+            Object expectedSum = dbManager.getSingleValue("SELECT SUM(id) FROM sale_orders");
+            assertEquals(((Number) expectedSum).longValue(), idSum.get());
+            assertEquals(0, activeConnections());
+        }
+    }
+
+    @Test
+    void testStreamIsLazyAndReleasesConnectionOnClose() throws SQLException {
+        try (DatabaseManager dbManager = new DatabaseManager(CONFIG_NAME)) {
+            try (Stream<Row> rows = dbManager.stream("SELECT id, orderNo FROM sale_orders ORDER BY id")) {
+                assertEquals(1, activeConnections(), "Stream should hold its connection while open");
+                Row first = rows.findFirst().orElseThrow();
+                assertEquals("OS0", first.getString("orderNo"));
+                assertEquals(List.of("id", "orderNo"), first.getColumns().getLabels());
+            }
+            assertEquals(0, activeConnections(), "Closing the stream should return the connection");
+        }
+    }
+
+    @Test
+    void testQueryReturnsCompactTable() throws SQLException {
+        try (DatabaseManager dbManager = new DatabaseManager(CONFIG_NAME)) {
+            ResultTable table = dbManager.query("SELECT id, orderNo, total FROM sale_orders ORDER BY id LIMIT 10");
+
+            assertEquals(10, table.size());
+            assertEquals("OS0", table.getString(0, "orderNo"));
+            assertTrue(table.getLong(9, "id") > table.getLong(0, "id"));
+            assertEquals(10.0, table.getDouble(0, "total"), 0.001);
+            assertEquals(table.getObject(0, "id"), dbManager.executeQuery(
+                "SELECT id, orderNo, total FROM sale_orders ORDER BY id LIMIT 1").get(0).get("id"));
+        }
+    }
+
+    @Test
+    void testExecuteBatchCommitsEveryChunk() throws SQLException {
+        try (DatabaseManager dbManager = new DatabaseManager(CONFIG_NAME)) {
+            dbManager.executeUpdate("CREATE TABLE IF NOT EXISTS batch_orders (" +
+                "orderNo VARCHAR(32) PRIMARY KEY, status VARCHAR(20))");
+            dbManager.executeUpdate("DELETE FROM batch_orders");
+
+            List<Object[]> rows = new ArrayList<>();
+            for (int i = 0; i < 1234; i++) {
+                rows.add(new Object[]{"BATCH" + i, "CREATED"});
+            }
+            dbManager.executeBatch("INSERT INTO batch_orders (orderNo, status) VALUES (?, ?)", rows, 500);
+            assertEquals(1234L, ((Number) dbManager.getSingleValue("SELECT COUNT(*) FROM batch_orders")).longValue());
+
+            // A duplicate key in the third chunk leaves the first two chunks committed
+            List<Object[]> withDuplicate = new ArrayList<>();
+            for (int i = 0; i < 1100; i++) {
+                withDuplicate.add(new Object[]{"RETRY" + i, "CREATED"});
+            }
+            withDuplicate.add(new Object[]{"RETRY0", "CREATED"});
+            assertThrows(SQLException.class, () -> dbManager.executeBatch(
+                "INSERT INTO batch_orders (orderNo, status) VALUES (?, ?)", withDuplicate, 500));
+            assertEquals(1000L, ((Number) dbManager.getSingleValue(
+                "SELECT COUNT(*) FROM batch_orders WHERE orderNo LIKE 'RETRY%'")).longValue());
+            assertEquals(0, activeConnections());
+        }
+    }
+
+    @Test
+    void testVerifyOrdersInBulk() throws SQLException {
+        try (DatabaseManager dbManager = new DatabaseManager(CONFIG_NAME)) {
+            List<String> orderIds = new ArrayList<>();
+            for (int i = 0; i < 1200; i++) {
+                orderIds.add("OS" + i);
+            }
+            orderIds.add("MISSING-1");
+            orderIds.add("OS0");
+
+            Map<String, OrderVerification> results = dbManager.verifyOrders("sale_orders", "orderNo", orderIds);
+
+            assertEquals(1201, results.size());
+            assertEquals("OS0", results.keySet().iterator().next());
+            assertTrue(results.get("OS0").isFound());
+            assertEquals("CREATED", results.get("OS0").getStatus());
+            assertFalse(results.get("MISSING-1").isFound());
+            assertTrue(results.get("OS0").getId() > 0);
+        }
+    }
+
+    @Test
+    void testVerifyOrdersMatchesLikeTheCollation() throws SQLException {
+        try (DatabaseManager dbManager = new DatabaseManager(CONFIG_NAME)) {
+            // The column's collation ignores case, so "os7" finds the row stored as "OS7"
+            Map<String, OrderVerification> results =
+                dbManager.verifyOrders("sale_orders", "orderNo", Arrays.asList("os7", "OS7"));
+
+            assertEquals(Arrays.asList("os7", "OS7"), new ArrayList<>(results.keySet()));
+            assertTrue(results.get("os7").isFound());
+            assertEquals("os7", results.get("os7").getOrderId());
+            assertEquals(results.get("OS7").getId(), results.get("os7").getId());
+        }
+    }
+
+    @Test
+    void testPoolMetricsAreRecorded() throws SQLException {
+        try (DatabaseManager dbManager = new DatabaseManager(CONFIG_NAME)) {
+            for (int i = 0; i < 20; i++) {
+                dbManager.getSingleValue("SELECT COUNT(*) FROM sale_orders WHERE orderNo = ?", "OS" + i);
+            }
+        }
+
+        PoolMetrics.Snapshot pool = PoolMetrics.snapshot().stream()
+            .filter(s -> s.getConfigName().equals(CONFIG_NAME))
+            .findFirst()
+            .orElseThrow(() -> new AssertionError("No metrics for " + CONFIG_NAME));
+        assertTrue(pool.getAcquireCount() >= 20, "Every borrow should be timed");
+        assertFalse(Double.isNaN(pool.getAcquireP95Millis()), "Acquire percentiles should be published");
+        assertEquals(0, pool.getActive());
+        assertEquals(0, pool.getTimeouts());
+        assertTrue(PoolMetrics.format().contains("pool[" + CONFIG_NAME + " "));
+    }
+
+    @Test
+    void testQueryAllReturnsPartialResults() throws SQLException {
+        String port = String.valueOf(mysqlContainer.getMappedPort(3306));
+        // Same database as root, whose copy of the query sleeps past the timeout
+        DatabaseConfig.addDatabaseConfig("manager_test_slow",
+                new DbConnectionConfig(mysqlContainer.getHost(), port, TEST_DB, "root", TEST_PASSWORD));
+        // Nothing listens on port 1
+        DatabaseConfig.addDatabaseConfig("manager_test_down",
+                new DbConnectionConfig(mysqlContainer.getHost(), "1", TEST_DB, TEST_USER, TEST_PASSWORD));
+
+        try {
+            FanOutResult result = DatabaseManager.queryAll(
+                List.of(CONFIG_NAME, "manager_test_slow", "manager_test_down"), 3, TimeUnit.SECONDS,
+                "SELECT orderNo, SLEEP(IF(CURRENT_USER() LIKE 'root@%', 30, 0)) AS slept " +
+                "FROM sale_orders WHERE orderNo = ?", "OS0");
+
+            assertFalse(result.isComplete());
+            assertEquals(1, result.getResult(CONFIG_NAME).size());
+            assertTrue(result.isTimedOut("manager_test_slow"), "Slow source should time out");
+            assertTrue(result.getFailures().containsKey("manager_test_down"));
+            assertFalse(result.isTimedOut("manager_test_down"), "Refused connection should fail, not time out");
+
+            List<Map<String, Object>> rows = result.asMaps();
+            assertEquals(1, rows.size());
+            assertEquals(CONFIG_NAME, rows.get(0).get(FanOutResult.SOURCE_COLUMN));
+            assertEquals("OS0", rows.get(0).get("orderNo"));
+            assertTrue(result.format().contains("manager_test_slow: TIMED OUT"));
+        } finally {
+            DatabaseConnection.getInstance().close("manager_test_slow");
+            DatabaseConnection.getInstance().close("manager_test_down");
+        }
+    }
+
+    @Test
+    void testStatementsAreTimedByFingerprint() throws SQLException {
+        try (DatabaseManager dbManager = new DatabaseManager(CONFIG_NAME)) {
+            for (int i = 0; i < 3; i++) {
+                dbManager.query("SELECT status FROM sale_orders WHERE orderNo = 'OS" + i + "'");
+            }
+            assertThrows(SQLException.class, () -> dbManager.query("SELECT nope FROM sale_orders WHERE id = 7"));
+        }
+
+        SlowQueryLog.QueryStats lookup = findStats("SELECT status FROM sale_orders WHERE orderNo = ?");
+        assertTrue(lookup.getCount() >= 3, "Literal variants should share one fingerprint");
+        assertTrue(lookup.getMeanMillis() > 0);
+        assertTrue(findStats("SELECT nope FROM sale_orders WHERE id = ?").getFailures() >= 1);
+    }
+
+    private static SlowQueryLog.QueryStats findStats(String fingerprint) {
+        return SlowQueryLog.snapshot().stream()
+            .filter(s -> s.getConfigName().equals(CONFIG_NAME) && s.getFingerprint().equals(fingerprint))
+            .findFirst()
+            .orElseThrow(() -> new AssertionError("No statistics for " + fingerprint));
+    }
+
+    @Test
+    void testDeadlineCancelsStatementStuckOnLock() throws SQLException {
+        try (Connection locker = DriverManager.getConnection(
+                mysqlContainer.getJdbcUrl(), mysqlContainer.getUsername(), mysqlContainer.getPassword());
+             DatabaseManager dbManager = new DatabaseManager(CONFIG_NAME)) {
+            locker.setAutoCommit(false);
+            try (Statement stmt = locker.createStatement()) {
+                stmt.executeQuery("SELECT * FROM sale_orders WHERE orderNo = 'OS0' FOR UPDATE").close();
+            }
+
+            long start = System.nanoTime();
+            SQLTimeoutException e = assertThrows(SQLTimeoutException.class, () -> dbManager.executeUpdate(
+                1, TimeUnit.SECONDS, "UPDATE sale_orders SET status = 'LOCKED' WHERE orderNo = ?", "OS0"));
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue(e.getMessage().contains("deadline of 1000 ms exceeded"), e.getMessage());
+            assertTrue(elapsedMillis < 5000, "Statement should be cancelled near its deadline, took " + elapsedMillis + " ms");
+            assertEquals(0, activeConnections(), "Cancelled statement must return its connection");
+
+            locker.rollback();
+        }
+    }
+
+    @Test
+    void testStatementTimeoutAppliesToQueries() throws SQLException {
+        try (DatabaseManager dbManager = new DatabaseManager(CONFIG_NAME).withStatementTimeout(500, TimeUnit.MILLISECONDS)) {
+            assertEquals(1, dbManager.executeQuery("SELECT * FROM sale_orders WHERE orderNo = ?", "OS0").size());
+            assertThrows(SQLTimeoutException.class, () -> dbManager.query("SELECT SLEEP(5)"));
+            assertEquals(0, activeConnections());
+
+            // An explicit timeout overrides the manager's
+            assertEquals(1, dbManager.query(5, TimeUnit.SECONDS, "SELECT SLEEP(1)").size());
+        }
+    }
+
+    @Test
+    void testKeysetScanReadsEveryRowInKeyOrder() throws SQLException {
+        try (DatabaseManager dbManager = new DatabaseManager(CONFIG_NAME);
+             KeysetScan scan = dbManager.scan("sale_orders", "id", "id", "orderNo").withPageSize(700)) {
+            long previous = 0;
+            long count = 0;
+            while (scan.hasNext()) {
+                long id = ((Number) scan.next().get("id")).longValue();
+                assertTrue(id > previous, "Rows should arrive in key order");
+                previous = id;
+                count++;
+            }
+            assertEquals(ORDER_COUNT, count);
+            assertEquals(ORDER_COUNT, scan.getRowsRead());
+            assertEquals((ORDER_COUNT + 699) / 700, scan.getPagesRead());
+            assertEquals(previous, ((Number) scan.getLastKey()).longValue());
+            assertEquals(0, activeConnections(), "No connection should be held after the scan");
+        }
+    }
+
+    @Test
+    void testKeysetScanPagesFromStartKeyWithCondition() throws SQLException {
+        try (DatabaseManager dbManager = new DatabaseManager(CONFIG_NAME)) {
+            long startAfter = ((Number) dbManager.getSingleValue("SELECT id FROM sale_orders ORDER BY id LIMIT 1 OFFSET 999")).longValue();
+            try (KeysetScan scan = dbManager.scan("sale_orders", "id")
+                    .withPageSize(1000)
+                    .withStartAfter(startAfter)
+                    .withWhere("id % 2 = ?", 0)) {
+                long rows = 0;
+                for (ResultTable page = scan.nextPage(); page != null; page = scan.nextPage()) {
+                    assertTrue(page.size() <= 1000);
+                    assertTrue(page.getLong(0, "id") > startAfter);
+                    assertEquals(0, page.getLong(page.size() - 1, "id") % 2);
+                    rows += page.size();
+                }
+                Object expected = dbManager.getSingleValue("SELECT COUNT(*) FROM sale_orders WHERE id > ? AND id % 2 = 0", startAfter);
+                assertEquals(((Number) expected).longValue(), rows);
+            }
+        }
+        assertThrows(IllegalArgumentException.class,
+            () -> new DatabaseManager(CONFIG_NAME).scan("sale_orders", "id", "orderNo"));
+    }
+
+    @Test
+    void testExportToCsvStreamsRows() throws SQLException, IOException {
+        Path plain = tempDir.resolve("orders.csv");
+        Path gzipped = tempDir.resolve("orders.csv.gz");
+        try (DatabaseManager dbManager = new DatabaseManager(CONFIG_NAME)) {
+            String query = "SELECT id, orderNo, status, total FROM sale_orders WHERE status = ? ORDER BY id";
+            assertEquals(ORDER_COUNT, dbManager.exportToCsv(query, new Object[]{"CREATED"}, plain));
+            assertEquals(ORDER_COUNT, dbManager.exportToCsv(query, new Object[]{"CREATED"}, gzipped));
+            assertEquals(0, activeConnections(), "Export must return its connection");
+
+            List<String> lines = Files.readAllLines(plain, StandardCharsets.UTF_8);
+            assertEquals(ORDER_COUNT + 1, lines.size());
+            assertEquals("id,orderNo,status,total", lines.get(0));
+            assertTrue(lines.get(1).matches("\\d+,OS0,CREATED,10\\.00"), lines.get(1));
+
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(Files.newInputStream(gzipped)), StandardCharsets.UTF_8))) {
+                assertEquals(lines, reader.lines().collect(Collectors.toList()));
+            }
+
+            Path quoted = tempDir.resolve("quoted.csv");
+            dbManager.exportToCsv("SELECT 'a,b' AS text, 'say \"hi\"' AS speech, NULL AS nothing", null, quoted);
+            assertEquals("\"a,b\",\"say \"\"hi\"\"\",", Files.readAllLines(quoted, StandardCharsets.UTF_8).get(1));
+
+            Path failed = tempDir.resolve("failed.csv");
+            assertThrows(SQLException.class, () -> dbManager.exportToCsv("SELECT nope FROM sale_orders", null, failed));
+            assertFalse(Files.exists(failed), "A failed export should not leave a partial file");
+
+            // An earlier export survives a failed one, and no temporary file is left behind
+            assertThrows(SQLException.class, () -> dbManager.exportToCsv("SELECT nope FROM sale_orders", null, quoted));
+            assertEquals("\"a,b\",\"say \"\"hi\"\"\",", Files.readAllLines(quoted, StandardCharsets.UTF_8).get(1));
+            try (Stream<Path> files = Files.list(tempDir)) {
+                assertEquals(0, files.filter(f -> f.toString().endsWith(".part")).count());
+            }
+        }
+    }
+
+    @Test
+    void testBundleReturnsEveryResultFromOneExecute() throws SQLException {
+        try (DatabaseManager dbManager = new DatabaseManager(CONFIG_NAME)) {
+            Map<String, ResultTable> results = dbManager.bundle()
+                .add("order", "SELECT id, status FROM sale_orders WHERE orderNo = ?", "OS0")
+                .add("missing", "SELECT id, status FROM sale_orders WHERE orderNo = ?;", "MISSING-1")
+                .add("count", "SELECT COUNT(*) AS orders FROM sale_orders WHERE status = ? AND total > ?", "CREATED", 0)
+                .execute();
+
+            assertEquals(List.of("order", "missing", "count"), new ArrayList<>(results.keySet()));
+            assertEquals("CREATED", results.get("order").getString(0, "status"));
+            assertTrue(results.get("missing").isEmpty());
+            assertEquals(ORDER_COUNT, results.get("count").getLong(0, "orders"));
+            assertEquals(0, activeConnections());
+
+            SQLException e = assertThrows(SQLException.class, () -> dbManager.bundle()
+                .add("order", "SELECT id FROM sale_orders WHERE orderNo = ?", "OS0")
+                .add("broken", "SELECT nope FROM sale_orders")
+                .execute());
+            assertTrue(e.getMessage().startsWith("Error executing bundle [order, broken]: "), e.getMessage());
+            assertThrows(IllegalArgumentException.class,
+                () -> dbManager.bundle().add("twice", "SELECT 1").add("twice", "SELECT 2"));
+        }
+    }
+
+    @Test
+    void testInTransactionCommitsOnceOnOneConnection() throws SQLException {
+        try (DatabaseManager dbManager = new DatabaseManager(CONFIG_NAME)) {
+            dbManager.executeUpdate("CREATE TABLE IF NOT EXISTS tx_orders (" +
+                "orderNo VARCHAR(32) PRIMARY KEY, status VARCHAR(20))");
+            dbManager.executeUpdate("DELETE FROM tx_orders");
+
+            List<Object[]> rows = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                rows.add(new Object[]{"TX" + i, "CREATED"});
+            }
+            Transaction[] seen = new Transaction[1];
+            long connectionId = dbManager.inTransaction(Connection.TRANSACTION_READ_COMMITTED, tx -> {
+                seen[0] = tx;
+                Object id = tx.getSingleValue("SELECT CONNECTION_ID()");
+                tx.executeBatch("INSERT INTO tx_orders (orderNo, status) VALUES (?, ?)", rows);
+                tx.executeUpdate("UPDATE tx_orders SET status = ? WHERE orderNo = ?", "PACKED", "TX0");
+                // Uncommitted writes are visible inside the transaction only
+                assertEquals(100L, ((Number) tx.getSingleValue("SELECT COUNT(*) FROM tx_orders")).longValue());
+                assertEquals(0L, ((Number) dbManager.getSingleValue("SELECT COUNT(*) FROM tx_orders")).longValue());
+                assertEquals(id, tx.getSingleValue("SELECT CONNECTION_ID()"));
+                return ((Number) id).longValue();
+            });
+            assertTrue(connectionId > 0);
+            assertEquals(5, seen[0].getStatementCount());
+            assertEquals(1, seen[0].getAttempt());
+            assertEquals(100L, ((Number) dbManager.getSingleValue("SELECT COUNT(*) FROM tx_orders")).longValue());
+            assertThrows(SQLException.class, () -> seen[0].executeUpdate("DELETE FROM tx_orders"));
+
+            // A failing statement rolls back everything before it
+            SQLException e = assertThrows(SQLException.class, () -> dbManager.inTransaction(tx -> {
+                tx.executeUpdate("DELETE FROM tx_orders");
+                return tx.executeUpdate("INSERT INTO tx_orders (orderNo, status) VALUES (?, ?)", null, "CREATED");
+            }));
+            assertTrue(e.getMessage().startsWith("Error executing transaction after 2 statements: "), e.getMessage());
+            assertEquals(100L, ((Number) dbManager.getSingleValue("SELECT COUNT(*) FROM tx_orders")).longValue());
+            assertEquals(0, activeConnections());
+            assertTrue(SlowQueryLog.snapshot().stream()
+                .anyMatch(stats -> stats.getFingerprint().equals("TRANSACTION (5 statements)")));
+        }
+    }
+
+    @Test
+    void testInTransactionRetriesDeadlockVictim() throws Exception {
+        try (DatabaseManager dbManager = new DatabaseManager(CONFIG_NAME)) {
+            dbManager.executeUpdate("CREATE TABLE IF NOT EXISTS tx_locks (name VARCHAR(8) PRIMARY KEY, hits INT)");
+            dbManager.executeUpdate("DELETE FROM tx_locks");
+            dbManager.executeUpdate("INSERT INTO tx_locks (name, hits) VALUES ('a', 0), ('b', 0)");
+
+            // Each transaction locks one row, waits until the other holds its row, then takes the other's
+            CountDownLatch bothLocked = new CountDownLatch(2);
+            ExecutorService executor = Executors.newFixedThreadPool(2);
+            try {
+                List<Future<Integer>> attempts = new ArrayList<>();
+                for (String[] order : new String[][]{{"a", "b"}, {"b", "a"}}) {
+                    attempts.add(executor.submit(() -> dbManager.inTransaction(tx -> {
+                        tx.executeUpdate("UPDATE tx_locks SET hits = hits + 1 WHERE name = ?", order[0]);
+                        bothLocked.countDown();
+                        try {
+                            bothLocked.await(10, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            throw new SQLException(e);
+                        }
+                        tx.executeUpdate("UPDATE tx_locks SET hits = hits + 1 WHERE name = ?", order[1]);
+                        return tx.getAttempt();
+                    })));
+                }
+                int first = attempts.get(0).get(30, TimeUnit.SECONDS);
+                int second = attempts.get(1).get(30, TimeUnit.SECONDS);
+                assertEquals(3, first + second, "Exactly one transaction should be retried once");
+            } finally {
+                executor.shutdownNow();
+            }
+            // Each committed transaction counted once on each row
+            assertEquals(4L, ((Number) dbManager.getSingleValue("SELECT SUM(hits) FROM tx_locks")).longValue());
+            assertEquals(0, activeConnections());
+        }
+    }
+
+    @Test
+    void testOnlyDeadlocksAreRetried() {
+        SQLException deadlock = new SQLException("Deadlock found", "40001", 1213);
+        assertTrue(DatabaseManager.isDeadlock(new SQLException("Error executing update: ", deadlock)));
+        // A lock wait timeout carries the same SQLState but would only time out again
+        assertFalse(DatabaseManager.isDeadlock(new SQLException("Lock wait timeout exceeded", "40001", 1205)));
+    }
+
+    @Test
+    void testSnapshotDiffFindsChangedRows() throws SQLException {
+        try (DatabaseManager dbManager = new DatabaseManager(CONFIG_NAME)) {
+            dbManager.executeUpdate("DROP TABLE IF EXISTS snap_orders");
+            dbManager.executeUpdate("CREATE TABLE snap_orders (" +
+                "id BIGINT AUTO_INCREMENT PRIMARY KEY, orderNo VARCHAR(32), status VARCHAR(20))");
+            List<Object[]> rows = new ArrayList<>();
+            for (int i = 0; i < 3000; i++) {
+                rows.add(new Object[]{"SNAP" + i, "CREATED"});
+            }
+            dbManager.executeBatch("INSERT INTO snap_orders (orderNo, status) VALUES (?, ?)", rows, 1000);
+            // A case-insensitive key arrives in collation order, not Java's
+            dbManager.executeUpdate("DROP TABLE IF EXISTS snap_codes");
+            dbManager.executeUpdate("CREATE TABLE snap_codes (code VARCHAR(8) PRIMARY KEY, label VARCHAR(20)) " +
+                "COLLATE utf8mb4_0900_ai_ci");
+            dbManager.executeUpdate("INSERT INTO snap_codes VALUES ('a', 'one'), ('B', 'two'), ('c', 'three')");
+
+            Snapshotter snapshotter = dbManager.snapshotter()
+                .add("snap_orders", "id")
+                .add("snap_codes", "code")
+                .addRange("sale_orders", "id", 1, 101, "status");
+            DatabaseSnapshot before = snapshotter.capture();
+            assertEquals(3000, before.getRowCount("snap_orders"));
+            long saleRows = ((Number) dbManager.getSingleValue(
+                "SELECT COUNT(*) FROM sale_orders WHERE id >= 1 AND id < 101")).longValue();
+            assertEquals(saleRows, before.getRowCount("sale_orders"));
+            assertEquals(3003 + saleRows, before.getRowCount());
+
+            dbManager.inTransaction(tx -> {
+                tx.executeUpdate("UPDATE snap_orders SET status = 'PACKED' WHERE id IN (10, 20, 30)");
+                tx.executeUpdate("UPDATE snap_orders SET status = 'CREATED' WHERE id = 40");
+                tx.executeUpdate("UPDATE snap_orders SET orderNo = NULL WHERE id = 50");
+                tx.executeUpdate("DELETE FROM snap_orders WHERE id IN (1, 3000)");
+                tx.executeUpdate("INSERT INTO snap_orders (orderNo, status) VALUES ('NEW1', 'CREATED'), ('NEW2', 'CREATED')");
+                tx.executeUpdate("UPDATE snap_codes SET label = 'TWO' WHERE code = 'B'");
+                // Outside the range, or a column that is not compared
+                tx.executeUpdate("UPDATE sale_orders SET status = 'CREATED' WHERE id = 500");
+                return tx.executeUpdate("UPDATE sale_orders SET total = total + 1 WHERE id = 5");
+            });
+
+            SnapshotDiff diff = before.diff(snapshotter.capture());
+            SnapshotDiff.TableDiff orders = diff.getTable("snap_orders");
+            assertEquals(List.of(3001L, 3002L), orders.getInserted());
+            assertEquals(List.of(10L, 20L, 30L, 50L), orders.getUpdated());
+            assertEquals(List.of(1L, 3000L), orders.getDeleted());
+            assertEquals(2999, orders.getRowsAfter());
+            List<Row> insertedRows = orders.readInsertedRows();
+            assertEquals(List.of("NEW1", "NEW2"), List.of(insertedRows.get(0).getString("orderNo"),
+                insertedRows.get(1).getString("orderNo")));
+            assertNull(orders.readUpdatedRows().get(3).get("orderNo"));
+
+            assertEquals(List.of("B"), diff.getTable("snap_codes").getUpdated());
+            assertTrue(diff.getTable("sale_orders").isEmpty(), diff.format());
+            assertFalse(diff.isEmpty());
+            assertTrue(diff.format().contains("snap_orders: 2 inserted, 4 updated, 2 deleted"), diff.format());
+            assertEquals(0, activeConnections());
+        }
+    }
+}
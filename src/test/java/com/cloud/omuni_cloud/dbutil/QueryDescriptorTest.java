@@ -0,0 +1,87 @@
+package com.cloud.omuni_cloud.dbutil;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for query descriptor parameter counting and caching.
+ */
+public class QueryDescriptorTest {
+
+    @Test
+    void testCountsPlaceholdersOutsideLiteralsAndComments() {
+        assertEquals(1, QueryDescriptor.countParameters("SELECT * FROM nickfury.sale_orders WHERE orderNo = ? ORDER BY id DESC"));
+        assertEquals(2, QueryDescriptor.countParameters("SELECT 1 FROM t WHERE a = ? AND b = '?' AND c = ?"));
+        assertEquals(1, QueryDescriptor.countParameters("SELECT `we?ird` FROM t WHERE note = 'it''s ?' AND id = ?"));
+        assertEquals(1, QueryDescriptor.countParameters("SELECT \"\\\"?\" -- why?\nFROM t WHERE id = ?"));
+        assertEquals(0, QueryDescriptor.countParameters("SELECT 1 /* ? */ # trailing ?"));
+    }
+
+    @Test
+    void testCheckParametersFailsFast() throws SQLException {
+        QueryDescriptor descriptor = new QueryDescriptor("SELECT * FROM t WHERE a = ? AND b = ?");
+
+        descriptor.checkParameters("x", 1);
+        SQLException e = assertThrows(SQLException.class, () -> descriptor.checkParameters("x"));
+        assertTrue(e.getMessage().contains("expects 2 parameters but 1"));
+        assertThrows(SQLException.class, () -> descriptor.checkParameters((Object[]) null));
+        new QueryDescriptor("SELECT 1").checkParameters((Object[]) null);
+    }
+
+    @Test
+    void testDescriptorsAreCachedPerConfigAndSql() {
+        QueryDescriptor.clearCache();
+        long hits = QueryDescriptor.getHits();
+
+        QueryDescriptor first = QueryDescriptor.forQuery("nickfury", "SELECT * FROM nickfury.store_orders WHERE orderId = ?");
+        QueryDescriptor again = QueryDescriptor.forQuery("nickfury", "SELECT * FROM nickfury.store_orders WHERE orderId = ?");
+        QueryDescriptor otherConfig = QueryDescriptor.forQuery("chandler", "SELECT * FROM nickfury.store_orders WHERE orderId = ?");
+
+        assertSame(first, again);
+        assertNotSame(first, otherConfig);
+        assertEquals(hits + 1, QueryDescriptor.getHits());
+    }
+
+    @Test
+    void testColumnIndexIsRebuiltWhenColumnsChange() throws SQLException {
+        QueryDescriptor descriptor = new QueryDescriptor("SELECT * FROM t");
+        ColumnIndex first = descriptor.columnsOf(result(new String[]{"id", "status"}, Types.BIGINT, Types.VARCHAR));
+
+        assertSame(first, descriptor.columnsOf(result(new String[]{"id", "status"}, Types.BIGINT, Types.VARCHAR)));
+        // Same column count after a rename, then after a retype
+        ColumnIndex renamed = descriptor.columnsOf(result(new String[]{"id", "state"}, Types.BIGINT, Types.VARCHAR));
+        assertNotSame(first, renamed);
+        assertEquals(1, renamed.indexOf("state"));
+        ColumnIndex retyped = descriptor.columnsOf(result(new String[]{"id", "state"}, Types.BIGINT, Types.INTEGER));
+        assertNotSame(renamed, retyped);
+        assertEquals(Types.INTEGER, retyped.getSqlType(1));
+    }
+
+    private static ResultSet result(String[] labels, int... types) {
+        ResultSetMetaData metaData = (ResultSetMetaData) Proxy.newProxyInstance(QueryDescriptorTest.class.getClassLoader(),
+            new Class<?>[]{ResultSetMetaData.class}, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getColumnCount": return labels.length;
+                    case "getColumnLabel": return labels[(Integer) args[0] - 1];
+                    case "getColumnType": return types[(Integer) args[0] - 1];
+                    case "getColumnClassName": return types[(Integer) args[0] - 1] == Types.VARCHAR
+                        ? "java.lang.String" : "java.lang.Long";
+                    default: throw new UnsupportedOperationException(method.getName());
+                }
+            });
+        return (ResultSet) Proxy.newProxyInstance(QueryDescriptorTest.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+            (proxy, method, args) -> {
+                if (method.getName().equals("getMetaData")) {
+                    return metaData;
+                }
+                throw new UnsupportedOperationException(method.getName());
+            });
+    }
+}
@@ -0,0 +1,150 @@
+package com.cloud.omuni_cloud.dbutil;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the lookup result cache: hits, expiry, eviction and invalidation.
+ */
+public class QueryResultCacheTest {
+    private static final String SQL = "SELECT shopNo FROM nickfury.stores s JOIN nickfury.fcs f ON f.id = s.fcId WHERE f.code = ?";
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    void reset() {
+        QueryResultCache.clear();
+        QueryResultCache.setMaxEntries(10_000);
+    }
+
+    @AfterEach
+    void cleanup() {
+        QueryResultCache.clear();
+        QueryResultCache.setMaxEntries(10_000);
+    }
+
+    private Object lookup(String fcId, long ttlMillis) throws SQLException {
+        List<Object> params = Collections.singletonList(fcId);
+        return QueryResultCache.get("nickfury", SQL, params, QueryResultCache.tablesRead(SQL), ttlMillis,
+            () -> "shop-" + fcId + "-" + loads.incrementAndGet());
+    }
+
+    @Test
+    void testRepeatedLookupsAreServedFromCache() throws SQLException {
+        assertEquals("shop-Bata_3051-1", lookup("Bata_3051", 60_000));
+        assertEquals("shop-Bata_3051-1", lookup("Bata_3051", 60_000));
+        assertEquals("shop-Bata_1000-2", lookup("Bata_1000", 60_000));
+
+        assertEquals(2, loads.get());
+        assertEquals(1, QueryResultCache.getHits());
+        assertEquals(2, QueryResultCache.getMisses());
+        assertEquals(1.0 / 3, QueryResultCache.getHitRate(), 1e-9);
+        assertTrue(QueryResultCache.format().contains("hits=1 misses=2"));
+    }
+
+    @Test
+    void testNullResultsAreCachedAndFailuresAreNot() throws SQLException {
+        List<Object> params = Arrays.<Object>asList("missing");
+        for (int i = 0; i < 3; i++) {
+            assertNull(QueryResultCache.get("nickfury", "SELECT 1 FROM t WHERE a = ?", params, Collections.emptySet(),
+                60_000, () -> { loads.incrementAndGet(); return null; }));
+        }
+        assertEquals(1, loads.get());
+
+        for (int i = 0; i < 2; i++) {
+            assertThrows(SQLException.class, () -> QueryResultCache.get("nickfury", "SELECT 2", Collections.emptyList(),
+                Collections.emptySet(), 60_000, () -> { loads.incrementAndGet(); throw new SQLException("down"); }));
+        }
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void testEntriesExpireAfterTtl() throws Exception {
+        lookup("Bata_3051", 20);
+        Thread.sleep(50);
+        assertEquals("shop-Bata_3051-2", lookup("Bata_3051", 20));
+        assertEquals(1, QueryResultCache.getExpirations());
+    }
+
+    @Test
+    void testLeastRecentlyUsedIsEvicted() throws SQLException {
+        QueryResultCache.setMaxEntries(2);
+        lookup("A", 60_000);
+        lookup("B", 60_000);
+        lookup("A", 60_000);
+        lookup("C", 60_000);
+
+        assertEquals(2, QueryResultCache.size());
+        assertEquals(1, QueryResultCache.getEvictions());
+        lookup("A", 60_000);
+        assertEquals(3, loads.get(), "A was used recently and should have survived");
+    }
+
+    @Test
+    void testInvalidationByTableAndByWrites() throws SQLException {
+        lookup("Bata_3051", 60_000);
+        assertEquals(1, QueryResultCache.invalidateTable("nickfury.fcs"));
+        assertEquals(0, QueryResultCache.invalidateTable("sale_orders"));
+
+        lookup("Bata_3051", 60_000);
+        QueryResultCache.invalidateWrites("nickfury", "UPDATE `stores` SET shopNo = ? WHERE id = ?");
+        assertEquals(0, QueryResultCache.size());
+
+        lookup("Bata_3051", 60_000);
+        QueryResultCache.invalidateWrites("nickfury", "INSERT INTO nickfury.sale_orders (orderNo) VALUES (?)");
+        assertEquals(1, QueryResultCache.size(), "A write to another table should keep the entry");
+        QueryResultCache.invalidateWrites("bumblebee", "DELETE FROM stores WHERE id = 1");
+        assertEquals(1, QueryResultCache.size(), "A write on another configuration should keep the entry");
+        assertEquals(3, loads.get());
+
+        QueryResultCache.invalidateWrites("nickfury", "UPDATE stores s JOIN fcs f ON f.id = s.fcId SET s.shopNo = ?");
+        assertEquals(0, QueryResultCache.size(), "A write to an unknown table drops the configuration");
+    }
+
+    @Test
+    void testLookupRacingAWriteIsNotStored() throws SQLException {
+        QueryResultCache.get("nickfury", SQL, Collections.singletonList("X"), QueryResultCache.tablesRead(SQL), 60_000,
+            () -> {
+                QueryResultCache.invalidateWrites("nickfury", "DELETE FROM stores WHERE id = 1");
+                return "stale";
+            });
+        assertEquals(0, QueryResultCache.size());
+    }
+
+    @Test
+    void testLookupRacingUnrelatedWritesIsStored() throws SQLException {
+        // Writes elsewhere must not keep a busy cache from ever storing anything
+        QueryResultCache.get("nickfury", SQL, Collections.singletonList("X"), QueryResultCache.tablesRead(SQL), 60_000,
+            () -> {
+                QueryResultCache.invalidateWrites("nickfury", "INSERT INTO sale_orders (orderNo) VALUES (?)");
+                QueryResultCache.invalidateWrites("bumblebee", "DELETE FROM stores WHERE id = 1");
+                QueryResultCache.invalidateTable("sale_orders");
+                return "fresh";
+            });
+        assertEquals(1, QueryResultCache.size());
+
+        // Once nothing is in flight, the writes leave nothing behind to discard later lookups with
+        QueryResultCache.invalidateWrites("nickfury", "DELETE FROM stores WHERE id = 1");
+        lookup("Y", 60_000);
+        assertEquals(1, QueryResultCache.size());
+    }
+
+    @Test
+    void testTablesReadFromQuery() {
+        Set<String> expected = new HashSet<>(Arrays.asList("stores", "fcs"));
+        assertEquals(expected, QueryResultCache.tablesRead(SQL));
+        assertEquals(Collections.singleton("store_orders"),
+            QueryResultCache.tablesRead("SELECT id FROM `nickfury`.`store_orders` WHERE orderId = ?"));
+    }
+}
@@ -0,0 +1,149 @@
+package com.cloud.omuni_cloud.dbutil;
+
+import com.cloud.omuni_cloud.dbutil.config.DatabaseConfig;
+import com.cloud.omuni_cloud.dbutil.config.DbConnectionConfig;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.*;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for read-replica routing using TestContainers. The replicas point at the
+ * same server as the primary; replica pools are read-only, which tells the two apart.
+ * These tests require Docker to be running.
+ */
+@Testcontainers
+public class ReplicaRoutingTest {
+    private static final String CONFIG_NAME = "replica_test";
+    private static final String DOWN_CONFIG_NAME = "replica_down_test";
+    private static final String UNMONITORED_CONFIG_NAME = "replica_unmonitored_test";
+    private static final String TEST_DB = "testdb";
+    private static final String TEST_USER = "testuser";
+    private static final String TEST_PASSWORD = "testpass";
+    private static final String NO_LAG_USER = "nolaguser";
+
+    @Container
+    private static final MySQLContainer<?> mysqlContainer = new MySQLContainer<>("mysql:8.0")
+            .withDatabaseName(TEST_DB)
+            .withUsername(TEST_USER)
+            .withPassword(TEST_PASSWORD)
+            .waitingFor(Wait.forListeningPort());
+
+    @BeforeAll
+    static void setup() throws SQLException {
+        mysqlContainer.start();
+
+        // Reading replica lag needs REPLICATION CLIENT; a second user without it cannot read lag
+        try (Connection root = DriverManager.getConnection(mysqlContainer.getJdbcUrl(), "root", TEST_PASSWORD);
+             Statement stmt = root.createStatement()) {
+            stmt.execute("GRANT REPLICATION CLIENT ON *.* TO '" + TEST_USER + "'@'%'");
+            stmt.execute("CREATE USER '" + NO_LAG_USER + "'@'%' IDENTIFIED BY '" + TEST_PASSWORD + "'");
+            stmt.execute("GRANT SELECT ON " + TEST_DB + ".* TO '" + NO_LAG_USER + "'@'%'");
+        }
+
+        DatabaseConfig.addDatabaseConfig(CONFIG_NAME, server()
+                .withReplica(server())
+                .withReplica(server()));
+        // The second replica's port has nothing listening
+        DatabaseConfig.addDatabaseConfig(DOWN_CONFIG_NAME, server()
+                .withReplica(server())
+                .withReplica(new DbConnectionConfig(mysqlContainer.getHost(), "1", TEST_DB, TEST_USER, TEST_PASSWORD))
+                .withReadRouting(DbConnectionConfig.ReadRouting.LEAST_LOADED));
+        DatabaseConfig.addDatabaseConfig(UNMONITORED_CONFIG_NAME, server()
+                .withReplica(new DbConnectionConfig(mysqlContainer.getHost(),
+                        String.valueOf(mysqlContainer.getMappedPort(3306)), TEST_DB, NO_LAG_USER, TEST_PASSWORD)));
+
+        try (DatabaseManager dbManager = new DatabaseManager(CONFIG_NAME)) {
+            dbManager.executeUpdate("CREATE TABLE sale_orders (id BIGINT AUTO_INCREMENT PRIMARY KEY, orderNo VARCHAR(32))");
+        }
+    }
+
+    private static DbConnectionConfig server() {
+        return new DbConnectionConfig(
+                mysqlContainer.getHost(),
+                String.valueOf(mysqlContainer.getMappedPort(3306)),
+                TEST_DB,
+                TEST_USER,
+                TEST_PASSWORD
+        );
+    }
+
+    @AfterAll
+    static void teardown() throws SQLException {
+        DatabaseConnection.getInstance().close(CONFIG_NAME);
+        DatabaseConnection.getInstance().close(DOWN_CONFIG_NAME);
+        DatabaseConnection.getInstance().close(UNMONITORED_CONFIG_NAME);
+        if (mysqlContainer != null) {
+            mysqlContainer.stop();
+        }
+    }
+
+    private static PoolMetrics.Snapshot pool(String name) {
+        return PoolMetrics.snapshot().stream()
+            .filter(s -> s.getConfigName().equals(name))
+            .findFirst()
+            .orElseThrow(() -> new AssertionError("No pool " + name));
+    }
+
+    @Test
+    void testReadsAreSpreadOverReplicas() throws SQLException {
+        try (DatabaseManager dbManager = new DatabaseManager(CONFIG_NAME)) {
+            for (int i = 0; i < 10; i++) {
+                assertEquals(1L, ((Number) dbManager.getSingleValue("SELECT @@transaction_read_only")).longValue(),
+                    "Reads should run on a read-only replica connection");
+            }
+        }
+
+        long first = pool(CONFIG_NAME + ReplicaRouter.REPLICA_SUFFIX + 0).getAcquireCount();
+        long second = pool(CONFIG_NAME + ReplicaRouter.REPLICA_SUFFIX + 1).getAcquireCount();
+        assertTrue(first >= 5 && second >= 5, "Round-robin should use both replicas: " + first + "/" + second);
+
+        List<String> status = DatabaseConnection.getInstance().getReplicaStatus(CONFIG_NAME);
+        assertEquals(2, status.size());
+        assertTrue(status.get(0).endsWith(" in rotation"), status.get(0));
+    }
+
+    @Test
+    void testWritesAndTransactionsUsePrimary() throws SQLException {
+        try (DatabaseManager dbManager = new DatabaseManager(CONFIG_NAME)) {
+            assertEquals(1, dbManager.executeUpdate("INSERT INTO sale_orders (orderNo) VALUES (?)", "OS1"));
+
+            try (Connection conn = dbManager.getConnection();
+                 Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT @@transaction_read_only")) {
+                assertTrue(rs.next());
+                assertEquals(0, rs.getInt(1), "Connections for transactions should come from the primary");
+            }
+        }
+    }
+
+    @Test
+    void testUnreachableReplicaIsTakenOutOfRotation() throws SQLException {
+        try (DatabaseManager dbManager = new DatabaseManager(DOWN_CONFIG_NAME)) {
+            for (int i = 0; i < 5; i++) {
+                assertEquals(1L, ((Number) dbManager.getSingleValue("SELECT @@transaction_read_only")).longValue());
+            }
+        }
+
+        List<String> status = DatabaseConnection.getInstance().getReplicaStatus(DOWN_CONFIG_NAME);
+        assertTrue(status.get(0).endsWith(" in rotation"), status.get(0));
+        assertTrue(status.get(1).endsWith(" out of rotation"), status.get(1));
+    }
+
+    @Test
+    void testReplicaWithUnreadableLagIsTakenOutOfRotation() throws SQLException {
+        try (DatabaseManager dbManager = new DatabaseManager(UNMONITORED_CONFIG_NAME)) {
+            assertEquals(0L, ((Number) dbManager.getSingleValue("SELECT @@transaction_read_only")).longValue(),
+                "Reads should fall back to the primary");
+        }
+
+        List<String> status = DatabaseConnection.getInstance().getReplicaStatus(UNMONITORED_CONFIG_NAME);
+        assertTrue(status.get(0).endsWith(" out of rotation"), status.get(0));
+    }
+}
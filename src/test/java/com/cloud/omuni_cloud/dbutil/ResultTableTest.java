@@ -0,0 +1,122 @@
+package com.cloud.omuni_cloud.dbutil;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the compact result table, read from an in-memory result set.
+ */
+public class ResultTableTest {
+
+    private static final String[] LABELS = {"id", "orderNo", "quantity", "total", "weight"};
+    private static final String[] CLASSES = {"java.lang.Long", "java.lang.String", "java.lang.Integer",
+        "java.math.BigDecimal", "java.lang.Double"};
+    private static final int[] TYPES = {Types.BIGINT, Types.VARCHAR, Types.INTEGER, Types.DECIMAL, Types.DOUBLE};
+
+    /**
+     * Builds a forward-only result set over the given rows
+     */
+    private static ResultSet resultSet(String[] labels, String[] classes, int[] types, Object[]... rows) {
+        ResultSetMetaData metaData = (ResultSetMetaData) Proxy.newProxyInstance(
+            ResultSetMetaData.class.getClassLoader(), new Class<?>[]{ResultSetMetaData.class},
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getColumnCount": return labels.length;
+                    case "getColumnLabel": return labels[(Integer) args[0] - 1];
+                    case "getColumnType": return types[(Integer) args[0] - 1];
+                    case "getColumnClassName": return classes[(Integer) args[0] - 1];
+                    default: throw new UnsupportedOperationException(method.getName());
+                }
+            });
+        int[] cursor = {-1};
+        boolean[] wasNull = {false};
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getMetaData": return metaData;
+                    case "next": return ++cursor[0] < rows.length;
+                    case "wasNull": return wasNull[0];
+                    case "getObject":
+                    case "getLong":
+                    case "getDouble": {
+                        Object value = rows[cursor[0]][(Integer) args[0] - 1];
+                        wasNull[0] = value == null;
+                        if ("getLong".equals(method.getName())) {
+                            return value == null ? 0L : ((Number) value).longValue();
+                        }
+                        if ("getDouble".equals(method.getName())) {
+                            return value == null ? 0.0 : ((Number) value).doubleValue();
+                        }
+                        return value;
+                    }
+                    default: throw new UnsupportedOperationException(method.getName());
+                }
+            });
+    }
+
+    private static ResultTable sampleTable() throws SQLException {
+        return ResultTable.read(resultSet(LABELS, CLASSES, TYPES,
+            new Object[]{1L, "OS1", 5, new BigDecimal("499.00"), 1.5},
+            new Object[]{2L, "OS2", null, null, null},
+            new Object[]{3L, "OS3", 2, new BigDecimal("10.50"), 0.25}));
+    }
+
+    @Test
+    void testTypedGetters() throws SQLException {
+        ResultTable table = sampleTable();
+
+        assertEquals(3, table.size());
+        assertEquals(3L, table.getLong(2, "id"));
+        assertEquals(5, table.getInt(0, "QUANTITY"));
+        assertEquals(0.25, table.getDouble(2, "weight"), 0.0001);
+        assertEquals("OS2", table.getString(1, "orderNo"));
+        assertEquals(10, table.getLong(2, "total"));
+
+        assertTrue(table.isNull(1, "quantity"));
+        assertEquals(0, table.getInt(1, "quantity"));
+        assertNull(table.getObject(1, "total"));
+        assertThrows(IllegalArgumentException.class, () -> table.getLong(0, "missing"));
+        assertThrows(IndexOutOfBoundsException.class, () -> table.getLong(3, 0));
+    }
+
+    @Test
+    void testMapViewMatchesResultSetObjects() throws SQLException {
+        List<Map<String, Object>> rows = sampleTable().asMaps();
+
+        Map<String, Object> first = rows.get(0);
+        assertEquals(Long.valueOf(1L), first.get("id"));
+        assertEquals(Integer.valueOf(5), first.get("quantity"));
+        assertEquals(new BigDecimal("499.00"), first.get("total"));
+        assertEquals(Arrays.asList(LABELS), List.copyOf(first.keySet()));
+        assertNull(first.get("ID"), "Map keys stay case-sensitive");
+
+        Map<String, Object> second = rows.get(1);
+        assertTrue(second.containsKey("quantity"));
+        assertNull(second.get("quantity"));
+        assertEquals(5, second.size());
+        assertThrows(UnsupportedOperationException.class, () -> second.put("status", "x"));
+    }
+
+    @Test
+    void testRepeatedLabelKeepsLastColumn() throws SQLException {
+        ResultTable table = ResultTable.read(resultSet(
+            new String[]{"id", "id"}, new String[]{"java.lang.Long", "java.lang.Long"},
+            new int[]{Types.BIGINT, Types.BIGINT}, new Object[]{1L, 2L}));
+
+        Map<String, Object> row = table.asMaps().get(0);
+        assertEquals(1, row.size());
+        assertEquals(Long.valueOf(2L), row.get("id"));
+        assertEquals(2L, table.getLong(0, "id"));
+    }
+}
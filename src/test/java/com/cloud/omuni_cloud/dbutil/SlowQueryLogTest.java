@@ -0,0 +1,97 @@
+package com.cloud.omuni_cloud.dbutil;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for SQL fingerprinting and the per-fingerprint statistics of the slow-query log.
+ */
+public class SlowQueryLogTest {
+    private long threshold;
+
+    @BeforeEach
+    void reset() {
+        SlowQueryLog.clear();
+        threshold = SlowQueryLog.getThresholdMillis();
+    }
+
+    @AfterEach
+    void cleanup() {
+        SlowQueryLog.clear();
+        SlowQueryLog.setThresholdMillis(threshold);
+    }
+
+    @Test
+    void testFingerprintReplacesLiterals() {
+        assertEquals("SELECT * FROM nickfury.sale_orders WHERE orderNo = ? AND total > ?",
+            SlowQueryLog.fingerprint("SELECT *  FROM nickfury.sale_orders\n WHERE orderNo = 'OS123' AND total > 10.50"));
+        assertEquals(SlowQueryLog.fingerprint("SELECT id FROM store_orders WHERE orderId = 'it''s' -- note\nLIMIT 1"),
+            SlowQueryLog.fingerprint("SELECT id FROM store_orders WHERE orderId = ? LIMIT 1"));
+        assertEquals("SELECT t1.id FROM `table2` t1 WHERE t1.hex = ?",
+            SlowQueryLog.fingerprint("SELECT t1.id FROM `table2` t1 /* hint */ WHERE t1.hex = 0x1F"));
+    }
+
+    @Test
+    void testFingerprintCollapsesLists() {
+        assertEquals("SELECT * FROM sale_orders WHERE orderNo IN (?+)",
+            SlowQueryLog.fingerprint("SELECT * FROM sale_orders WHERE orderNo IN (?, ?, ?)"));
+        assertEquals(SlowQueryLog.fingerprint("SELECT * FROM sale_orders WHERE orderNo IN ('A', 'B')"),
+            SlowQueryLog.fingerprint("SELECT * FROM sale_orders WHERE orderNo IN ('A','B','C','D')"));
+        assertEquals("INSERT INTO t (a, b) VALUES (?+), ...",
+            SlowQueryLog.fingerprint("INSERT INTO t (a, b) VALUES (1, 'x'), (2, 'y'), (3, 'z')"));
+    }
+
+    @Test
+    void testStatsAreKeptPerFingerprint() {
+        SlowQueryLog.setThresholdMillis(Long.MAX_VALUE);
+        for (int i = 1; i <= 100; i++) {
+            SlowQueryLog.record("nickfury", "SELECT ? FROM a", TimeUnit.MILLISECONDS.toNanos(1),
+                TimeUnit.MILLISECONDS.toNanos(i), false);
+        }
+        SlowQueryLog.record("nickfury", "SELECT ? FROM b", 0, TimeUnit.MILLISECONDS.toNanos(20), true);
+        SlowQueryLog.record("chandler", "SELECT ? FROM a", 0, TimeUnit.MILLISECONDS.toNanos(5), false);
+
+        List<SlowQueryLog.QueryStats> top = SlowQueryLog.snapshot();
+        assertEquals(3, top.size());
+        SlowQueryLog.QueryStats first = top.get(0);
+        assertEquals("nickfury", first.getConfigName());
+        assertEquals("SELECT ? FROM a", first.getFingerprint());
+        assertEquals(100, first.getCount());
+        assertEquals(1.0, first.getAcquireMeanMillis(), 0.001);
+        assertEquals(51.0, first.getPercentileMillis(50), 0.001);
+        assertEquals(96.0, first.getPercentileMillis(95), 0.001);
+        assertEquals(101.0, first.getMaxMillis(), 0.001);
+        assertEquals(1, top.get(1).getFailures());
+
+        String report = SlowQueryLog.format(2);
+        assertTrue(report.startsWith("Top 2 of 3 query fingerprints"));
+        assertFalse(report.contains("chandler"), "Only the top entries are reported");
+    }
+
+    @Test
+    void testSlowStatementIsLoggedLive() {
+        SlowQueryLog.setThresholdMillis(50);
+        PrintStream out = System.out;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(captured, true, StandardCharsets.UTF_8));
+        try {
+            SlowQueryLog.record("nickfury", "SELECT fast", 0, TimeUnit.MILLISECONDS.toNanos(10), false);
+            SlowQueryLog.record("nickfury", "SELECT slow", TimeUnit.MILLISECONDS.toNanos(30),
+                TimeUnit.MILLISECONDS.toNanos(40), false);
+        } finally {
+            System.setOut(out);
+        }
+        String log = captured.toString(StandardCharsets.UTF_8);
+        assertTrue(log.contains("[SLOW QUERY] 70 ms (acquire 30 ms) on nickfury: SELECT slow"), log);
+        assertFalse(log.contains("SELECT fast"));
+    }
+}
@@ -0,0 +1,161 @@
+package com.cloud.omuni_cloud.dbutil;
+
+import com.cloud.omuni_cloud.dbutil.config.DatabaseConfig;
+import com.cloud.omuni_cloud.dbutil.config.DbConnectionConfig;
+import org.junit.jupiter.api.*;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.*;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Integration tests for WatermarkPoller using TestContainers.
+ * These tests require Docker to be running.
+ */
+@Testcontainers
+public class WatermarkPollerTest {
+    private static final String CONFIG_NAME = "watermark_test";
+    private static final String TEST_DB = "testdb";
+    private static final String TEST_USER = "testuser";
+    private static final String TEST_PASSWORD = "testpass";
+
+    @Container
+    private static final MySQLContainer<?> mysqlContainer = new MySQLContainer<>("mysql:8.0")
+            .withDatabaseName(TEST_DB)
+            .withUsername(TEST_USER)
+            .withPassword(TEST_PASSWORD)
+            .waitingFor(Wait.forListeningPort());
+
+    private static DatabaseManager dbManager;
+
+    @BeforeAll
+    static void setup() throws SQLException {
+        mysqlContainer.start();
+
+        DatabaseConfig.addDatabaseConfig(CONFIG_NAME, new DbConnectionConfig(
+                mysqlContainer.getHost(),
+                String.valueOf(mysqlContainer.getMappedPort(3306)),
+                TEST_DB,
+                TEST_USER,
+                TEST_PASSWORD
+        ));
+        dbManager = new DatabaseManager(CONFIG_NAME);
+        dbManager.executeUpdate(
+            "CREATE TABLE store_orders (" +
+            "id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+            "orderId VARCHAR(32) NOT NULL, " +
+            "status VARCHAR(20)" +
+            ")"
+        );
+        insertOrder("OS_EXISTING", "CREATED");
+    }
+
+    @AfterAll
+    static void teardown() throws SQLException {
+        DatabaseConnection.getInstance().close(CONFIG_NAME);
+        if (mysqlContainer != null) {
+            mysqlContainer.stop();
+        }
+    }
+
+    private static void insertOrder(String orderId, String status) throws SQLException {
+        dbManager.executeUpdate("INSERT INTO store_orders (orderId, status) VALUES (?, ?)", orderId, status);
+    }
+
+    @Test
+    void testAwaitCompletesWhenRowAppears() throws Exception {
+        try (WatermarkPoller poller = new WatermarkPoller(dbManager, "store_orders", "orderId").withOverlap(0)) {
+            poller.initialize();
+            long start = poller.getWatermark();
+            assertTrue(start > 0, "Watermark should start at the current maximum id");
+
+            CompletableFuture<OrderVerification> waiting = poller.await("OS_NEW_1");
+            assertEquals(0, poller.poll());
+            assertFalse(waiting.isDone(), "No row yet for the order");
+
+            insertOrder("OS_OTHER_1", "CREATED");
+            insertOrder("OS_NEW_1", "BOOKED");
+            assertEquals(2, poller.poll());
+
+            OrderVerification booking = waiting.get(1, TimeUnit.SECONDS);
+            assertTrue(booking.isFound());
+            assertEquals("BOOKED", booking.getStatus());
+            assertEquals(start + 2, poller.getWatermark());
+            assertEquals(0, poller.getPendingCount());
+        }
+    }
+
+    @Test
+    void testLateAwaitIsServedFromRecentRows() throws Exception {
+        try (WatermarkPoller poller = new WatermarkPoller(dbManager, "store_orders", "orderId")) {
+            poller.initialize();
+            insertOrder("OS_LATE_1", "CREATED");
+            insertOrder("OS_LATE_1", "BOOKED");
+            poller.poll();
+
+            CompletableFuture<OrderVerification> late = poller.await("OS_LATE_1");
+            assertTrue(late.isDone(), "Order seen before the wait was registered");
+            assertEquals("BOOKED", late.get().getStatus(), "Latest row of the order should win");
+        }
+    }
+
+    @Test
+    void testAwaitMatchesOrdersLikeVerifyOrders() throws Exception {
+        try (WatermarkPoller poller = new WatermarkPoller(dbManager, "store_orders", "orderId").withOverlap(0)) {
+            poller.initialize();
+            CompletableFuture<OrderVerification> waiting = poller.await("os_case_1");
+            insertOrder("OS_CASE_1", "BOOKED");
+            insertOrder("OS_CASE_2", "BOOKED");
+            poller.poll();
+
+            // The same input the bulk check finds must also complete the wait
+            assertTrue(dbManager.verifyOrders("store_orders", "orderId", Arrays.asList("os_case_1"))
+                .get("os_case_1").isFound());
+            assertEquals("BOOKED", waiting.get(1, TimeUnit.SECONDS).getStatus());
+            assertTrue(poller.await("Os_Case_2").isDone(), "Recent rows should be matched ignoring case too");
+        }
+    }
+
+    @Test
+    void testPagesThroughBacklogWithOverlap() throws Exception {
+        try (WatermarkPoller poller = new WatermarkPoller(dbManager, "store_orders", "orderId")
+                .withPageSize(3)
+                .withOverlap(2)) {
+            // Make sure the overlap has rows to re-read whichever test runs first
+            insertOrder("OS_PAGE_BEFORE_1", "CREATED");
+            insertOrder("OS_PAGE_BEFORE_2", "CREATED");
+            poller.initialize();
+            for (int i = 0; i < 7; i++) {
+                insertOrder("OS_PAGE_" + i, "CREATED");
+            }
+            CompletableFuture<OrderVerification> last = poller.await("OS_PAGE_6");
+
+            // Seven new rows plus the two overlapping rows below the watermark
+            assertEquals(9, poller.poll());
+            assertTrue(last.isDone());
+        }
+    }
+
+    @Test
+    void testBackgroundPollingAndClose() throws Exception {
+        CompletableFuture<OrderVerification> abandoned;
+        try (WatermarkPoller poller = new WatermarkPoller(dbManager, "store_orders", "orderId")
+                .start(100, TimeUnit.MILLISECONDS)) {
+            CompletableFuture<OrderVerification> waiting = poller.await("OS_BACKGROUND_1");
+            insertOrder("OS_BACKGROUND_1", "BOOKED");
+            assertEquals("BOOKED", waiting.get(10, TimeUnit.SECONDS).getStatus());
+
+            abandoned = poller.await("OS_NEVER");
+        }
+        ExecutionException e = assertThrows(ExecutionException.class, () -> abandoned.get(1, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+}
@@ -0,0 +1,87 @@
+package com.cloud.omuni_cloud.flow;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for SLO parsing and the capacity binary search, using simulated probes.
+ */
+public class CapacitySearchTest {
+    private static final FlowSlo SLO = FlowSlo.parse("CREATED->ASSIGNED p95<60s error<0.5%");
+
+    /**
+     * Search whose probes simulate an environment that keeps the SLO up to a given rate
+     */
+    private static class SimulatedSearch extends CapacitySearch {
+        private final double capacity;
+
+        SimulatedSearch(double capacity) {
+            super(new OrderLifecycle("token", "FC", "EAN", null), SLO, 1, TimeUnit.MINUTES);
+            this.capacity = capacity;
+            withCooldown(0, TimeUnit.SECONDS);
+        }
+
+        @Override
+        ProbeResult probe(double rate) {
+            long latency = rate <= capacity ? 30_000 : 90_000;
+            long[] latencies = new long[100];
+            Arrays.fill(latencies, latency);
+            return new ProbeResult(SLO, rate, 60_000, 100, 0, 0, latencies);
+        }
+    }
+
+    @Test
+    void testParseSlo() {
+        assertEquals(OrderStage.CREATED, SLO.getFromStage());
+        assertEquals(OrderStage.ASSIGNED, SLO.getToStage());
+        assertEquals(95.0, SLO.getPercentile(), 0.0001);
+        assertEquals(60_000, SLO.getMaxLatencyMillis());
+        assertEquals(0.005, SLO.getMaxErrorRate(), 0.00001);
+        assertEquals("CREATED->ASSIGNED p95<60000ms error<0.5%", SLO.toString());
+
+        assertThrows(IllegalArgumentException.class, () -> FlowSlo.parse("ASSIGNED->CREATED p95<60s error<1%"));
+        assertThrows(IllegalArgumentException.class, () -> FlowSlo.parse("p95 under a minute"));
+    }
+
+    @Test
+    void testProbeFailsOnErrorRateIncludingDrops() {
+        long[] fast = {1_000, 2_000, 3_000};
+        CapacitySearch.ProbeResult ok = new CapacitySearch.ProbeResult(SLO, 1.0, 60_000, 1000, 0, 4, fast);
+        CapacitySearch.ProbeResult dropping = new CapacitySearch.ProbeResult(SLO, 1.0, 60_000, 990, 10, 0, fast);
+
+        assertTrue(ok.isPassed());
+        assertFalse(dropping.isPassed());
+        assertEquals(0.01, dropping.getErrorRate(), 0.00001);
+    }
+
+    @Test
+    void testSearchFindsKneeWithinResolution() throws InterruptedException {
+        CapacitySearch.Report report = new SimulatedSearch(1.3)
+            .withRateBounds(0.1, 5.0)
+            .withResolution(0.05)
+            .withMaxProbes(20)
+            .run();
+
+        assertNotNull(report.getKnee());
+        assertNotNull(report.getFirstFailure());
+        assertTrue(report.getSustainableRate() <= 1.3);
+        assertTrue(report.getFirstFailure().getRate() > 1.3);
+        assertTrue(report.getFirstFailure().getRate() - report.getSustainableRate() <= 0.05);
+        assertTrue(report.format().contains("Knee point"));
+    }
+
+    @Test
+    void testSearchReportsWhenBoundsDoNotBracket() throws InterruptedException {
+        CapacitySearch.Report tooSlow = new SimulatedSearch(0.01).withRateBounds(0.1, 5.0).run();
+        assertNull(tooSlow.getKnee());
+        assertEquals(1, tooSlow.getProbes().size());
+
+        CapacitySearch.Report tooFast = new SimulatedSearch(10).withRateBounds(0.1, 5.0).run();
+        assertNull(tooFast.getFirstFailure());
+        assertEquals(5.0, tooFast.getSustainableRate(), 0.0001);
+    }
+}
@@ -0,0 +1,115 @@
+package com.cloud.omuni_cloud.flow;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for load profile segments, arrival scheduling and the profile file format.
+ */
+public class LoadProfileTest {
+
+    @Test
+    void testRampHoldAndSpikeRates() {
+        LoadProfile profile = LoadProfile.builder()
+            .ramp(0, 10, 10, TimeUnit.SECONDS)
+            .hold(10, 10, TimeUnit.SECONDS)
+            .spike(3.0, 5, TimeUnit.SECONDS)
+            .build();
+
+        assertEquals(25_000, profile.getDurationMillis());
+        assertEquals(5.0, profile.rateAt(5_000), 0.0001);
+        assertEquals(10.0, profile.rateAt(15_000), 0.0001);
+        assertEquals(30.0, profile.rateAt(22_000), 0.0001);
+        assertEquals(0.0, profile.rateAt(25_000), 0.0001);
+
+        // Ramp contributes 50 arrivals, the hold 100 and the spike 150
+        assertEquals(50.0, profile.expectedArrivals(10_000), 0.0001);
+        assertEquals(150.0, profile.expectedArrivals(20_000), 0.0001);
+        assertEquals(300.0, profile.expectedArrivals(25_000), 0.0001);
+    }
+
+    @Test
+    void testArrivalTimesFollowCumulativeRate() {
+        LoadProfile profile = LoadProfile.constant(2.0, 10, TimeUnit.SECONDS);
+
+        assertEquals(500, profile.arrivalTimeMillis(0));
+        assertEquals(1_000, profile.arrivalTimeMillis(1));
+        assertEquals(5_500, profile.arrivalTimeMillis(10));
+        // 20 expected arrivals start exactly 20 orders, the last at the end of the profile
+        assertEquals(10_000, profile.arrivalTimeMillis(19));
+        assertEquals(-1, profile.arrivalTimeMillis(20));
+    }
+
+    @Test
+    void testProfileStartsExactlyItsExpectedArrivals() {
+        LoadProfile profile = LoadProfile.builder()
+            .ramp(0, 10, 10, TimeUnit.SECONDS)
+            .hold(10, 10, TimeUnit.SECONDS)
+            .build();
+        long started = 0;
+        while (profile.arrivalTimeMillis(started) >= 0) {
+            started++;
+        }
+        assertEquals(150, started);
+        assertEquals(20_000, profile.arrivalTimeMillis(149));
+    }
+
+    @Test
+    void testStepUpAddsOneHoldPerStep() {
+        LoadProfile profile = LoadProfile.builder()
+            .stepUp(10, 5, 4, 1, TimeUnit.MINUTES)
+            .build();
+
+        assertEquals(4, profile.getSegments().size());
+        assertEquals(10.0, profile.rateAt(30_000), 0.0001);
+        assertEquals(25.0, profile.rateAt(210_000), 0.0001);
+        assertEquals(TimeUnit.MINUTES.toMillis(4), profile.getDurationMillis());
+    }
+
+    @Test
+    void testParseProfileFile() {
+        LoadProfile profile = LoadProfile.parse(Arrays.asList(
+            "# warm up then hold",
+            "ramp 1 50 10m",
+            "",
+            "hold 50 20m   # steady state",
+            "spike 3x 2m",
+            "step 10 5 2 30s"));
+
+        assertEquals(5, profile.getSegments().size());
+        assertEquals("spike", profile.getSegments().get(2).getType());
+        assertEquals(150.0, profile.getSegments().get(2).getStartRate(), 0.0001);
+        assertEquals(TimeUnit.MINUTES.toMillis(33), profile.getDurationMillis());
+    }
+
+    @Test
+    void testParseRejectsInvalidLines() {
+        IllegalArgumentException unknown = assertThrows(IllegalArgumentException.class,
+            () -> LoadProfile.parse(Arrays.asList("hold 5 1m", "burst 5 1m")));
+        assertTrue(unknown.getMessage().contains("line 2"));
+
+        assertThrows(IllegalArgumentException.class, () -> LoadProfile.parse(Arrays.asList("hold 5 10")));
+        assertThrows(IllegalArgumentException.class, () -> LoadProfile.parse(Arrays.asList("spike 2x 1m")));
+        assertThrows(IllegalArgumentException.class, () -> LoadProfile.parse(Arrays.asList("# only a comment")));
+    }
+
+    @Test
+    void testTimelineComparesTargetWithAchieved() {
+        LoadProfile profile = LoadProfile.constant(2.0, 3, TimeUnit.SECONDS);
+        LoadTimeline timeline = new LoadTimeline(profile);
+        for (int index = 0; profile.arrivalTimeMillis(index) >= 0; index++) {
+            timeline.recordStarted(profile.arrivalTimeMillis(index));
+        }
+
+        assertEquals(2.0, timeline.targetArrivals(0), 0.0001);
+        // Arrivals fall due at 0.5s, 1.0s, ... 3.0s; the one completing a second counts in the next
+        assertEquals(1, timeline.startedIn(0));
+        assertEquals(2, timeline.startedIn(1));
+        assertEquals(6, timeline.startedIn(0) + timeline.startedIn(1) + timeline.startedIn(2) + timeline.startedIn(3));
+        assertTrue(timeline.format(1).contains("0-1s"));
+    }
+}
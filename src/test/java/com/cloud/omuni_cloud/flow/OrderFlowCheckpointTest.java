@@ -0,0 +1,79 @@
+package com.cloud.omuni_cloud.flow;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the append-only order flow checkpoint file.
+ */
+public class OrderFlowCheckpointTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testLoadRestoresLastStageAndConsignments() throws IOException {
+        Path file = tempDir.resolve("checkpoint.tsv");
+
+        OrderProgress first = new OrderProgress("OS1000000001");
+        OrderProgress second = new OrderProgress("OS1000000002");
+        try (OrderFlowCheckpoint checkpoint = new OrderFlowCheckpoint(file)) {
+            first.completeStage(OrderStage.CREATED, 1000L);
+            checkpoint.record(first);
+            second.completeStage(OrderStage.CREATED, 1100L);
+            checkpoint.record(second);
+            first.completeStage(OrderStage.BOOKING_VERIFIED, 2000L);
+            checkpoint.record(first);
+            first.addConsignmentId("C-1");
+            first.completeStage(OrderStage.ASSIGNED, 3000L);
+            checkpoint.record(first);
+        }
+
+        Map<String, OrderProgress> loaded = OrderFlowCheckpoint.load(file);
+
+        assertEquals(List.of("OS1000000001", "OS1000000002"), List.copyOf(loaded.keySet()));
+        OrderProgress restored = loaded.get("OS1000000001");
+        assertEquals(OrderStage.ASSIGNED, restored.getLastStage());
+        assertEquals(OrderStage.CHANDLER_ACCEPTED, restored.nextStage());
+        assertEquals("C-1", restored.getConsignmentId());
+        assertEquals(Long.valueOf(2000L), restored.getStageTimestamp(OrderStage.BOOKING_VERIFIED));
+        assertEquals(OrderStage.CREATED, loaded.get("OS1000000002").getLastStage());
+    }
+
+    @Test
+    void testAppendsAcrossReopenAndSkipsTornLine() throws IOException {
+        Path file = tempDir.resolve("checkpoint.tsv");
+        OrderProgress progress = new OrderProgress("OS1000000003");
+
+        try (OrderFlowCheckpoint checkpoint = new OrderFlowCheckpoint(file)) {
+            progress.completeStage(OrderStage.CREATED, 1000L);
+            checkpoint.record(progress);
+        }
+        try (OrderFlowCheckpoint checkpoint = new OrderFlowCheckpoint(file)) {
+            progress.completeStage(OrderStage.BOOKING_VERIFIED, 2000L);
+            checkpoint.record(progress);
+        }
+        // Simulate a crash in the middle of writing the next record
+        Files.write(file, "3000\tOS1000000003\tASSI".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        OrderProgress restored = OrderFlowCheckpoint.load(file).get("OS1000000003");
+
+        assertEquals(OrderStage.BOOKING_VERIFIED, restored.getLastStage());
+        assertFalse(restored.isComplete());
+    }
+
+    @Test
+    void testLoadMissingFileReturnsEmpty() throws IOException {
+        assertTrue(OrderFlowCheckpoint.load(tempDir.resolve("missing.tsv")).isEmpty());
+    }
+}
@@ -0,0 +1,35 @@
+package com.cloud.omuni_cloud.flow;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for telling from the consignment status whether a resumed stage already took effect.
+ */
+public class OrderLifecycleTest {
+
+    @Test
+    void testStageIsAppliedOnceTheConsignmentReachedIt() {
+        assertFalse(OrderLifecycle.isApplied(OrderStage.CHANDLER_ACCEPTED, "Assigned"));
+        assertTrue(OrderLifecycle.isApplied(OrderStage.CHANDLER_ACCEPTED, "Packed"));
+
+        assertFalse(OrderLifecycle.isApplied(OrderStage.INVOICED, "Assigned"));
+        assertTrue(OrderLifecycle.isApplied(OrderStage.INVOICED, "PACKED"));
+        assertTrue(OrderLifecycle.isApplied(OrderStage.INVOICED, "Delivered"));
+
+        assertFalse(OrderLifecycle.isApplied(OrderStage.SHIPPED, "Packed"));
+        assertTrue(OrderLifecycle.isApplied(OrderStage.SHIPPED, "Shipped"));
+        assertFalse(OrderLifecycle.isApplied(OrderStage.DELIVERED, "Shipped"));
+        assertTrue(OrderLifecycle.isApplied(OrderStage.DELIVERED, "Delivered"));
+    }
+
+    @Test
+    void testUnknownStatusIsNotTakenAsApplied() {
+        for (OrderStage stage : new OrderStage[] {OrderStage.CHANDLER_ACCEPTED, OrderStage.INVOICED,
+                                                  OrderStage.SHIPPED, OrderStage.DELIVERED}) {
+            assertFalse(OrderLifecycle.isApplied(stage, "NOT_FOUND"), stage.name());
+        }
+        assertFalse(OrderLifecycle.isApplied(OrderStage.INVOICED, "Cancelled"));
+    }
+}
@@ -0,0 +1,65 @@
+package com.cloud.omuni_cloud.flow;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the rolling window statistics used by the soak test.
+ */
+public class RollingStatsTest {
+
+    @Test
+    void testPercentileNearestRank() {
+        long[] sorted = {10, 20, 30, 40, 50, 60, 70, 80, 90, 100};
+
+        assertEquals(50, RollingStats.percentile(sorted, 50));
+        assertEquals(100, RollingStats.percentile(sorted, 95));
+        assertEquals(10, RollingStats.percentile(sorted, 1));
+        assertEquals(0, RollingStats.percentile(new long[0], 95));
+    }
+
+    @Test
+    void testSnapshotAggregatesStagesAndErrors() {
+        RollingStats stats = new RollingStats(60);
+        OrderProgress progress = new OrderProgress("OS1000000001");
+
+        for (int i = 1; i <= 100; i++) {
+            stats.recordStarted();
+            stats.onStageCompleted(progress, OrderStage.ASSIGNED, i * 10L);
+        }
+        stats.onStageCompleted(progress, OrderStage.DELIVERED, 5L);
+        stats.onStageCompleted(progress, OrderStage.DELIVERED, 5L);
+        stats.onStageCompleted(progress, OrderStage.DELIVERED, 5L);
+        stats.onStageFailed(progress, OrderStage.SALE_VERIFIED, 100L, new IllegalStateException("timeout"));
+
+        RollingStats.Snapshot snapshot = stats.snapshot();
+
+        assertEquals(100, snapshot.getStarted());
+        assertEquals(3, snapshot.getCompleted());
+        assertEquals(1, snapshot.getFailed());
+        assertEquals(0.25, snapshot.getErrorRate(), 0.0001);
+        assertEquals(500, snapshot.getStagePercentile(OrderStage.ASSIGNED, 50));
+        assertEquals(950, snapshot.getStagePercentile(OrderStage.ASSIGNED, 95));
+        assertEquals(-1, snapshot.getStagePercentile(OrderStage.SHIPPED, 95));
+        assertEquals(Integer.valueOf(1), snapshot.getFailuresByStage().get(OrderStage.SALE_VERIFIED));
+    }
+
+    @Test
+    void testStageAgedOutOfWindowHasNoPercentiles() throws InterruptedException {
+        RollingStats stats = new RollingStats(1);
+        OrderProgress progress = new OrderProgress("OS1000000001");
+
+        stats.onStageCompleted(progress, OrderStage.ASSIGNED, 40L);
+        // The one-second window's only bucket is reused for the next second's sample
+        long second = System.currentTimeMillis() / 1000;
+        while (System.currentTimeMillis() / 1000 == second) {
+            Thread.sleep(10);
+        }
+        stats.onStageCompleted(progress, OrderStage.DELIVERED, 5L);
+
+        RollingStats.Snapshot snapshot = stats.snapshot();
+        assertEquals(-1, snapshot.getStagePercentile(OrderStage.ASSIGNED, 50));
+        assertFalse(snapshot.format().contains("ASSIGNED"), snapshot.format());
+    }
+}
@@ -1,7 +1,7 @@
 package com.cloud.omuni_cloud.integration;
 
+import com.cloud.omuni_cloud.InventoryPreconditioner;
 import com.cloud.omuni_cloud.api.GenericDetailsApi;
-import com.cloud.omuni_cloud.api.InventoryApi;
 import com.cloud.omuni_cloud.api.OrderCreationApi;
 import com.cloud.omuni_cloud.base.BaseIntegrationTest;
 import com.cloud.omuni_cloud.dbutil.DatabaseManager;
@@ -18,21 +18,10 @@ public class OrderFlowIntegrationTest extends BaseIntegrationTest {
     @Test
     public void testCompleteOrderFlow() throws Exception {
         try {
-            // Step 1: Update inventory to 0
-            logToReport("[INFO] Step 1: Update inventory to 0");
-            String response0 = InventoryApi.updateInventory(AUTH_TOKEN, FC_ID, EAN, 0);
-            logToReport("[INFO] Inventory update (0) response: " + response0);
-
-            // Add a small delay to ensure inventory is updated
-            Thread.sleep(2000);
-
-            // Step 2: Update inventory to 1500
-            logToReport("[INFO] Step 2: Update inventory to 1500");
-            String response1500 = InventoryApi.updateInventory(AUTH_TOKEN, FC_ID, EAN, 1500);
-            logToReport("[INFO] Inventory update (1500) response: " + response1500);
-            
-            // Add a small delay to ensure inventory is updated
-            Thread.sleep(2000);
+            // Step 1-2: Make sure the order can be served, without wiping reservations of other orders
+            logToReport("[INFO] Step 1-2: Ensure inventory is available (target 1500)");
+            boolean inventoryWritten = new InventoryPreconditioner(AUTH_TOKEN).ensureAvailable(FC_ID, EAN, 1, 1500);
+            logToReport("[INFO] Inventory " + (inventoryWritten ? "topped up to 1500 available" : "already sufficient, no write"));
 
             // Step 3: Create order
             String orderReference = generateOrderReference();